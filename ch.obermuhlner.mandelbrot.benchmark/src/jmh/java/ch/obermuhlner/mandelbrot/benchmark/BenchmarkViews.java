@@ -0,0 +1,51 @@
+package ch.obermuhlner.mandelbrot.benchmark;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+import ch.obermuhlner.mandelbrot.javafx.DummyProgress;
+import ch.obermuhlner.mandelbrot.palette.Palette;
+import ch.obermuhlner.mandelbrot.poi.PointOfInterest;
+import ch.obermuhlner.mandelbrot.poi.StandardPointsOfInterest;
+import ch.obermuhlner.mandelbrot.render.AutoPrecisionMandelbrotRenderer;
+import ch.obermuhlner.mandelbrot.render.BufferedImageMandelbrotResult;
+import ch.obermuhlner.mandelbrot.render.MandelbrotRenderer;
+import ch.obermuhlner.math.big.BigDecimalMath;
+
+/**
+ * Calculates the views of the {@link StandardPointsOfInterest} the same way as the command line tool <code>mandelbrot</code>.
+ */
+class BenchmarkViews {
+
+	static PointOfInterest pointOfInterest(String name) {
+		for (PointOfInterest pointOfInterest : StandardPointsOfInterest.POINTS_OF_INTEREST) {
+			if (pointOfInterest.name.equals(name)) {
+				return pointOfInterest;
+			}
+		}
+		throw new IllegalArgumentException("Unknown point of interest: " + name);
+	}
+
+	static int precision(PointOfInterest pointOfInterest) {
+		return (int) pointOfInterest.zoom + 10;
+	}
+
+	static int maxIterations(PointOfInterest pointOfInterest) {
+		return pointOfInterest.maxIterationsConst + (int) pointOfInterest.zoom * pointOfInterest.maxIterationsLinear;
+	}
+
+	static BigDecimal radius(PointOfInterest pointOfInterest) {
+		MathContext mc = new MathContext(precision(pointOfInterest), RoundingMode.HALF_UP);
+		return new BigDecimal(2).multiply(BigDecimalMath.pow(BigDecimal.TEN, BigDecimal.valueOf(pointOfInterest.zoom).negate(), mc), mc);
+	}
+
+	static BufferedImageMandelbrotResult render(PointOfInterest pointOfInterest, Palette palette, int width, int height) {
+		MandelbrotRenderer mandelbrotRenderer = new AutoPrecisionMandelbrotRenderer();
+		int maxIterations = maxIterations(pointOfInterest);
+		BufferedImageMandelbrotResult result = new BufferedImageMandelbrotResult(width, height, maxIterations, palette, 0);
+		BigDecimal radius = radius(pointOfInterest);
+		mandelbrotRenderer.drawMandelbrot(result, pointOfInterest.x, pointOfInterest.y, radius, radius, precision(pointOfInterest), maxIterations, width, height, new DummyProgress());
+		return result;
+	}
+}
@@ -0,0 +1,96 @@
+package ch.obermuhlner.mandelbrot.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ch.obermuhlner.mandelbrot.image.PaletteRowSupplier;
+import ch.obermuhlner.mandelbrot.image.PngWriter;
+import ch.obermuhlner.mandelbrot.palette.Palette;
+import ch.obermuhlner.mandelbrot.palette.PaletteFactory;
+import ch.obermuhlner.mandelbrot.poi.PointOfInterest;
+import ch.obermuhlner.mandelbrot.render.BufferedImageMandelbrotResult;
+
+/**
+ * Converts rendered iterations into images and writes them as PNG (into a stream that discards the bytes).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class ImageBenchmark {
+
+	@Param({ "256", "1024" })
+	public int resolution;
+
+	private Palette palette;
+	private BufferedImageMandelbrotResult result;
+	private BufferedImage image;
+
+	@Setup
+	public void setup() {
+		PointOfInterest pointOfInterest = BenchmarkViews.pointOfInterest("Initial");
+		palette = new PaletteFactory().createPalette(pointOfInterest.paletteType, pointOfInterest.paletteSeed, pointOfInterest.paletteStep);
+		result = BenchmarkViews.render(pointOfInterest, palette, resolution, resolution);
+		image = result.getImage();
+	}
+
+	@Benchmark
+	public BufferedImage bufferedImage(PixelCounters counters) {
+		counters.pixels += resolution * resolution;
+		return result.getImage();
+	}
+
+	@Benchmark
+	public void paletteRows(PixelCounters counters, Blackhole blackhole) {
+		PaletteRowSupplier rowSupplier = new PaletteRowSupplier(result, palette, 0);
+		int[] rgb = new int[resolution];
+		for (int pixelY = 0; pixelY < resolution; pixelY++) {
+			rowSupplier.getRow(pixelY, rgb);
+			blackhole.consume(rgb);
+		}
+		counters.pixels += resolution * resolution;
+	}
+
+	@Benchmark
+	public long pngWriter(PixelCounters counters) throws IOException {
+		CountingOutputStream out = new CountingOutputStream();
+		new PngWriter().write(out, resolution, resolution, new PaletteRowSupplier(result, palette, 0));
+		counters.pixels += resolution * resolution;
+		return out.count;
+	}
+
+	@Benchmark
+	public long imageIO(PixelCounters counters) throws IOException {
+		CountingOutputStream out = new CountingOutputStream();
+		ImageIO.write(image, "png", out);
+		counters.pixels += resolution * resolution;
+		return out.count;
+	}
+
+	private static class CountingOutputStream extends OutputStream {
+		private long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) {
+			count += length;
+		}
+	}
+}
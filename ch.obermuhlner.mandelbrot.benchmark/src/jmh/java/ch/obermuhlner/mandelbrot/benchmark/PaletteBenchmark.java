@@ -0,0 +1,61 @@
+package ch.obermuhlner.mandelbrot.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import ch.obermuhlner.mandelbrot.palette.Palette;
+import ch.obermuhlner.mandelbrot.palette.PaletteFactory;
+import ch.obermuhlner.mandelbrot.palette.PaletteType;
+import ch.obermuhlner.mandelbrot.render.BufferedImageMandelbrotResult;
+
+/**
+ * Colors the iterations of a rendered point of interest with every {@link PaletteType}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class PaletteBenchmark {
+
+	@Param
+	public PaletteType paletteType;
+
+	@Param({ "Initial", "Thorns" })
+	public String pointOfInterest;
+
+	private Palette palette;
+
+	private int[] iterations;
+	private int[] rgb;
+
+	@Setup
+	public void setup() {
+		palette = new PaletteFactory().createPalette(paletteType, 1, 20);
+
+		int resolution = 256;
+		BufferedImageMandelbrotResult result = BenchmarkViews.render(BenchmarkViews.pointOfInterest(pointOfInterest), palette, resolution, resolution);
+		iterations = new int[resolution * resolution];
+		for (int pixelY = 0; pixelY < resolution; pixelY++) {
+			for (int pixelX = 0; pixelX < resolution; pixelX++) {
+				iterations[pixelX + pixelY * resolution] = result.getIterations(pixelX, pixelY);
+			}
+		}
+		rgb = new int[iterations.length];
+	}
+
+	@Benchmark
+	public int[] getColor(PixelCounters counters) {
+		for (int i = 0; i < iterations.length; i++) {
+			rgb[i] = palette.getColor(iterations[i]).toRGB();
+		}
+		counters.pixels += iterations.length;
+		return rgb;
+	}
+}
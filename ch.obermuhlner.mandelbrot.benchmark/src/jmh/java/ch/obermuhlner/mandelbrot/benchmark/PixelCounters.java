@@ -0,0 +1,22 @@
+package ch.obermuhlner.mandelbrot.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the processed pixels, so that JMH reports them as pixels per second.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class PixelCounters {
+
+	public long pixels;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		pixels = 0;
+	}
+}
@@ -0,0 +1,25 @@
+package ch.obermuhlner.mandelbrot.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the rendered pixels and calculated iterations, so that JMH reports them as pixels per second and iterations per second.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class RenderCounters {
+
+	public long pixels;
+
+	public long iterations;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		pixels = 0;
+		iterations = 0;
+	}
+}
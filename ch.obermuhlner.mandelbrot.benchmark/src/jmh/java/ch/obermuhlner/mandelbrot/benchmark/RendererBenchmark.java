@@ -0,0 +1,94 @@
+package ch.obermuhlner.mandelbrot.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import ch.obermuhlner.mandelbrot.javafx.DummyProgress;
+import ch.obermuhlner.mandelbrot.poi.PointOfInterest;
+import ch.obermuhlner.mandelbrot.render.AutoPrecisionMandelbrotRenderer;
+import ch.obermuhlner.mandelbrot.render.BigDecimalMandelbrotRenderer;
+import ch.obermuhlner.mandelbrot.render.DoubleMandelbrotRenderer;
+import ch.obermuhlner.mandelbrot.render.IntIterationBuffer;
+import ch.obermuhlner.mandelbrot.render.MandelbrotRenderer;
+import ch.obermuhlner.mandelbrot.render.RenderStatistics;
+
+/**
+ * Renders standard points of interest with every {@link MandelbrotRenderer}.
+ * 
+ * <p>The deep points of interest are very slow with the BigDecimal renderer,
+ * use <code>-p resolution=...</code> to run them at other resolutions.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class RendererBenchmark {
+
+	@Param({ "Double", "BigDecimal", "AutoPrecision" })
+	public String renderer;
+
+	@Param({ "Initial", "Chaotic Spirals", "Snail Shell", "Thorns" })
+	public String pointOfInterest;
+
+	@Param({ "32", "128" })
+	public int resolution;
+
+	private MandelbrotRenderer mandelbrotRenderer;
+	private PointOfInterest poi;
+	private BigDecimal radius;
+	private int precision;
+	private int maxIterations;
+
+	private IntIterationBuffer result;
+
+	@Setup
+	public void setup() {
+		switch (renderer) {
+		case "Double":
+			mandelbrotRenderer = new DoubleMandelbrotRenderer();
+			break;
+		case "BigDecimal":
+			mandelbrotRenderer = new BigDecimalMandelbrotRenderer();
+			break;
+		case "AutoPrecision":
+			mandelbrotRenderer = new AutoPrecisionMandelbrotRenderer();
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown renderer: " + renderer);
+		}
+
+		poi = BenchmarkViews.pointOfInterest(pointOfInterest);
+		radius = BenchmarkViews.radius(poi);
+		precision = BenchmarkViews.precision(poi);
+		maxIterations = BenchmarkViews.maxIterations(poi);
+
+		result = new IntIterationBuffer(resolution, resolution);
+	}
+
+	@Benchmark
+	public int[] drawMandelbrot(RenderCounters counters) {
+		RenderStatistics statistics = mandelbrotRenderer.drawMandelbrot(
+				result,
+				poi.x,
+				poi.y,
+				radius,
+				radius,
+				precision,
+				maxIterations,
+				resolution,
+				resolution,
+				new DummyProgress());
+
+		counters.pixels += statistics.getPixelCount();
+		counters.iterations += statistics.getIterationCount();
+		return result.getIterationArray();
+	}
+}
@@ -6,33 +6,44 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.math.BigDecimal;
-import java.math.MathContext;
-import java.math.RoundingMode;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
-import java.util.stream.IntStream;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
-import javax.imageio.ImageIO;
 
-import ch.obermuhlner.mandelbrot.javafx.DummyProgress;
-import ch.obermuhlner.mandelbrot.javafx.Progress;
+import ch.obermuhlner.mandelbrot.management.RenderMetrics;
 import ch.obermuhlner.mandelbrot.palette.Palette;
 import ch.obermuhlner.mandelbrot.palette.PaletteFactory;
 import ch.obermuhlner.mandelbrot.palette.PaletteType;
 import ch.obermuhlner.mandelbrot.poi.PointOfInterest;
 import ch.obermuhlner.mandelbrot.poi.StandardPointsOfInterest;
 import ch.obermuhlner.mandelbrot.render.AutoPrecisionMandelbrotRenderer;
-import ch.obermuhlner.mandelbrot.render.BufferedImageMandelbrotResult;
+import ch.obermuhlner.mandelbrot.render.CostEstimate;
+import ch.obermuhlner.mandelbrot.render.CostEstimator;
 import ch.obermuhlner.mandelbrot.render.MandelbrotRenderer;
+import ch.obermuhlner.mandelbrot.render.RenderPool;
+import ch.obermuhlner.mandelbrot.render.RenderResult;
+import ch.obermuhlner.mandelbrot.render.RenderService;
+import ch.obermuhlner.mandelbrot.render.RenderSpec;
+import ch.obermuhlner.mandelbrot.util.FrameFarm;
+import ch.obermuhlner.mandelbrot.util.FrameLog;
+import ch.obermuhlner.mandelbrot.util.FrameLogSummary;
 import ch.obermuhlner.mandelbrot.util.StopWatch;
-import ch.obermuhlner.math.big.BigDecimalMath;
 
 // ffmpeg -y -r 10 -start_number 0 -i mandelbrot%04d.png -s 800x800 -vcodec mpeg4 -q:v 1 mandelbrot.mp4
 
 public class MandelbrotZoom {
 
 	private static final MandelbrotRenderer mandelbrotRenderer = new AutoPrecisionMandelbrotRenderer();
+	private static final RenderService renderService = new RenderService(mandelbrotRenderer, RenderPool.BATCH, 1);
+	
+	private static final int IMAGE_WIDTH = 800;
+	private static final int IMAGE_HEIGHT = 800;
 	
 	public static void main(String[] args) {
 		if (args.length == 0) {
@@ -40,6 +51,8 @@ public class MandelbrotZoom {
 			return;
 		}
 		
+		RenderMetrics.register();
+		
 		boolean allPointsOfInterest = false;
 		BigDecimal xCenter = new BigDecimal("0");
 		BigDecimal yCenter = new BigDecimal("0");
@@ -54,6 +67,9 @@ public class MandelbrotZoom {
 		int imageCountStart = 0;
 		int imageCount = 1000;
 		String directoryName = "zoom";
+		String frameLogName = null;
+		boolean estimate = false;
+		boolean estimateOnly = false;
 		
 		int argumentIndex = 0;
 		while(argumentIndex < args.length) {
@@ -135,6 +151,20 @@ public class MandelbrotZoom {
 			case "--directoryName":
 				directoryName = stringArgument(args, ++argumentIndex, "zoom");
 				break;
+			case "-e":
+			case "--estimate":
+				estimate = true;
+				break;
+			case "--estimateOnly":
+				estimate = true;
+				estimateOnly = true;
+				break;
+			case "--frameLog":
+				frameLogName = stringArgument(args, ++argumentIndex, "frames.csv");
+				break;
+			case "--summarizeFrameLog":
+				summarizeFrameLog(stringArgument(args, ++argumentIndex, "frames.csv"));
+				return;
 			default:
 				System.out.println("Unknown option: " + args[argumentIndex]);
 				return;
@@ -143,6 +173,16 @@ public class MandelbrotZoom {
 			argumentIndex++;
 		}
 		
+		FrameLog frameLog = null;
+		if (frameLogName != null) {
+			try {
+				frameLog = new FrameLog(new File(frameLogName));
+			} catch (IOException e) {
+				e.printStackTrace();
+				return;
+			}
+		}
+		
 		if (allPointsOfInterest) {
 			for (PointOfInterest pointOfInterest : StandardPointsOfInterest.POINTS_OF_INTEREST) {
 				if (pointOfInterest == StandardPointsOfInterest.POINTS_OF_INTEREST[0]) {
@@ -159,13 +199,26 @@ public class MandelbrotZoom {
 
 				printInfo(System.out, xCenter, yCenter, zoomStart, zoomStep, maxIterationsConst, maxIterationsLinear, paletteType, paletteSeed, paletteStep, imageCount, directoryName);
 
-				renderZoomImages(xCenter, yCenter, zoomStart, zoomStep, maxIterationsConst, maxIterationsLinear, paletteType, paletteSeed, paletteStep, colorCycle, imageCountStart, imageCount, directoryName);
+				renderZoomImages(xCenter, yCenter, zoomStart, zoomStep, maxIterationsConst, maxIterationsLinear, paletteType, paletteSeed, paletteStep, colorCycle, imageCountStart, imageCount, directoryName, frameLog, estimate, estimateOnly);
 				System.out.println();
 			}
 		} else {
 			printInfo(System.out, xCenter, yCenter, zoomStart, zoomStep, maxIterationsConst, maxIterationsLinear, paletteType, paletteSeed, paletteStep, imageCount, directoryName);
 
-			renderZoomImages(xCenter, yCenter, zoomStart, zoomStep, maxIterationsConst, maxIterationsLinear, paletteType, paletteSeed, paletteStep, colorCycle, imageCountStart, imageCount, directoryName);
+			renderZoomImages(xCenter, yCenter, zoomStart, zoomStep, maxIterationsConst, maxIterationsLinear, paletteType, paletteSeed, paletteStep, colorCycle, imageCountStart, imageCount, directoryName, frameLog, estimate, estimateOnly);
+		}
+		
+		if (frameLog != null) {
+			frameLog.close();
+		}
+	}
+	
+	private static void summarizeFrameLog(String frameLogName) {
+		try {
+			List<FrameLog.Frame> frames = FrameLog.read(new File(frameLogName));
+			new FrameLogSummary(frames).print(System.out);
+		} catch (IOException e) {
+			e.printStackTrace();
 		}
 	}
 	
@@ -205,6 +258,15 @@ public class MandelbrotZoom {
 		System.out.println("  --name");
 		System.out.println("  --directoryName");
 		System.out.println("    Name of the directory to store the created images.");
+		System.out.println("  -e");
+		System.out.println("  --estimate");
+		System.out.println("    Estimates the calculation time of all images before starting and prints the remaining time after every image.");
+		System.out.println("  --estimateOnly");
+		System.out.println("    Estimates the calculation time of all images without rendering them.");
+		System.out.println("  --frameLog");
+		System.out.println("    File to log the timings of every image (CSV, or JSON lines if the file ends with .json or .jsonl).");
+		System.out.println("  --summarizeFrameLog");
+		System.out.println("    Prints the summary of a frame log and fits the image times against the zoom.");
 		System.out.println();
 		System.out.println("Points of interest:");
 		for (PointOfInterest pointOfInterest : StandardPointsOfInterest.POINTS_OF_INTEREST) {
@@ -228,9 +290,33 @@ public class MandelbrotZoom {
 		return Integer.parseInt(stringArgument(args, index, String.valueOf(defaultValue)));
 	}
 		
-	public static void renderZoomImages(BigDecimal xCenter, BigDecimal yCenter, BigDecimal zoomStart, BigDecimal zoomStep, int maxIterationsConst, int maxIterationsLinear, PaletteType paletteType, int paletteSeed, int paletteStep, double colorCycle, int imageCountStart, int imageCount, String directoryName) {
+	public static void renderZoomImages(BigDecimal xCenter, BigDecimal yCenter, BigDecimal zoomStart, BigDecimal zoomStep, int maxIterationsConst, int maxIterationsLinear, PaletteType paletteType, int paletteSeed, int paletteStep, double colorCycle, int imageCountStart, int imageCount, String directoryName, FrameLog frameLog, boolean estimate, boolean estimateOnly) {
 		Path outDir = Paths.get("images", directoryName);
-		outDir.toFile().mkdirs();
+
+		// several processes (also on other machines) may render the same zoom into a shared directory
+		Properties job = new Properties();
+		job.setProperty("x", xCenter.toPlainString());
+		job.setProperty("y", yCenter.toPlainString());
+		job.setProperty("zoomStart", zoomStart.toPlainString());
+		job.setProperty("zoomStep", zoomStep.toPlainString());
+		job.setProperty("maxIterationsConst", String.valueOf(maxIterationsConst));
+		job.setProperty("maxIterationsLinear", String.valueOf(maxIterationsLinear));
+		job.setProperty("paletteType", paletteType.name());
+		job.setProperty("paletteSeed", String.valueOf(paletteSeed));
+		job.setProperty("paletteStep", String.valueOf(paletteStep));
+		job.setProperty("colorCycle", String.valueOf(colorCycle));
+		job.setProperty("width", String.valueOf(IMAGE_WIDTH));
+		job.setProperty("height", String.valueOf(IMAGE_HEIGHT));
+		FrameFarm frameFarm;
+		try {
+			frameFarm = FrameFarm.open(outDir.toFile(), job, System.out);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		} catch (IllegalStateException e) {
+			System.out.println(e.getMessage());
+			return;
+		}
 
 		try {
 			try (PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(outDir.resolve("readme.txt").toFile())))) {
@@ -243,19 +329,64 @@ public class MandelbrotZoom {
 		PaletteFactory paletteFactory = new PaletteFactory();
 		Palette palette = paletteFactory.createPalette(paletteType, paletteSeed, paletteStep);
 
+		CostEstimate[] estimates = null;
+		if (estimate) {
+			estimates = estimateZoomImages(outDir, xCenter, yCenter, zoomStart, zoomStep, maxIterationsConst, maxIterationsLinear, imageCountStart, imageCount);
+			if (estimateOnly) {
+				frameFarm.close();
+				return;
+			}
+		}
+
 		StopWatch stopWatch = new StopWatch();
+		double renderedMillis = 0;
+		double renderedEstimatedMillis = 0;
 
-		IntStream.range(imageCountStart, imageCount).forEach(index -> {
+		for (int index = imageCountStart; index < imageCount; index++) {
 			String filename = String.format("mandelbrot%04d.png", index);
 			File file = outDir.resolve(filename).toFile();
 			BigDecimal zoomPower = zoomStep.multiply(new BigDecimal(index));
 			double colorOffset = colorCycle * zoomStep.doubleValue() * index; 
-			renderImage(file, xCenter, yCenter, zoomStart, zoomPower, maxIterationsConst, maxIterationsLinear, palette, colorOffset);
-		});
+			StopWatch imageStopWatch = new StopWatch();
+			renderImage(file, index, xCenter, yCenter, zoomStart, zoomPower, maxIterationsConst, maxIterationsLinear, palette, colorOffset, frameLog, frameFarm);
+
+			if (estimates != null) {
+				// correct the remaining estimates with the ratio between the real and the estimated time of the rendered images
+				renderedMillis += imageStopWatch.getElapsedMilliseconds();
+				renderedEstimatedMillis += estimates[index - imageCountStart].getMillis();
+				long remainingEstimatedMillis = 0;
+				for (int i = index + 1; i < imageCount; i++) {
+					remainingEstimatedMillis += estimates[i - imageCountStart].getMillis();
+				}
+				double correction = renderedEstimatedMillis > 0 ? renderedMillis / renderedEstimatedMillis : 1.0;
+				System.out.println("  ETA " + StopWatch.formatMillis((long) (remainingEstimatedMillis * correction)));
+			}
+		}
+		frameFarm.close();
 
 		System.out.println("Calculated all " + imageCount + " images for " + directoryName + " in " + stopWatch);
 	}
 
+	private static CostEstimate[] estimateZoomImages(Path outDir, BigDecimal xCenter, BigDecimal yCenter, BigDecimal zoomStart, BigDecimal zoomStep, int maxIterationsConst, int maxIterationsLinear, int imageCountStart, int imageCount) {
+		CostEstimator costEstimator = new CostEstimator(mandelbrotRenderer);
+		CostEstimate[] estimates = new CostEstimate[Math.max(0, imageCount - imageCountStart)];
+		CostEstimate total = CostEstimate.ZERO;
+		for (int index = imageCountStart; index < imageCount; index++) {
+			File file = outDir.resolve(String.format("mandelbrot%04d.png", index)).toFile();
+			BigDecimal zoomPower = zoomStep.multiply(new BigDecimal(index));
+			CostEstimate estimate = CostEstimate.ZERO;
+			if (!file.exists()) {
+				int maxIterations = RenderSpec.maxIterations(zoomPower, maxIterationsConst, maxIterationsLinear);
+				estimate = costEstimator.estimate(RenderSpec.ofZoom(xCenter, yCenter, zoomStart, zoomPower, maxIterations, IMAGE_WIDTH, IMAGE_HEIGHT));
+				System.out.println("Estimated " + file.getName() + " with zoom " + zoomPower.toPlainString() + " " + estimate);
+			}
+			estimates[index - imageCountStart] = estimate;
+			total = total.add(estimate);
+		}
+		System.out.println("Estimated all " + estimates.length + " images " + total);
+		return estimates;
+	}
+
 	private static void printInfo(PrintStream out, BigDecimal xCenter, BigDecimal yCenter, BigDecimal zoomStart, BigDecimal zoomStep, int maxIterationsConst, int maxIterationsLinear, PaletteType paletteType, int paletteSeed, int paletteStep, int imageCount, String directoryName) {
 		out.println("x :                   " + xCenter);
 		out.println("y :                   " + yCenter);
@@ -270,41 +401,60 @@ public class MandelbrotZoom {
 		out.println("directoryName :       " + directoryName);		
 	}
 	
-	 public static void renderImage(File file, BigDecimal xCenter, BigDecimal yCenter, BigDecimal zoomStart, BigDecimal zoomPower, int maxIterationsConst, int maxIterationsLinear, Palette palette, double colorOffset) {
-		if (file.exists()) {
-			//System.out.println("Already calculated " + file.getName() + " with zoom " + zoomPower.toPlainString());
+	/**
+	 * Renders the image unless it was already rendered or another process is rendering it.
+	 */
+	public static void renderImage(File file, int index, BigDecimal xCenter, BigDecimal yCenter, BigDecimal zoomStart, BigDecimal zoomPower, int maxIterationsConst, int maxIterationsLinear, Palette palette, double colorOffset, FrameLog frameLog, FrameFarm frameFarm) {
+		try {
+			if (!frameFarm.claim(file)) {
+				//System.out.println("Already calculated " + file.getName() + " with zoom " + zoomPower.toPlainString());
+				return;
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
 			return;
 		}
 
-		StopWatch stopWatch = new StopWatch();
+		try {
+			renderClaimedImage(file, index, xCenter, yCenter, zoomStart, zoomPower, maxIterationsConst, maxIterationsLinear, palette, colorOffset, frameLog, frameFarm);
+		} finally {
+			frameFarm.release(file);
+		}
+	}
 
-		int precision = zoomPower.intValue() * 1 + 10;
-		MathContext mc = new MathContext(precision, RoundingMode.HALF_UP);
-		BigDecimal radius = zoomStart.multiply(BigDecimalMath.pow(BigDecimal.TEN, zoomPower.negate(), mc));
-		int maxIterations = maxIterationsConst + zoomPower.intValue() * maxIterationsLinear;
-		int imageWidth = 800;
-		int imageHeight = 800;
+	private static void renderClaimedImage(File file, int index, BigDecimal xCenter, BigDecimal yCenter, BigDecimal zoomStart, BigDecimal zoomPower, int maxIterationsConst, int maxIterationsLinear, Palette palette, double colorOffset, FrameLog frameLog, FrameFarm frameFarm) {
+		int maxIterations = RenderSpec.maxIterations(zoomPower, maxIterationsConst, maxIterationsLinear);
+		RenderSpec spec = RenderSpec.ofZoom(xCenter, yCenter, zoomStart, zoomPower, maxIterations, IMAGE_WIDTH, IMAGE_HEIGHT).withImage(file, palette, colorOffset);
 
-		Progress progress = new DummyProgress();
-		
-		BufferedImageMandelbrotResult result = new BufferedImageMandelbrotResult(imageWidth, imageHeight, palette, colorOffset);
-		mandelbrotRenderer.drawMandelbrot(
-				result,
-				xCenter,
-				yCenter,
-				radius,
-				radius,
-				precision,
-				maxIterations,
-				imageWidth,
-				imageHeight,
-				progress);
-		
+		RenderResult result;
 		try {
-			System.out.println("Calculated " + file.getName() + " with zoom " + zoomPower.toPlainString() + " in " + stopWatch);
-			ImageIO.write(result.getImage(), "png", file);
-		} catch (IOException e) {
-			e.printStackTrace();
-		}		
+			CompletableFuture<RenderResult> render = renderService.render(spec);
+			frameFarm.watch(file, render);
+			result = render.join();
+		} catch (CompletionException e) {
+			e.getCause().printStackTrace();
+			return;
+		} catch (CancellationException e) {
+			System.out.println("Stopped " + file.getName() + " after losing its lease");
+			return;
+		}
+
+		System.out.println("Calculated " + file.getName() + " with zoom " + zoomPower.toPlainString() + " in " + StopWatch.formatMillis((long) result.computeMillis));
+		System.out.println("  " + result.statistics);
+
+		if (frameLog != null) {
+			FrameLog.Frame frame = new FrameLog.Frame();
+			frame.index = index;
+			frame.zoom = zoomPower.doubleValue();
+			frame.precision = spec.precision;
+			frame.maxIterations = maxIterations;
+			frame.engine = AutoPrecisionMandelbrotRenderer.engine(spec.xRadius, spec.yRadius);
+			frame.computeMillis = result.computeMillis;
+			frame.colorizeMillis = result.colorizeMillis;
+			frame.encodeMillis = result.encodeMillis;
+			frame.bytes = file.length();
+			frame.setStatistics(result.statistics);
+			frameLog.log(frame);
+		}
 	}
 }
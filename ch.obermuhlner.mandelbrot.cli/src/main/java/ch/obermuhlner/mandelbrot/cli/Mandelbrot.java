@@ -2,39 +2,61 @@ package ch.obermuhlner.mandelbrot.cli;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.math.BigDecimal;
-import java.math.MathContext;
-import java.math.RoundingMode;
+import java.net.InetAddress;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
-import javax.imageio.ImageIO;
-
-import ch.obermuhlner.mandelbrot.javafx.DummyProgress;
-import ch.obermuhlner.mandelbrot.javafx.Progress;
+import ch.obermuhlner.mandelbrot.distributed.RenderCoordinator;
+import ch.obermuhlner.mandelbrot.distributed.RenderWorker;
+import ch.obermuhlner.mandelbrot.image.PaletteRowSupplier;
+import ch.obermuhlner.mandelbrot.image.PngWriter;
+import ch.obermuhlner.mandelbrot.management.RenderMetrics;
 import ch.obermuhlner.mandelbrot.palette.Palette;
 import ch.obermuhlner.mandelbrot.palette.PaletteFactory;
 import ch.obermuhlner.mandelbrot.palette.PaletteType;
 import ch.obermuhlner.mandelbrot.poi.PointOfInterest;
 import ch.obermuhlner.mandelbrot.poi.StandardPointsOfInterest;
 import ch.obermuhlner.mandelbrot.render.AutoPrecisionMandelbrotRenderer;
-import ch.obermuhlner.mandelbrot.render.BufferedImageMandelbrotResult;
+import ch.obermuhlner.mandelbrot.render.CostEstimate;
+import ch.obermuhlner.mandelbrot.render.CostEstimator;
+import ch.obermuhlner.mandelbrot.render.IterationFileReader;
 import ch.obermuhlner.mandelbrot.render.MandelbrotRenderer;
-import ch.obermuhlner.math.big.BigDecimalMath;
+import ch.obermuhlner.mandelbrot.render.RenderPool;
+import ch.obermuhlner.mandelbrot.render.RenderService;
+import ch.obermuhlner.mandelbrot.render.RenderSpec;
+import ch.obermuhlner.mandelbrot.render.RenderStatistics;
+import ch.obermuhlner.mandelbrot.util.AtomicFiles;
+import ch.obermuhlner.mandelbrot.util.StopWatch;
 
 public class Mandelbrot {
 
-	private static final MandelbrotRenderer mandelbrotRenderer = new AutoPrecisionMandelbrotRenderer();
-	
-	public static void main(String[] args) {
-		if (args.length == 0) {
-			printHelp();
-			return;
-		}
-		
-		List<String> fileNames = new ArrayList<>();
-		
+	private static final MandelbrotRenderer localMandelbrotRenderer = new AutoPrecisionMandelbrotRenderer();
+
+	/**
+	 * Renders the images, replaced by a {@link RenderCoordinator} in coordinator mode.
+	 */
+	private static MandelbrotRenderer mandelbrotRenderer = localMandelbrotRenderer;
+
+	private static final String ITERATIONS_EXTENSION = ".iterations";
+	private static final String MANDELBROT_EXTENSION = ".mandelbrot";
+
+	private static final int DEFAULT_BATCH_RENDERS = 2;
+
+	static class RenderOptions {
 		String name = null;
 		BigDecimal xCenter = null;
 		BigDecimal yCenter = null;
@@ -42,98 +64,459 @@ public class Mandelbrot {
 		PaletteType paletteType = null;
 		Integer paletteSeed = null;
 		Integer paletteStep = null;
+		double colorOffset = 0.0;
 		int width = 1920;
 		int height = 1080;
+		boolean saveIterations = false;
+		boolean estimate = false;
+		boolean estimateOnly = false;
+		boolean batch = false;
+		int batchRenders = DEFAULT_BATCH_RENDERS;
+		boolean daemon = false;
+		Integer daemonPort = null;
+		String coordinator = null;
+		String worker = null;
+
+		/**
+		 * The stream for the progress messages, the daemon uses standard output for its protocol.
+		 */
+		PrintStream log = System.out;
+
+		RenderOptions copy() {
+			RenderOptions result = new RenderOptions();
+			result.name = name;
+			result.xCenter = xCenter;
+			result.yCenter = yCenter;
+			result.zoom = zoom;
+			result.paletteType = paletteType;
+			result.paletteSeed = paletteSeed;
+			result.paletteStep = paletteStep;
+			result.colorOffset = colorOffset;
+			result.width = width;
+			result.height = height;
+			result.saveIterations = saveIterations;
+			result.estimate = estimate;
+			result.estimateOnly = estimateOnly;
+			result.batch = batch;
+			result.batchRenders = batchRenders;
+			result.daemon = daemon;
+			result.daemonPort = daemonPort;
+			result.coordinator = coordinator;
+			result.worker = worker;
+			result.log = log;
+			return result;
+		}
+	}
+
+	/**
+	 * The image written by a render.
+	 */
+	static class RenderedFile {
+		final File file;
+		final RenderStatistics statistics;
+
+		RenderedFile(File file, RenderStatistics statistics) {
+			this.file = file;
+			this.statistics = statistics;
+		}
+	}
+
+	/**
+	 * Sums the statistics of all files rendered in batch mode.
+	 */
+	private static class BatchSummary {
+		private final StopWatch stopWatch = new StopWatch();
+		private final PrintStream log;
+
+		private int renderedCount;
+		private int failedCount;
+		private long pixels;
+		private long cachedPixels;
+		private long iterations;
+
+		BatchSummary(PrintStream log) {
+			this.log = log;
+		}
+
+		synchronized void rendered(RenderStatistics statistics) {
+			renderedCount++;
+			if (statistics != null) {
+				pixels += statistics.getPixelCount();
+				cachedPixels += statistics.getCachedPixelCount();
+				iterations += statistics.getIterationCount();
+			}
+		}
+
+		synchronized void failed(String fileName, Throwable exception) {
+			failedCount++;
+			Throwable cause = exception instanceof CompletionException && exception.getCause() != null ? exception.getCause() : exception;
+			log.println("Failed to render file: " + fileName + "\n" + cause);
+		}
+
+		@Override
+		public synchronized String toString() {
+			double elapsedMillis = Math.max(1.0, stopWatch.getElapsedMilliseconds());
+			return String.format("Rendered %d files (%d failed) in %s: %d pixels (%d cached), %.2f Mpixels/s, %.1f Miterations/s",
+					renderedCount,
+					failedCount,
+					StopWatch.formatMillis((long) elapsedMillis),
+					pixels,
+					cachedPixels,
+					pixels / elapsedMillis / 1000,
+					iterations / elapsedMillis / 1000);
+		}
+	}
+
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			printHelp();
+			return;
+		}
+		
+		RenderMetrics.register();
+		
+		List<String> fileNames = new ArrayList<>();
+		RenderOptions options = new RenderOptions();
+		try {
+			if (!parseArguments(args, options, fileNames)) {
+				printHelp();
+				return;
+			}
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+			return;
+		}
 		
+		if (options.daemon) {
+			// the daemon uses standard output for its protocol
+			options.log = System.err;
+		}
+
+		if (options.worker != null) {
+			runWorker(options.worker, options.log);
+			return;
+		}
+
+		RenderCoordinator coordinator = null;
+		if (options.coordinator != null) {
+			int separatorIndex = options.coordinator.lastIndexOf(':');
+			try {
+				InetAddress bindAddress = separatorIndex < 0 ? null : InetAddress.getByName(options.coordinator.substring(0, separatorIndex));
+				int port = Integer.parseInt(options.coordinator.substring(separatorIndex + 1));
+				coordinator = new RenderCoordinator(bindAddress, port, RenderCoordinator.DEFAULT_TILE_SIZE, options.log);
+			} catch (IOException | NumberFormatException e) {
+				options.log.println("Failed to listen for workers on " + options.coordinator);
+				options.log.println(e.getMessage());
+				return;
+			}
+			mandelbrotRenderer = coordinator;
+		}
+
+		try {
+			renderFiles(fileNames, options);
+		} finally {
+			if (coordinator != null) {
+				try {
+					coordinator.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	private static void renderFiles(List<String> fileNames, RenderOptions options) {
+		if (options.daemon) {
+			new MandelbrotDaemon(options).run();
+			return;
+		}
+
+		fileNames = expandFileNames(fileNames, options.log);
+		if (options.batch) {
+			renderBatch(fileNames, options, options.batchRenders);
+			return;
+		}
+
+		RenderService renderService = createRenderService(1);
+		for (String fileName : fileNames) {
+			try {
+				renderFile(fileName, options, renderService).join();
+			} catch (IOException e) {
+				System.out.println("Failed to load file: " + fileName);
+				System.out.println(e.getMessage());
+			} catch (CompletionException e) {
+				System.out.println("Failed to render file: " + fileName);
+				System.out.println(e.getCause().getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Parses the command line arguments into the options and the file names.
+	 * 
+	 * @return <code>false</code> if the help was requested
+	 * @throws IllegalArgumentException if an option is unknown
+	 */
+	static boolean parseArguments(String[] args, RenderOptions options, List<String> fileNames) {
 		int argumentIndex = 0;
 		while(argumentIndex < args.length) {
 		
 			switch(args[argumentIndex]) {
 			case "-?":
 			case "--help":
-				printHelp();
-				return;
+				return false;
 				
 			case "-n":
 			case "--name":
-				name = stringArgument(args, ++argumentIndex, "mandelbrot");
+				options.name = stringArgument(args, ++argumentIndex, "mandelbrot");
 				break;
 			case "-x":
 			case "--x":
-				xCenter = bigDecimalArgument(args, ++argumentIndex, BigDecimal.ZERO);
+				options.xCenter = bigDecimalArgument(args, ++argumentIndex, BigDecimal.ZERO);
 				break;
 			case "-y":
 			case "--y":
-				yCenter = bigDecimalArgument(args, ++argumentIndex, BigDecimal.ZERO);
+				options.yCenter = bigDecimalArgument(args, ++argumentIndex, BigDecimal.ZERO);
 				break;
 			case "-z":
 			case "--zoom":
-				zoom = bigDecimalArgument(args, ++argumentIndex, new BigDecimal("5"));
+				options.zoom = bigDecimalArgument(args, ++argumentIndex, new BigDecimal("5"));
 				break;
 			case "-t":
 			case "--paletteType":
-				paletteType = PaletteType.valueOf(stringArgument(args, ++argumentIndex, "RandomColor"));
+				options.paletteType = PaletteType.valueOf(stringArgument(args, ++argumentIndex, "RandomColor"));
 				break;
 			case "-r":
 			case "--paletteSeed":
-				paletteSeed = integerArgument(args, ++argumentIndex, 1);
+				options.paletteSeed = integerArgument(args, ++argumentIndex, 1);
 				break;
 			case "-s":
 			case "--paletteStep":
-				paletteSeed = integerArgument(args, ++argumentIndex, 20);
+				options.paletteStep = integerArgument(args, ++argumentIndex, 20);
+				break;
+			case "-o":
+			case "--colorOffset":
+				options.colorOffset = doubleArgument(args, ++argumentIndex, 0.0);
+				break;
+			case "-i":
+			case "--saveIterations":
+				options.saveIterations = true;
+				break;
+			case "-e":
+			case "--estimate":
+				options.estimate = true;
+				break;
+			case "--estimateOnly":
+				options.estimate = true;
+				options.estimateOnly = true;
+				break;
+			case "-b":
+			case "--batch":
+				options.batch = true;
+				break;
+			case "--batchRenders":
+				options.batchRenders = integerArgument(args, ++argumentIndex, DEFAULT_BATCH_RENDERS);
+				break;
+			case "-d":
+			case "--daemon":
+				options.daemon = true;
+				break;
+			case "--daemonPort":
+				options.daemon = true;
+				options.daemonPort = integerArgument(args, ++argumentIndex, MandelbrotDaemon.DEFAULT_PORT);
+				break;
+			case "--coordinator":
+				options.coordinator = stringArgument(args, ++argumentIndex, String.valueOf(RenderCoordinator.DEFAULT_PORT));
+				break;
+			case "--worker":
+				options.worker = stringArgument(args, ++argumentIndex, "localhost:" + RenderCoordinator.DEFAULT_PORT);
 				break;
 			case "-w":
 			case "--width":
-				width = integerArgument(args, ++argumentIndex, 1920);
+				options.width = integerArgument(args, ++argumentIndex, 1920);
 				break;
 			case "-h":
 			case "--height":
-				height = integerArgument(args, ++argumentIndex, 1080);
+				options.height = integerArgument(args, ++argumentIndex, 1080);
 				break;
 			default:
 				String arg = args[argumentIndex];
 				if (arg.startsWith("-")) {
-					System.out.println("Unknown option: " + arg);
-					return;
+					throw new IllegalArgumentException("Unknown option: " + arg);
 				}
 				fileNames.add(arg);
 			}
 			
 			argumentIndex++;
 		}
-		
+		return true;
+	}
+
+	/**
+	 * Renders the tiles sent by the coordinator at the specified <code>host:port</code> until the process is stopped.
+	 */
+	private static void runWorker(String worker, PrintStream log) {
+		int separatorIndex = worker.lastIndexOf(':');
+		String host = separatorIndex < 0 ? worker : worker.substring(0, separatorIndex);
+		int port = separatorIndex < 0 ? RenderCoordinator.DEFAULT_PORT : Integer.parseInt(worker.substring(separatorIndex + 1));
+		new RenderWorker(host, port, new AutoPrecisionMandelbrotRenderer(), log).run();
+	}
+
+	/**
+	 * Renders all files with several renders at the same time, sharing the tiles of the batch {@link RenderPool}.
+	 * 
+	 * <p>The PNG encoding runs in a separate thread, so that the next image is calculated while the previous one is written.
+	 * A failing file is reported and does not stop the batch.</p>
+	 */
+	private static void renderBatch(List<String> fileNames, RenderOptions options, int batchRenders) {
+		BatchSummary summary = new BatchSummary(options.log);
+		RenderService renderService = createRenderService(batchRenders);
+		ExecutorService encodeExecutor = Executors.newSingleThreadExecutor(namedThreadFactory("mandelbrot-batch-encode-"));
+		renderService.setEncodeExecutor(encodeExecutor);
+		// limits the images that are calculated or wait to be encoded
+		Semaphore pendingImages = new Semaphore(batchRenders * 2);
+
+		List<CompletableFuture<?>> futures = new ArrayList<>();
 		for (String fileName : fileNames) {
+			pendingImages.acquireUninterruptibly();
+			CompletableFuture<RenderedFile> future;
 			try {
-				PointOfInterest pointOfInterest = PointOfInterest.load(new File(fileName));
-				if (name != null) {
-					pointOfInterest.name = name;
-				}
-				if (xCenter != null) {
-					pointOfInterest.x = xCenter;
-				}
-				if (yCenter != null) {
-					pointOfInterest.y = yCenter;
+				future = renderFile(fileName, options, renderService);
+			} catch (IOException | RuntimeException e) {
+				future = new CompletableFuture<>();
+				future.completeExceptionally(e);
+			}
+			futures.add(future.handle((renderedFile, exception) -> {
+				pendingImages.release();
+				if (exception == null) {
+					summary.rendered(renderedFile.statistics);
+				} else {
+					summary.failed(fileName, exception);
 				}
-				if (zoom != null) {
-					pointOfInterest.zoom = zoom.doubleValue(); // TODO make poi.zoom a BigDecimal
+				return null;
+			}));
+		}
+
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+		encodeExecutor.shutdown();
+
+		options.log.println(summary);
+	}
+
+	/**
+	 * Creates the service that renders the images with the renderer of this process (the coordinator in coordinator mode).
+	 */
+	static RenderService createRenderService(int concurrentRenders) {
+		return new RenderService(mandelbrotRenderer, RenderPool.BATCH, concurrentRenders);
+	}
+
+	private static ThreadFactory namedThreadFactory(String prefix) {
+		AtomicInteger threadCount = new AtomicInteger();
+		return runnable -> new Thread(runnable, prefix + threadCount.getAndIncrement());
+	}
+
+	/**
+	 * Expands directories into the contained '.mandelbrot' and '.iterations' files and file names with wildcards ('*' and '?') into the matching files.
+	 */
+	static List<String> expandFileNames(List<String> fileNames, PrintStream log) {
+		List<String> result = new ArrayList<>();
+		for (String fileName : fileNames) {
+			File file = new File(fileName);
+			if (file.isDirectory()) {
+				addMatchingFiles(result, file, name -> name.endsWith(MANDELBROT_EXTENSION) || name.endsWith(ITERATIONS_EXTENSION), log);
+			} else if (file.getName().contains("*") || file.getName().contains("?")) {
+				File directory = file.getParentFile() == null ? new File(".") : file.getParentFile();
+				PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + file.getName());
+				addMatchingFiles(result, directory, name -> matcher.matches(Paths.get(name)), log);
+			} else {
+				result.add(fileName);
+			}
+		}
+		return result;
+	}
+
+	private static void addMatchingFiles(List<String> result, File directory, Predicate<String> nameFilter, PrintStream log) {
+		File[] files = directory.listFiles((dir, name) -> nameFilter.test(name));
+		if (files == null) {
+			log.println("Failed to list files in directory: " + directory);
+			return;
+		}
+		Arrays.sort(files);
+		for (File file : files) {
+			if (file.isFile()) {
+				result.add(file.getPath());
+			}
+		}
+	}
+
+	/**
+	 * Renders a '.mandelbrot' file or recolors an '.iterations' file.
+	 * 
+	 * @param renderService the service that renders and writes the image
+	 * @return the future rendered file, completed when the image is written
+	 */
+	static CompletableFuture<RenderedFile> renderFile(String fileName, RenderOptions options, RenderService renderService) throws IOException {
+		if (fileName.endsWith(ITERATIONS_EXTENSION)) {
+			try (IterationFileReader iterationFileReader = new IterationFileReader(new File(fileName))) {
+				PointOfInterest pointOfInterest = iterationFileReader.getPointOfInterest();
+				if (options.name != null) {
+					pointOfInterest.name = options.name;
 				}
-				if (paletteType != null) {
-					pointOfInterest.paletteType = paletteType;
+				if (options.paletteType != null) {
+					pointOfInterest.paletteType = options.paletteType;
 				}
-				if (paletteSeed != null) {
-					pointOfInterest.paletteSeed = paletteSeed;
+				if (options.paletteSeed != null) {
+					pointOfInterest.paletteSeed = options.paletteSeed;
 				}
-				if (paletteStep != null) {
-					pointOfInterest.paletteStep = paletteStep;
+				if (options.paletteStep != null) {
+					pointOfInterest.paletteStep = options.paletteStep;
 				}
-				
-				renderImage(pointOfInterest, width, height);
-				System.out.println("Rendered " + fileName);
-			} catch (IOException e) {
-				System.out.println("Failed to load mandelbrot file: " + fileName);
-				System.out.println(e.getMessage());
+
+				StopWatch stopWatch = new StopWatch();
+				File file = recolorImage(pointOfInterest, iterationFileReader, options.colorOffset);
+				options.log.println("Recolored " + fileName + " in " + stopWatch);
+				return CompletableFuture.completedFuture(new RenderedFile(file, null));
 			}
 		}
+
+		PointOfInterest pointOfInterest = PointOfInterest.load(new File(fileName));
+		if (options.name != null) {
+			pointOfInterest.name = options.name;
+		}
+		if (options.xCenter != null) {
+			pointOfInterest.x = options.xCenter;
+		}
+		if (options.yCenter != null) {
+			pointOfInterest.y = options.yCenter;
+		}
+		if (options.zoom != null) {
+			pointOfInterest.zoom = options.zoom.doubleValue(); // TODO make poi.zoom a BigDecimal
+		}
+		if (options.paletteType != null) {
+			pointOfInterest.paletteType = options.paletteType;
+		}
+		if (options.paletteSeed != null) {
+			pointOfInterest.paletteSeed = options.paletteSeed;
+		}
+		if (options.paletteStep != null) {
+			pointOfInterest.paletteStep = options.paletteStep;
+		}
+
+		File file = new File(pointOfInterest.name + ".png");
+		return renderImage(pointOfInterest, options.width, options.height, options.colorOffset, options.saveIterations, options.estimate, options.estimateOnly, renderService, options.log).thenApply(statistics -> {
+			if (options.estimateOnly) {
+				return new RenderedFile(null, null);
+			}
+			StringBuilder message = new StringBuilder("Rendered " + fileName);
+			if (statistics != null) {
+				message.append("\n  " + statistics);
+				for (RenderStatistics.ThreadStatistics threadStatistics : statistics.getThreadStatistics()) {
+					message.append("\n    " + threadStatistics);
+				}
+			}
+			options.log.println(message);
+			return new RenderedFile(file, statistics);
+		});
 	}
 	
 	private static void printHelp() {
@@ -164,6 +547,46 @@ public class Mandelbrot {
 		System.out.println("  -s");
 		System.out.println("  --paletteStep");
 		System.out.println("    Number of steps used in the palette (if applicable for the palette type).");
+		System.out.println("  -o");
+		System.out.println("  --colorOffset");
+		System.out.println("    Offset added to the iterations before looking up the palette color.");
+		System.out.println("  -i");
+		System.out.println("  --saveIterations");
+		System.out.println("    Saves the raw iterations of every pixel into a '" + ITERATIONS_EXTENSION + "' file.");
+		System.out.println("    Passing a '" + ITERATIONS_EXTENSION + "' file instead of a '.mandelbrot' file");
+		System.out.println("    recolors it with the specified palette options without recalculating it.");
+		System.out.println("  -e");
+		System.out.println("  --estimate");
+		System.out.println("    Prints the estimated calculation time before rendering the image.");
+		System.out.println("  --estimateOnly");
+		System.out.println("    Only prints the estimated calculation time without rendering the image.");
+		System.out.println("  -b");
+		System.out.println("  --batch");
+		System.out.println("    Renders several files at the same time and writes the images while the next ones are calculated.");
+		System.out.println("    Files that fail are reported and do not stop the batch.");
+		System.out.println("  --batchRenders");
+		System.out.println("    Number of files rendered at the same time in batch and daemon mode (default " + DEFAULT_BATCH_RENDERS + ").");
+		System.out.println("  -d");
+		System.out.println("  --daemon");
+		System.out.println("    Keeps the renderer running and reads render jobs from standard input, one per line.");
+		System.out.println("    Every job line contains the options and files like the command line.");
+		System.out.println("    The options of the command line are the defaults of every job.");
+		System.out.println("    For every file a line 'OK <image file> <milliseconds>' or 'ERROR <file> <message>' is written,");
+		System.out.println("    followed by a line 'DONE' after all files of the job. 'quit' ends the daemon.");
+		System.out.println("  --daemonPort");
+		System.out.println("    Reads the render jobs from connections to the specified local port instead of standard input (default " + MandelbrotDaemon.DEFAULT_PORT + ").");
+		System.out.println("  --coordinator");
+		System.out.println("    Distributes the tiles of the images to the workers connected to the specified [address:]port (default " + RenderCoordinator.DEFAULT_PORT + " on all addresses).");
+		System.out.println("    The workers are not authenticated, listen on the address of a trusted network only.");
+		System.out.println("    The tiles of lost workers are given to other workers, tiles of slow workers are also calculated by free workers.");
+		System.out.println("    If no worker is connected for 30 seconds the tiles are calculated locally.");
+		System.out.println("  --worker");
+		System.out.println("    Runs as a worker for the coordinator at the specified host:port (default localhost:" + RenderCoordinator.DEFAULT_PORT + ").");
+		System.out.println("    The worker connects again if the connection is lost.");
+		System.out.println();
+		System.out.println("Files:");
+		System.out.println("  The '.mandelbrot' or '" + ITERATIONS_EXTENSION + "' files to render.");
+		System.out.println("  Directories are expanded to the contained files, wildcards '*' and '?' to the matching files.");
 		System.out.println();
 		System.out.println("Points of interest:");
 		for (PointOfInterest pointOfInterest : StandardPointsOfInterest.POINTS_OF_INTEREST) {
@@ -187,42 +610,39 @@ public class Mandelbrot {
 		return Integer.parseInt(stringArgument(args, index, String.valueOf(defaultValue)));
 	}
 
-	private static void renderImage(PointOfInterest poi, int width, int height) {
+	private static double doubleArgument(String[] args, int index, double defaultValue) {
+		return Double.parseDouble(stringArgument(args, index, String.valueOf(defaultValue)));
+	}
+
+	private static File recolorImage(PointOfInterest poi, IterationFileReader iterationFileReader, double colorOffset) throws IOException {
 		PaletteFactory paletteFactory = new PaletteFactory();
 		Palette palette = paletteFactory.createPalette(poi.paletteType, poi.paletteSeed, poi.paletteStep);
-		double colorOffset = 0.0;
 
 		File file = new File(poi.name + ".png");
+		AtomicFiles.write(file, tempFile -> new PngWriter(RenderPool.BATCH).write(tempFile, iterationFileReader.getWidth(), iterationFileReader.getHeight(), new PaletteRowSupplier(iterationFileReader, palette, colorOffset)));
+		return file;
+	}
+
+	private static CompletableFuture<RenderStatistics> renderImage(PointOfInterest poi, int width, int height, double colorOffset, boolean saveIterations, boolean estimate, boolean estimateOnly, RenderService renderService, PrintStream log) {
+		PaletteFactory paletteFactory = new PaletteFactory();
+		Palette palette = paletteFactory.createPalette(poi.paletteType, poi.paletteSeed, poi.paletteStep);
+
 		BigDecimal zoomPower = BigDecimal.valueOf(poi.zoom);
-		
-		int precision = zoomPower.intValue() * 1 + 10;
-		MathContext mc = new MathContext(precision, RoundingMode.HALF_UP);
-		
-		Progress progress = new DummyProgress();
-		
-		int maxIterations = poi.maxIterationsConst + zoomPower.intValue() * poi.maxIterationsLinear;
-		BigDecimal radius = new BigDecimal(2).multiply(BigDecimalMath.pow(BigDecimal.TEN, zoomPower.negate(), mc));
-		BigDecimal minWidthHeight = new BigDecimal(Math.min(width, height));
-		BigDecimal xRadius = radius.multiply(new BigDecimal(width), mc).divide(minWidthHeight, mc);
-		BigDecimal yRadius = radius.multiply(new BigDecimal(height), mc).divide(minWidthHeight, mc);
-		
-		BufferedImageMandelbrotResult result = new BufferedImageMandelbrotResult(width, height, palette, colorOffset);
-		mandelbrotRenderer.drawMandelbrot(
-				result,
-				poi.x,
-				poi.y,
-				xRadius,
-				yRadius,
-				precision,
-				maxIterations,
-				width,
-				height,
-				progress);
-		
-		try {
-			ImageIO.write(result.getImage(), "png", file);
-		} catch (IOException e) {
-			e.printStackTrace();
+		int maxIterations = RenderSpec.maxIterations(zoomPower, poi.maxIterationsConst, poi.maxIterationsLinear);
+		RenderSpec spec = RenderSpec.ofZoom(poi.x, poi.y, new BigDecimal(2), zoomPower, maxIterations, width, height);
+
+		if (estimate) {
+			CostEstimate costEstimate = new CostEstimator(localMandelbrotRenderer).estimate(spec);
+			log.println("Estimated " + poi.name + " " + costEstimate);
+			if (estimateOnly) {
+				return CompletableFuture.completedFuture(null);
+			}
+		}
+
+		spec = spec.withImage(new File(poi.name + ".png"), palette, colorOffset);
+		if (saveIterations) {
+			spec = spec.withIterationsFile(new File(poi.name + ITERATIONS_EXTENSION), poi);
 		}
+		return renderService.render(spec).thenApply(result -> result.statistics);
 	}
 }
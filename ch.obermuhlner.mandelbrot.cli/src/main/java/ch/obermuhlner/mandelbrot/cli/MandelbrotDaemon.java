@@ -0,0 +1,187 @@
+package ch.obermuhlner.mandelbrot.cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import ch.obermuhlner.mandelbrot.javafx.DummyProgress;
+import ch.obermuhlner.mandelbrot.render.AutoPrecisionMandelbrotRenderer;
+import ch.obermuhlner.mandelbrot.render.MandelbrotRenderer;
+import ch.obermuhlner.mandelbrot.render.RenderService;
+import ch.obermuhlner.mandelbrot.util.StopWatch;
+
+/**
+ * Keeps a warmed up renderer running and renders the jobs read from standard input or from connections to a local port.
+ * 
+ * <p>Every line is a job with the same options and files as the command line of {@link Mandelbrot},
+ * the options of the command line that started the daemon are the defaults of every job.
+ * The daemon answers every file with a line <code>OK &lt;image file&gt; &lt;milliseconds&gt;</code>
+ * or <code>ERROR &lt;file&gt; &lt;message&gt;</code> and ends every job with a line <code>DONE</code>.
+ * The line <code>quit</code> ends the daemon (or the connection).</p>
+ * 
+ * <p>The progress messages of the renders are written to standard error.
+ * The options that select another mode of the command line tool (batch, daemon, coordinator or worker) are rejected in a job.</p>
+ */
+public class MandelbrotDaemon {
+
+	static final int DEFAULT_PORT = 7801;
+
+	private static final int WARM_UP_REPETITIONS = 5;
+	private static final int WARM_UP_SIZE = 64;
+
+	private static final List<String> MODE_OPTIONS = Arrays.asList("-b", "--batch", "--batchRenders", "-d", "--daemon", "--daemonPort", "--coordinator", "--worker");
+
+	private final Mandelbrot.RenderOptions defaultOptions;
+	private final RenderService renderService;
+
+	MandelbrotDaemon(Mandelbrot.RenderOptions defaultOptions) {
+		this.defaultOptions = defaultOptions.copy();
+		this.defaultOptions.log = System.err;
+		// the jobs of several connections are rendered at the same time
+		this.renderService = Mandelbrot.createRenderService(defaultOptions.batchRenders);
+	}
+
+	public void run() {
+		warmUp();
+
+		if (defaultOptions.daemonPort == null) {
+			serve(new InputStreamReader(System.in, StandardCharsets.UTF_8), new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+		} else {
+			serveSocket(defaultOptions.daemonPort);
+		}
+	}
+
+	/**
+	 * Calculates small images with the double and the BigDecimal renderer, so that the first job does not run in the interpreter.
+	 */
+	private void warmUp() {
+		StopWatch stopWatch = new StopWatch();
+		MandelbrotRenderer mandelbrotRenderer = new AutoPrecisionMandelbrotRenderer();
+		BigDecimal x = new BigDecimal("-0.75");
+		BigDecimal y = new BigDecimal("0.1");
+		for (int i = 0; i < WARM_UP_REPETITIONS; i++) {
+			for (BigDecimal radius : new BigDecimal[] { new BigDecimal("0.01"), new BigDecimal("1E-20") }) {
+				mandelbrotRenderer.drawMandelbrot((pixelX, pixelY, iterations) -> {}, x, y, radius, radius, 30, 1000, WARM_UP_SIZE, WARM_UP_SIZE, new DummyProgress());
+			}
+		}
+		defaultOptions.log.println("Warmed up in " + stopWatch);
+	}
+
+	private void serveSocket(int port) {
+		try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+			defaultOptions.log.println("Listening on " + serverSocket.getLocalSocketAddress());
+			while (true) {
+				Socket socket = serverSocket.accept();
+				Thread thread = new Thread(() -> {
+					try (Socket connection = socket) {
+						serve(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8), new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8));
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}, "mandelbrot-daemon-" + socket.getPort());
+				thread.setDaemon(true);
+				thread.start();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void serve(Reader reader, Writer writer) {
+		BufferedReader in = new BufferedReader(reader);
+		PrintWriter out = new PrintWriter(writer, true);
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty()) {
+					continue;
+				}
+				if (line.equals("quit")) {
+					break;
+				}
+				renderJob(line, out);
+				out.println("DONE");
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void renderJob(String line, PrintWriter out) {
+		Mandelbrot.RenderOptions options = defaultOptions.copy();
+		List<String> fileNames = new ArrayList<>();
+		String[] args = tokenize(line);
+		for (String arg : args) {
+			if (MODE_OPTIONS.contains(arg)) {
+				out.println("ERROR - " + arg + " is not available in daemon mode");
+				return;
+			}
+		}
+		try {
+			if (!Mandelbrot.parseArguments(args, options, fileNames)) {
+				out.println("ERROR - help is not available in daemon mode");
+				return;
+			}
+		} catch (IllegalArgumentException e) {
+			out.println("ERROR - " + e.getMessage());
+			return;
+		}
+
+		for (String fileName : Mandelbrot.expandFileNames(fileNames, options.log)) {
+			StopWatch stopWatch = new StopWatch();
+			try {
+				Mandelbrot.RenderedFile renderedFile = Mandelbrot.renderFile(fileName, options, renderService).join();
+				String imageFile = renderedFile.file == null ? "-" : renderedFile.file.getAbsolutePath();
+				out.println("OK " + imageFile + " " + (long) stopWatch.getElapsedMilliseconds());
+			} catch (IOException | RuntimeException e) {
+				Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+				out.println("ERROR " + fileName + " " + cause);
+			}
+		}
+	}
+
+	/**
+	 * Splits a job line into arguments at white space, arguments in double quotes may contain white space.
+	 */
+	static String[] tokenize(String line) {
+		List<String> result = new ArrayList<>();
+		StringBuilder token = null;
+		boolean quoted = false;
+		for (char c : line.toCharArray()) {
+			if (c == '"') {
+				quoted = !quoted;
+				if (token == null) {
+					token = new StringBuilder();
+				}
+			} else if (Character.isWhitespace(c) && !quoted) {
+				if (token != null) {
+					result.add(token.toString());
+					token = null;
+				}
+			} else {
+				if (token == null) {
+					token = new StringBuilder();
+				}
+				token.append(c);
+			}
+		}
+		if (token != null) {
+			result.add(token.toString());
+		}
+		return result.toArray(new String[0]);
+	}
+}
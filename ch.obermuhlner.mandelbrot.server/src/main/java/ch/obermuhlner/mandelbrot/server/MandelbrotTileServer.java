@@ -0,0 +1,293 @@
+package ch.obermuhlner.mandelbrot.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import ch.obermuhlner.mandelbrot.image.PaletteRowSupplier;
+import ch.obermuhlner.mandelbrot.image.PngWriter;
+import ch.obermuhlner.mandelbrot.management.RenderMetrics;
+import ch.obermuhlner.mandelbrot.palette.Palette;
+import ch.obermuhlner.mandelbrot.palette.PaletteFactory;
+import ch.obermuhlner.mandelbrot.palette.PaletteType;
+import ch.obermuhlner.mandelbrot.render.IterationData;
+import ch.obermuhlner.mandelbrot.render.RenderCache;
+
+/**
+ * Serves PNG tiles of the Mandelbrot set for web map viewers at <code>http://localhost:&lt;port&gt;/&lt;z&gt;/&lt;x&gt;/&lt;y&gt;.png</code>.
+ * 
+ * <p>The palette can be changed per request with the query parameters <code>palette</code>, <code>seed</code> and <code>step</code>,
+ * the cached iterations are then only colored again.
+ * If too many tiles wait to be rendered the server answers with <code>503 Service Unavailable</code>.</p>
+ */
+public class MandelbrotTileServer {
+
+	private static final int TILE_SIZE = 256;
+	private static final int MAX_ZOOM = 1000;
+	private static final int MAX_PALETTES = 16;
+
+	private static final Pattern TILE_PATH = Pattern.compile("/(\\d+)/(\\d+)/(\\d+)(\\.png)?");
+
+	private final TileProvider tileProvider;
+	private final PaletteType paletteType;
+	private final int paletteSeed;
+	private final int paletteStep;
+
+	private final PaletteFactory paletteFactory = new PaletteFactory();
+	private final Map<String, Palette> palettes = new LinkedHashMap<String, Palette>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Palette> eldest) {
+			return size() > MAX_PALETTES;
+		}
+	};
+
+	public MandelbrotTileServer(TileProvider tileProvider, PaletteType paletteType, int paletteSeed, int paletteStep) {
+		this.tileProvider = tileProvider;
+		this.paletteType = paletteType;
+		this.paletteSeed = paletteSeed;
+		this.paletteStep = paletteStep;
+	}
+
+	public static void main(String[] args) {
+		int port = 7802;
+		PaletteType paletteType = PaletteType.RandomColor;
+		int paletteSeed = 1;
+		int paletteStep = 20;
+		int maxIterationsConst = 1000;
+		int maxIterationsLinear = 100;
+		int httpThreads = 16;
+		int renderThreads = 2;
+		int queueSize = 64;
+		int memoryTiles = 256;
+		File defaultCacheDirectory = new File(new File(System.getProperty("user.home", "."), "Mandelbrot"), "tiles");
+		String cacheDirectory = defaultCacheDirectory.getPath();
+		long cacheMaxBytes = 1024L * 1024 * 1024;
+
+		int argumentIndex = 0;
+		while(argumentIndex < args.length) {
+			switch(args[argumentIndex]) {
+			case "-?":
+			case "--help":
+				printHelp();
+				return;
+			case "-p":
+			case "--port":
+				port = integerArgument(args, ++argumentIndex, port);
+				break;
+			case "-t":
+			case "--paletteType":
+				paletteType = PaletteType.valueOf(stringArgument(args, ++argumentIndex, "RandomColor"));
+				break;
+			case "-r":
+			case "--paletteSeed":
+				paletteSeed = integerArgument(args, ++argumentIndex, 1);
+				break;
+			case "-s":
+			case "--paletteStep":
+				paletteStep = integerArgument(args, ++argumentIndex, 20);
+				break;
+			case "--maxIterationsConst":
+				maxIterationsConst = integerArgument(args, ++argumentIndex, maxIterationsConst);
+				break;
+			case "--maxIterationsLinear":
+				maxIterationsLinear = integerArgument(args, ++argumentIndex, maxIterationsLinear);
+				break;
+			case "--httpThreads":
+				httpThreads = integerArgument(args, ++argumentIndex, httpThreads);
+				break;
+			case "--renderThreads":
+				renderThreads = integerArgument(args, ++argumentIndex, renderThreads);
+				break;
+			case "--queueSize":
+				queueSize = integerArgument(args, ++argumentIndex, queueSize);
+				break;
+			case "--memoryTiles":
+				memoryTiles = integerArgument(args, ++argumentIndex, memoryTiles);
+				break;
+			case "--cacheDirectory":
+				cacheDirectory = stringArgument(args, ++argumentIndex, cacheDirectory);
+				break;
+			case "--cacheMaxBytes":
+				cacheMaxBytes = Long.parseLong(stringArgument(args, ++argumentIndex, String.valueOf(cacheMaxBytes)));
+				break;
+			default:
+				System.out.println("Unknown option: " + args[argumentIndex]);
+				return;
+			}
+			argumentIndex++;
+		}
+
+		RenderCache renderCache = new RenderCache(new File(cacheDirectory), cacheMaxBytes);
+		RenderMetrics.getInstance().setRenderCache(renderCache);
+		RenderMetrics.register();
+
+		TileProvider tileProvider = new TileProvider(TILE_SIZE, maxIterationsConst, maxIterationsLinear, renderThreads, queueSize, memoryTiles, renderCache);
+		MandelbrotTileServer tileServer = new MandelbrotTileServer(tileProvider, paletteType, paletteSeed, paletteStep);
+		try {
+			tileServer.start(port, httpThreads);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static void printHelp() {
+		System.out.println("Options:");
+		System.out.println("  -p");
+		System.out.println("  --port");
+		System.out.println("    The port on localhost (default 7802).");
+		System.out.println("  -t");
+		System.out.println("  --paletteType");
+		System.out.println("    The default palette type.");
+		System.out.println("    One of: " + Arrays.toString(PaletteType.values()));
+		System.out.println("  -r");
+		System.out.println("  --paletteSeed");
+		System.out.println("    Random seed value for the default palette (if applicable for the palette type).");
+		System.out.println("  -s");
+		System.out.println("  --paletteStep");
+		System.out.println("    Number of steps used in the default palette (if applicable for the palette type).");
+		System.out.println("  --maxIterationsConst");
+		System.out.println("  --maxIterationsLinear");
+		System.out.println("    The maximum iterations of a tile are const + linear * zoom (in powers of 10).");
+		System.out.println("  --httpThreads");
+		System.out.println("    Number of threads that answer requests.");
+		System.out.println("  --renderThreads");
+		System.out.println("    Number of tiles rendered at the same time.");
+		System.out.println("  --queueSize");
+		System.out.println("    Number of tiles that may wait to be rendered before requests are rejected.");
+		System.out.println("  --memoryTiles");
+		System.out.println("    Number of tiles kept in memory.");
+		System.out.println("  --cacheDirectory");
+		System.out.println("    The directory of the tiles cached on disk.");
+		System.out.println("  --cacheMaxBytes");
+		System.out.println("    The maximum size of the tiles cached on disk in bytes, 0 disables the disk cache.");
+		System.out.println();
+		System.out.println("Tiles:");
+		System.out.println("  http://localhost:<port>/<z>/<x>/<y>.png?palette=<paletteType>&seed=<paletteSeed>&step=<paletteStep>");
+	}
+
+	private static String stringArgument(String[] args, int index, String defaultValue) {
+		if (index < args.length) {
+			return args[index];
+		} else {
+			return defaultValue;
+		}
+	}
+
+	private static int integerArgument(String[] args, int index, int defaultValue) {
+		return Integer.parseInt(stringArgument(args, index, String.valueOf(defaultValue)));
+	}
+
+	public HttpServer start(int port, int httpThreads) throws IOException {
+		HttpServer httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		httpServer.createContext("/", this::handle);
+		httpServer.setExecutor(Executors.newFixedThreadPool(httpThreads));
+		httpServer.start();
+		System.out.println("Serving tiles at http://localhost:" + httpServer.getAddress().getPort() + "/{z}/{x}/{y}.png");
+		return httpServer;
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				sendText(exchange, 405, "Method not allowed");
+				return;
+			}
+
+			Matcher matcher = TILE_PATH.matcher(exchange.getRequestURI().getPath());
+			if (!matcher.matches()) {
+				sendText(exchange, 404, "Not found, expected /<z>/<x>/<y>.png");
+				return;
+			}
+			BigInteger zoom = new BigInteger(matcher.group(1));
+			if (zoom.compareTo(BigInteger.valueOf(MAX_ZOOM)) > 0) {
+				sendText(exchange, 404, "Zoom out of range: " + zoom);
+				return;
+			}
+			TileKey tileKey = new TileKey(zoom.intValue(), new BigInteger(matcher.group(2)), new BigInteger(matcher.group(3)));
+			if (!tileKey.isValid()) {
+				sendText(exchange, 404, "Tile out of range: " + tileKey);
+				return;
+			}
+
+			Palette palette;
+			try {
+				palette = palette(exchange.getRequestURI().getQuery());
+			} catch (IllegalArgumentException e) {
+				sendText(exchange, 400, "Bad palette: " + e.getMessage());
+				return;
+			}
+
+			IterationData iterationData;
+			try {
+				iterationData = tileProvider.getTile(tileKey).get();
+			} catch (RejectedExecutionException e) {
+				exchange.getResponseHeaders().set("Retry-After", "1");
+				sendText(exchange, 503, "Too many tiles waiting to be rendered");
+				return;
+			} catch (InterruptedException | ExecutionException e) {
+				sendText(exchange, 500, "Failed to render tile " + tileKey + ": " + e);
+				return;
+			}
+
+			ByteArrayOutputStream png = new ByteArrayOutputStream();
+			new PngWriter(Runnable::run, 1).write(png, tileProvider.getTileSize(), tileProvider.getTileSize(), new PaletteRowSupplier(iterationData, palette, 0.0));
+
+			exchange.getResponseHeaders().set("Content-Type", "image/png");
+			exchange.getResponseHeaders().set("Cache-Control", "max-age=86400");
+			exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+			exchange.sendResponseHeaders(200, png.size());
+			try (OutputStream out = exchange.getResponseBody()) {
+				png.writeTo(out);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private Palette palette(String query) {
+		Map<String, String> parameters = new HashMap<>();
+		if (query != null) {
+			for (String parameter : query.split("&")) {
+				int equalsIndex = parameter.indexOf('=');
+				if (equalsIndex > 0) {
+					parameters.put(parameter.substring(0, equalsIndex), parameter.substring(equalsIndex + 1));
+				}
+			}
+		}
+
+		PaletteType type = parameters.containsKey("palette") ? PaletteType.valueOf(parameters.get("palette")) : paletteType;
+		int seed = parameters.containsKey("seed") ? Integer.parseInt(parameters.get("seed")) : paletteSeed;
+		int step = parameters.containsKey("step") ? Integer.parseInt(parameters.get("step")) : paletteStep;
+		synchronized (palettes) {
+			return palettes.computeIfAbsent(type + "/" + seed + "/" + step, key -> paletteFactory.createPalette(type, seed, step));
+		}
+	}
+
+	private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+		byte[] bytes = (text + "\n").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
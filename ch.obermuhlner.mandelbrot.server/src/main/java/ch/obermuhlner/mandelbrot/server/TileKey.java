@@ -0,0 +1,94 @@
+package ch.obermuhlner.mandelbrot.server;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Objects;
+
+/**
+ * The address of a tile in the slippy map scheme.
+ * 
+ * <p>Zoom level 0 is a single tile that covers the square from -2.5 to 1.5 (real axis) and -2 to 2 (imaginary axis).
+ * Every zoom level splits the tiles of the previous level into 2 x 2 tiles.</p>
+ */
+public class TileKey {
+
+	private static final BigDecimal WORLD_SIZE = new BigDecimal(4);
+	private static final BigDecimal WORLD_MIN_X = new BigDecimal("-2.5");
+	private static final BigDecimal WORLD_MIN_Y = new BigDecimal("-2");
+	private static final BigDecimal HALF = new BigDecimal("0.5");
+
+	public final int z;
+	public final BigInteger x;
+	public final BigInteger y;
+
+	public TileKey(int z, BigInteger x, BigInteger y) {
+		this.z = z;
+		this.x = x;
+		this.y = y;
+	}
+
+	/**
+	 * Returns whether the tile is inside the tiles of its zoom level.
+	 */
+	public boolean isValid() {
+		BigInteger tileCount = BigInteger.ONE.shiftLeft(z);
+		return z >= 0 && x.signum() >= 0 && y.signum() >= 0 && x.compareTo(tileCount) < 0 && y.compareTo(tileCount) < 0;
+	}
+
+	/**
+	 * Returns the size of the tile, exactly.
+	 */
+	public BigDecimal getSize() {
+		return WORLD_SIZE.divide(new BigDecimal(BigInteger.ONE.shiftLeft(z)));
+	}
+
+	/**
+	 * Returns the x center of the tile as expected by the renderers (which negate the center).
+	 */
+	public BigDecimal getXCenter() {
+		return WORLD_MIN_X.add(getSize().multiply(new BigDecimal(x).add(HALF))).negate();
+	}
+
+	/**
+	 * Returns the y center of the tile as expected by the renderers (which negate the center).
+	 */
+	public BigDecimal getYCenter() {
+		return WORLD_MIN_Y.add(getSize().multiply(new BigDecimal(y).add(HALF))).negate();
+	}
+
+	/**
+	 * Returns the number of decimal digits needed to calculate the pixels of the tile.
+	 */
+	public int getPrecision(int tileSize) {
+		return (int) Math.ceil(Math.log10(2) * z + Math.log10(tileSize)) + 10;
+	}
+
+	/**
+	 * Returns the zoom level in powers of 10 (as in the viewer).
+	 */
+	public double getZoomPower() {
+		return Math.log10(2) * z;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(z, x, y);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof TileKey)) {
+			return false;
+		}
+		TileKey other = (TileKey) obj;
+		return z == other.z && x.equals(other.x) && y.equals(other.y);
+	}
+
+	@Override
+	public String toString() {
+		return z + "/" + x + "/" + y;
+	}
+}
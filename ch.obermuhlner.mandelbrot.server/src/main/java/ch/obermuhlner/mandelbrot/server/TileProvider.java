@@ -0,0 +1,112 @@
+package ch.obermuhlner.mandelbrot.server;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import ch.obermuhlner.mandelbrot.javafx.DummyProgress;
+import ch.obermuhlner.mandelbrot.render.AutoPrecisionMandelbrotRenderer;
+import ch.obermuhlner.mandelbrot.render.IterationData;
+import ch.obermuhlner.mandelbrot.render.RenderCache;
+import ch.obermuhlner.mandelbrot.render.RenderPool;
+import ch.obermuhlner.mandelbrot.render.RenderPriority;
+import ch.obermuhlner.mandelbrot.render.RenderService;
+import ch.obermuhlner.mandelbrot.render.RenderSpec;
+
+/**
+ * Provides the iterations of the tiles.
+ * 
+ * <p>The recently used tiles are kept in memory, the tiles on disk are stored in a {@link RenderCache}.
+ * Concurrent requests for the same tile share a single render.
+ * The renders are queued in a bounded queue, if the queue is full the request is rejected with a {@link RejectedExecutionException}.</p>
+ */
+public class TileProvider {
+
+	private final int tileSize;
+	private final int maxIterationsConst;
+	private final int maxIterationsLinear;
+
+	private final RenderService renderService;
+
+	private final Map<TileKey, IterationData> memoryCache;
+
+	private long memoryHitCount;
+
+	/**
+	 * @param renderThreads the number of tiles rendered at the same time
+	 * @param queueSize the number of tiles that may wait to be rendered
+	 * @param memoryTiles the number of tiles kept in memory
+	 * @param renderCache the cache of the tiles on disk
+	 */
+	public TileProvider(int tileSize, int maxIterationsConst, int maxIterationsLinear, int renderThreads, int queueSize, int memoryTiles, RenderCache renderCache) {
+		this.tileSize = tileSize;
+		this.maxIterationsConst = maxIterationsConst;
+		this.maxIterationsLinear = maxIterationsLinear;
+
+		renderService = new RenderService(new AutoPrecisionMandelbrotRenderer(), RenderPool.BATCH, renderThreads);
+		renderService.setRenderCache(renderCache);
+		renderService.setMaxQueuedRenders(queueSize);
+
+		memoryCache = new LinkedHashMap<TileKey, IterationData>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<TileKey, IterationData> eldest) {
+				return size() > memoryTiles;
+			}
+		};
+	}
+
+	/**
+	 * Returns the iterations of a tile.
+	 * 
+	 * @return the future iterations, already completed if the tile was in memory
+	 * @throws RejectedExecutionException if the tile must be rendered but the render queue is full
+	 */
+	public CompletableFuture<IterationData> getTile(TileKey tileKey) {
+		synchronized (memoryCache) {
+			IterationData iterationData = memoryCache.get(tileKey);
+			if (iterationData != null) {
+				memoryHitCount++;
+				return CompletableFuture.completedFuture(iterationData);
+			}
+		}
+
+		return renderService.render(renderSpec(tileKey), RenderPriority.Normal, new DummyProgress()).thenApply(result -> {
+			synchronized (memoryCache) {
+				memoryCache.put(tileKey, result.iterationData);
+			}
+			return result.iterationData;
+		});
+	}
+
+	private RenderSpec renderSpec(TileKey tileKey) {
+		BigDecimal radius = tileKey.getSize().divide(new BigDecimal(2));
+		int maxIterations = maxIterationsConst + (int) tileKey.getZoomPower() * maxIterationsLinear;
+		return new RenderSpec(tileKey.getXCenter(), tileKey.getYCenter(), radius, radius, tileKey.getPrecision(tileSize), maxIterations, tileSize, tileSize);
+	}
+
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	public int getQueuedTileCount() {
+		return renderService.getQueuedCount();
+	}
+
+	public int getInFlightTileCount() {
+		return renderService.getQueuedCount() + renderService.getActiveCount();
+	}
+
+	public long getMemoryHitCount() {
+		synchronized (memoryCache) {
+			return memoryHitCount;
+		}
+	}
+
+	public long getCoalescedCount() {
+		return renderService.getDeduplicatedCount();
+	}
+}
@@ -0,0 +1,381 @@
+package ch.obermuhlner.mandelbrot.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ch.obermuhlner.mandelbrot.javafx.Progress;
+import ch.obermuhlner.mandelbrot.render.AutoPrecisionMandelbrotRenderer;
+import ch.obermuhlner.mandelbrot.render.MandelbrotRenderer;
+import ch.obermuhlner.mandelbrot.render.MandelbrotResult;
+import ch.obermuhlner.mandelbrot.render.RemoteMandelbrotRenderer;
+import ch.obermuhlner.mandelbrot.render.RenderStatistics;
+import ch.obermuhlner.mandelbrot.util.ThreadInterruptedException;
+
+/**
+ * Renders an image by splitting it into tiles that are calculated by {@link RenderWorker}s connected over TCP.
+ * 
+ * <p>Every worker gets one tile at a time.
+ * The tile of a worker whose connection is lost is given to the next free worker.
+ * When no tiles are waiting, free workers also calculate tiles that take much longer than the average tile
+ * (probably on a slow or hanging worker), the first result is used.</p>
+ * 
+ * <p>All tiles of the submitted regions are queued at once (see {@link #submitMandelbrotRegion}),
+ * so that the workers do not wait for the next region.</p>
+ * 
+ * <p>The coordinator only calculates tiles itself if no worker is connected for <code>mandelbrot.coordinator.workerTimeoutSeconds</code>
+ * (system property, default 30) while tiles are waiting.</p>
+ * 
+ * <p>The workers are not authenticated, anybody who can connect to the port can send wrong tiles.
+ * Listen on the address of a trusted network only (see {@link #RenderCoordinator(InetAddress, int, int, PrintStream)}).</p>
+ */
+public class RenderCoordinator implements RemoteMandelbrotRenderer, Closeable {
+
+	public static final int DEFAULT_PORT = 7803;
+	public static final int DEFAULT_TILE_SIZE = 64;
+
+	private static final long POLL_MILLIS = 100;
+	private static final double SLOW_FACTOR = 3.0;
+	private static final long MIN_SLOW_NANOS = 1_000_000_000L;
+
+	private final ServerSocket serverSocket;
+	private final int tileSize;
+	private final PrintStream log;
+	private final long workerTimeoutNanos = TimeUnit.SECONDS.toNanos(Long.getLong("mandelbrot.coordinator.workerTimeoutSeconds", 30));
+	private final MandelbrotRenderer localMandelbrotRenderer = new AutoPrecisionMandelbrotRenderer();
+
+	private final BlockingDeque<TileJob> pendingJobs = new LinkedBlockingDeque<>();
+	private final Map<Long, TileJob> runningJobs = new ConcurrentHashMap<>();
+	private final AtomicLong nextJobId = new AtomicLong();
+	private final AtomicInteger workerCount = new AtomicInteger();
+
+	private final AtomicLong completedTileCount = new AtomicLong();
+	private final AtomicLong completedTileNanos = new AtomicLong();
+
+	private volatile boolean closed;
+
+	public RenderCoordinator(int port) throws IOException {
+		this(null, port, DEFAULT_TILE_SIZE, System.out);
+	}
+
+	/**
+	 * @param bindAddress the local address to listen on, <code>null</code> for all addresses
+	 * @param log the stream for the messages about the workers
+	 */
+	public RenderCoordinator(InetAddress bindAddress, int port, int tileSize, PrintStream log) throws IOException {
+		this.serverSocket = new ServerSocket(port, 50, bindAddress);
+		this.tileSize = tileSize;
+		this.log = log;
+
+		Thread acceptThread = new Thread(this::acceptWorkers, "mandelbrot-coordinator");
+		acceptThread.setDaemon(true);
+		acceptThread.start();
+
+		Thread localThread = new Thread(this::calculateLocally, "mandelbrot-coordinator-local");
+		localThread.setDaemon(true);
+		localThread.start();
+	}
+
+	public int getWorkerCount() {
+		return workerCount.get();
+	}
+
+	@Override
+	public RenderStatistics drawMandelbrot(MandelbrotResult result, BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, Progress progress) {
+		return drawMandelbrotRegion(result, xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight, 0, 0, imageWidth, imageHeight, progress);
+	}
+
+	@Override
+	public RenderStatistics drawMandelbrotRegion(MandelbrotResult result, BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, int regionX, int regionY, int regionWidth, int regionHeight, Progress progress) {
+		CompletableFuture<RenderStatistics> future = submitMandelbrotRegion(result, xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight, regionX, regionY, regionWidth, regionHeight, progress);
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			future.cancel(false);
+			throw new ThreadInterruptedException();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	@Override
+	public CompletableFuture<RenderStatistics> submitMandelbrotRegion(MandelbrotResult result, BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, int regionX, int regionY, int regionWidth, int regionHeight, Progress progress) {
+		RegionRender regionRender = new RegionRender(result, regionX, regionY, progress);
+		for (int tileY = regionY; tileY < regionY + regionHeight; tileY += tileSize) {
+			for (int tileX = regionX; tileX < regionX + regionWidth; tileX += tileSize) {
+				int tileWidth = Math.min(tileSize, regionX + regionWidth - tileX);
+				int tileHeight = Math.min(tileSize, regionY + regionHeight - tileY);
+
+				TileRequest request = new TileRequest(nextJobId.getAndIncrement(), xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight, tileX, tileY, tileWidth, tileHeight);
+				regionRender.jobs.add(new TileJob(request, regionRender.statistics));
+			}
+		}
+
+		regionRender.remainingJobs.set(regionRender.jobs.size());
+		for (TileJob job : regionRender.jobs) {
+			job.future.whenComplete((response, exception) -> regionRender.tileCompleted(job, response, exception));
+		}
+		regionRender.whenComplete((statistics, exception) -> {
+			if (exception != null) {
+				pendingJobs.removeAll(regionRender.jobs);
+				for (TileJob job : regionRender.jobs) {
+					job.future.cancel(false);
+					runningJobs.remove(job.request.id);
+				}
+			}
+		});
+		if (regionRender.jobs.isEmpty()) {
+			regionRender.complete(regionRender.statistics.finish());
+		}
+
+		pendingJobs.addAll(regionRender.jobs);
+		return regionRender;
+	}
+
+	/**
+	 * Calculates the waiting tiles in this process while no worker is connected.
+	 */
+	private void calculateLocally() {
+		long idleNanos = System.nanoTime();
+		boolean waiting = false;
+		boolean local = false;
+		while (!closed) {
+			TileJob job = null;
+			if (workerCount.get() > 0 || pendingJobs.isEmpty()) {
+				idleNanos = System.nanoTime();
+				waiting = false;
+				local = false;
+			} else if (!waiting) {
+				log.println("Waiting for workers on " + serverSocket.getLocalSocketAddress());
+				waiting = true;
+			} else if (local || System.nanoTime() - idleNanos > workerTimeoutNanos) {
+				if (!local) {
+					log.println("No workers connected, calculating the tiles locally");
+					local = true;
+				}
+				job = pendingJobs.poll();
+			}
+
+			if (job == null) {
+				try {
+					Thread.sleep(POLL_MILLIS);
+				} catch (InterruptedException e) {
+					return;
+				}
+			} else if (!job.future.isDone()) {
+				job.activeWorkers.incrementAndGet();
+				try {
+					complete(job, "local", RenderWorker.render(localMandelbrotRenderer, job.request));
+				} catch (RuntimeException e) {
+					job.activeWorkers.decrementAndGet();
+					job.future.completeExceptionally(e);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		serverSocket.close();
+	}
+
+	private void acceptWorkers() {
+		while (!closed) {
+			try {
+				Socket socket = serverSocket.accept();
+				Thread thread = new Thread(() -> serveWorker(socket), "mandelbrot-coordinator-" + socket.getRemoteSocketAddress());
+				thread.setDaemon(true);
+				thread.start();
+			} catch (IOException e) {
+				if (!closed) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	private void serveWorker(Socket socket) {
+		String name = String.valueOf(socket.getRemoteSocketAddress());
+		boolean registered = false;
+		TileJob job = null;
+		try (Socket connection = socket) {
+			connection.setKeepAlive(true);
+			connection.setTcpNoDelay(true);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+			if (!RenderWorker.HANDSHAKE.equals(in.readUTF())) {
+				return;
+			}
+			name = in.readUTF();
+			workerCount.incrementAndGet();
+			registered = true;
+			log.println("Worker connected: " + name);
+
+			while ((job = nextJob()) != null) {
+				job.request.write(out);
+				out.flush();
+				TileResponse response = TileResponse.read(in);
+				complete(job, name, response);
+				job = null;
+			}
+		} catch (IOException e) {
+			log.println("Worker lost: " + name + " (" + e + ")");
+		} finally {
+			if (job != null) {
+				release(job);
+			}
+			if (registered) {
+				workerCount.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Returns the next waiting tile, or a running tile that is much slower than the average tile.
+	 * 
+	 * @return the tile or <code>null</code> if the coordinator was closed
+	 */
+	private TileJob nextJob() {
+		while (!closed) {
+			TileJob job;
+			try {
+				job = pendingJobs.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				return null;
+			}
+
+			if (job != null) {
+				if (!job.future.isDone()) {
+					job.activeWorkers.incrementAndGet();
+					job.startNanos = System.nanoTime();
+					runningJobs.put(job.request.id, job);
+					return job;
+				}
+			} else {
+				job = findSlowJob();
+				if (job != null) {
+					return job;
+				}
+			}
+		}
+		return null;
+	}
+
+	private TileJob findSlowJob() {
+		long count = completedTileCount.get();
+		long averageNanos = count == 0 ? 0 : completedTileNanos.get() / count;
+		long slowNanos = Math.max(MIN_SLOW_NANOS, (long) (averageNanos * SLOW_FACTOR));
+		long now = System.nanoTime();
+		for (TileJob job : runningJobs.values()) {
+			if (!job.future.isDone() && now - job.startNanos > slowNanos && job.activeWorkers.compareAndSet(1, 2)) {
+				return job;
+			}
+		}
+		return null;
+	}
+
+	private void complete(TileJob job, String workerName, TileResponse response) {
+		job.activeWorkers.decrementAndGet();
+		// the first result wins, the statistics are added before the render waiting for the tile can finish
+		if (job.completed.compareAndSet(false, true)) {
+			runningJobs.remove(job.request.id);
+			completedTileCount.incrementAndGet();
+			completedTileNanos.addAndGet(response.nanos);
+			job.statistics.addTile(workerName, response.nanos, (long) response.width * response.height, response.iterationCount, response.maxIterationPixels);
+			job.future.complete(response);
+		}
+	}
+
+	/**
+	 * Gives the tile of a lost worker to the next free worker, unless another worker is still calculating it.
+	 */
+	private void release(TileJob job) {
+		if (job.activeWorkers.decrementAndGet() == 0 && !job.future.isDone()) {
+			runningJobs.remove(job.request.id);
+			pendingJobs.addFirst(job);
+		}
+	}
+
+	/**
+	 * The future statistics of a submitted region, which writes the completed tiles into the result.
+	 */
+	private static class RegionRender extends CompletableFuture<RenderStatistics> {
+		final MandelbrotResult result;
+		final int regionX;
+		final int regionY;
+		final Progress progress;
+		final RenderStatistics.Collector statistics = new RenderStatistics.Collector();
+		final List<TileJob> jobs = new ArrayList<>();
+		final AtomicInteger remainingJobs = new AtomicInteger();
+
+		RegionRender(MandelbrotResult result, int regionX, int regionY, Progress progress) {
+			this.result = result;
+			this.regionX = regionX;
+			this.regionY = regionY;
+			this.progress = progress;
+		}
+
+		synchronized void tileCompleted(TileJob job, TileResponse response, Throwable exception) {
+			// a cancelled render may already be closed by its caller
+			if (isDone()) {
+				return;
+			}
+			if (exception != null) {
+				completeExceptionally(exception);
+				return;
+			}
+
+			result.setIterations(job.request.tileX - regionX, job.request.tileY - regionY, response.width, response.height, response.iterations, 0, response.width);
+			progress.incrementProgress(response.width * response.height);
+			if (remainingJobs.decrementAndGet() == 0) {
+				complete(statistics.finish());
+			}
+		}
+
+		@Override
+		public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+			return super.cancel(mayInterruptIfRunning);
+		}
+	}
+
+	private static class TileJob {
+		final TileRequest request;
+		final RenderStatistics.Collector statistics;
+		final CompletableFuture<TileResponse> future = new CompletableFuture<>();
+		final AtomicInteger activeWorkers = new AtomicInteger();
+		final AtomicBoolean completed = new AtomicBoolean();
+		volatile long startNanos;
+
+		TileJob(TileRequest request, RenderStatistics.Collector statistics) {
+			this.request = request;
+			this.statistics = statistics;
+		}
+	}
+}
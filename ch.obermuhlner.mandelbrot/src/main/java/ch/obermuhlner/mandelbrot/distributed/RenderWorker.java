@@ -0,0 +1,97 @@
+package ch.obermuhlner.mandelbrot.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+
+import ch.obermuhlner.mandelbrot.javafx.DummyProgress;
+import ch.obermuhlner.mandelbrot.render.AutoPrecisionMandelbrotRenderer;
+import ch.obermuhlner.mandelbrot.render.IntIterationBuffer;
+import ch.obermuhlner.mandelbrot.render.MandelbrotRenderer;
+import ch.obermuhlner.mandelbrot.render.RenderStatistics;
+
+/**
+ * Connects to a {@link RenderCoordinator} and renders the tiles it sends, until the worker is interrupted.
+ * 
+ * <p>If the connection is lost the worker connects again, so that workers can be started before the coordinator.</p>
+ */
+public class RenderWorker implements Runnable {
+
+	static final String HANDSHAKE = "mandelbrot-worker-2";
+
+	private static final long RECONNECT_MILLIS = 2000;
+
+	private final String host;
+	private final int port;
+	private final MandelbrotRenderer mandelbrotRenderer;
+	private final PrintStream log;
+	private final String name = ManagementFactory.getRuntimeMXBean().getName();
+
+	public RenderWorker(String host, int port) {
+		this(host, port, new AutoPrecisionMandelbrotRenderer(), System.out);
+	}
+
+	/**
+	 * @param log the stream for the connection messages
+	 */
+	public RenderWorker(String host, int port, MandelbrotRenderer mandelbrotRenderer, PrintStream log) {
+		this.host = host;
+		this.port = port;
+		this.mandelbrotRenderer = mandelbrotRenderer;
+		this.log = log;
+	}
+
+	@Override
+	public void run() {
+		boolean connected = true;
+		while (!Thread.currentThread().isInterrupted()) {
+			try (Socket socket = new Socket(host, port)) {
+				socket.setKeepAlive(true);
+				socket.setTcpNoDelay(true);
+				DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+				out.writeUTF(HANDSHAKE);
+				out.writeUTF(name);
+				out.flush();
+				log.println("Connected to coordinator " + host + ":" + port);
+				connected = true;
+
+				while (true) {
+					TileRequest request = TileRequest.read(in);
+					render(mandelbrotRenderer, request).write(out);
+					out.flush();
+				}
+			} catch (IOException e) {
+				if (connected) {
+					log.println("Waiting for coordinator " + host + ":" + port + " (" + e + ")");
+					connected = false;
+				}
+			}
+
+			try {
+				Thread.sleep(RECONNECT_MILLIS);
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Renders the tile of a request, also used by the coordinator when no workers are connected.
+	 */
+	static TileResponse render(MandelbrotRenderer mandelbrotRenderer, TileRequest request) {
+		IntIterationBuffer result = new IntIterationBuffer(request.width, request.height);
+		long startNanos = System.nanoTime();
+		RenderStatistics statistics = mandelbrotRenderer.drawMandelbrotRegion(
+				result,
+				request.xCenter, request.yCenter, request.xRadius, request.yRadius,
+				request.precision, request.maxIterations, request.imageWidth, request.imageHeight,
+				request.tileX, request.tileY, request.width, request.height, new DummyProgress());
+		return new TileResponse(request.id, request.width, request.height, result.getIterationArray(), System.nanoTime() - startNanos, statistics.getIterationCount(), statistics.getMaxIterationPixelCount());
+	}
+}
@@ -0,0 +1,78 @@
+package ch.obermuhlner.mandelbrot.distributed;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * A single tile of a view, sent from the {@link RenderCoordinator} to a {@link RenderWorker}.
+ * 
+ * <p>The request contains the view of the complete image and the region of the tile,
+ * see {@link ch.obermuhlner.mandelbrot.render.MandelbrotRenderer#drawMandelbrotRegion}.</p>
+ */
+public class TileRequest {
+
+	public final long id;
+	public final BigDecimal xCenter;
+	public final BigDecimal yCenter;
+	public final BigDecimal xRadius;
+	public final BigDecimal yRadius;
+	public final int precision;
+	public final int maxIterations;
+	public final int imageWidth;
+	public final int imageHeight;
+	public final int tileX;
+	public final int tileY;
+	public final int width;
+	public final int height;
+
+	public TileRequest(long id, BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, int tileX, int tileY, int width, int height) {
+		this.id = id;
+		this.xCenter = xCenter;
+		this.yCenter = yCenter;
+		this.xRadius = xRadius;
+		this.yRadius = yRadius;
+		this.precision = precision;
+		this.maxIterations = maxIterations;
+		this.imageWidth = imageWidth;
+		this.imageHeight = imageHeight;
+		this.tileX = tileX;
+		this.tileY = tileY;
+		this.width = width;
+		this.height = height;
+	}
+
+	void write(DataOutputStream out) throws IOException {
+		out.writeLong(id);
+		out.writeUTF(xCenter.toString());
+		out.writeUTF(yCenter.toString());
+		out.writeUTF(xRadius.toString());
+		out.writeUTF(yRadius.toString());
+		out.writeInt(precision);
+		out.writeInt(maxIterations);
+		out.writeInt(imageWidth);
+		out.writeInt(imageHeight);
+		out.writeInt(tileX);
+		out.writeInt(tileY);
+		out.writeInt(width);
+		out.writeInt(height);
+	}
+
+	static TileRequest read(DataInputStream in) throws IOException {
+		return new TileRequest(
+				in.readLong(),
+				new BigDecimal(in.readUTF()),
+				new BigDecimal(in.readUTF()),
+				new BigDecimal(in.readUTF()),
+				new BigDecimal(in.readUTF()),
+				in.readInt(),
+				in.readInt(),
+				in.readInt(),
+				in.readInt(),
+				in.readInt(),
+				in.readInt(),
+				in.readInt(),
+				in.readInt());
+	}
+}
@@ -0,0 +1,77 @@
+package ch.obermuhlner.mandelbrot.distributed;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import ch.obermuhlner.mandelbrot.render.IterationFileReader;
+import ch.obermuhlner.mandelbrot.render.IterationFileWriter;
+
+/**
+ * The calculated iterations of a tile, sent from a {@link RenderWorker} back to the {@link RenderCoordinator}.
+ * 
+ * <p>The iterations are compressed row by row like in the iteration files.</p>
+ */
+public class TileResponse {
+
+	public final long id;
+	public final int width;
+	public final int height;
+	public final int[] iterations;
+	public final long nanos;
+	public final long iterationCount;
+	public final long maxIterationPixels;
+
+	public TileResponse(long id, int width, int height, int[] iterations, long nanos, long iterationCount, long maxIterationPixels) {
+		this.id = id;
+		this.width = width;
+		this.height = height;
+		this.iterations = iterations;
+		this.nanos = nanos;
+		this.iterationCount = iterationCount;
+		this.maxIterationPixels = maxIterationPixels;
+	}
+
+	void write(DataOutputStream out) throws IOException {
+		byte[] encoded = new byte[width * height * 5];
+		int length = 0;
+		int[] row = new int[width];
+		byte[] rowBuffer = new byte[width * 5];
+		for (int pixelY = 0; pixelY < height; pixelY++) {
+			System.arraycopy(iterations, pixelY * width, row, 0, width);
+			int rowLength = IterationFileWriter.encodeRow(row, rowBuffer);
+			System.arraycopy(rowBuffer, 0, encoded, length, rowLength);
+			length += rowLength;
+		}
+
+		out.writeLong(id);
+		out.writeInt(width);
+		out.writeInt(height);
+		out.writeLong(nanos);
+		out.writeLong(iterationCount);
+		out.writeLong(maxIterationPixels);
+		out.writeInt(length);
+		out.write(encoded, 0, length);
+	}
+
+	static TileResponse read(DataInputStream in) throws IOException {
+		long id = in.readLong();
+		int width = in.readInt();
+		int height = in.readInt();
+		long nanos = in.readLong();
+		long iterationCount = in.readLong();
+		long maxIterationPixels = in.readLong();
+		byte[] encoded = new byte[in.readInt()];
+		in.readFully(encoded);
+
+		int[] iterations = new int[width * height];
+		int[] row = new int[width];
+		ByteBuffer buffer = ByteBuffer.wrap(encoded);
+		for (int pixelY = 0; pixelY < height; pixelY++) {
+			IterationFileReader.decodeRow(buffer, row, width);
+			System.arraycopy(row, 0, iterations, pixelY * width, width);
+		}
+		return new TileResponse(id, width, height, iterations, nanos, iterationCount, maxIterationPixels);
+	}
+}
@@ -0,0 +1,41 @@
+package ch.obermuhlner.mandelbrot.image;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import ch.obermuhlner.mandelbrot.palette.Palette;
+import ch.obermuhlner.mandelbrot.render.IterationData;
+
+/**
+ * Colors the rows of {@link IterationData} with a {@link Palette}.
+ */
+public class PaletteRowSupplier implements PngWriter.RowSupplier {
+
+	private final IterationData iterationData;
+	private final Palette palette;
+	private final double colorOffset;
+
+	private final LongAdder colorizeNanos = new LongAdder();
+
+	public PaletteRowSupplier(IterationData iterationData, Palette palette, double colorOffset) {
+		this.iterationData = iterationData;
+		this.palette = palette;
+		this.colorOffset = colorOffset;
+	}
+
+	@Override
+	public void getRow(int pixelY, int[] rgb) {
+		long startNanos = System.nanoTime();
+		iterationData.getRowIterations(pixelY, rgb);
+		for (int i = 0; i < rgb.length; i++) {
+			rgb[i] = palette.getColor((int) (rgb[i] + colorOffset)).toRGB();
+		}
+		colorizeNanos.add(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * Returns the time spent coloring rows so far, summed over all threads.
+	 */
+	public long getColorizeNanos() {
+		return colorizeNanos.sum();
+	}
+}
@@ -0,0 +1,114 @@
+package ch.obermuhlner.mandelbrot.image;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+
+import ch.obermuhlner.mandelbrot.palette.Palette;
+import ch.obermuhlner.mandelbrot.render.RenderedTile;
+import ch.obermuhlner.mandelbrot.render.TilePublisher;
+import ch.obermuhlner.mandelbrot.util.Flow;
+
+/**
+ * Colors the tiles of a {@link TilePublisher} and writes them into a PNG image while the image is still rendered.
+ *
+ * <p>Only a single row of tiles is kept in memory, the next tile is requested after the previous tile was written.</p>
+ */
+public class PngTileSubscriber implements Flow.Subscriber<RenderedTile> {
+
+	private final PngWriter.RowWriter rowWriter;
+	private final Palette palette;
+	private final double colorOffset;
+	private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+	private Flow.Subscription subscription;
+	private int[] rowsIterations;
+	private int rowsHeight;
+	private int[] tileRow;
+	private int[] rgb;
+
+	/**
+	 * Creates a subscriber that writes the tiles in image order.
+	 *
+	 * @param rowWriter the writer of the image, see {@link PngWriter#open(java.io.OutputStream, int, int)}
+	 * @param palette the palette to color the iterations
+	 * @param colorOffset the offset of the colors in the palette
+	 */
+	public PngTileSubscriber(PngWriter.RowWriter rowWriter, Palette palette, double colorOffset) {
+		this.rowWriter = rowWriter;
+		this.palette = palette;
+		this.colorOffset = colorOffset;
+	}
+
+	/**
+	 * Returns the future that is completed when the image is written.
+	 */
+	public CompletableFuture<Void> getFuture() {
+		return future;
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		this.subscription = subscription;
+		subscription.request(1);
+	}
+
+	@Override
+	public void onNext(RenderedTile tile) {
+		int width = rowWriter.getWidth();
+		if (tile.tileX == 0) {
+			rowsHeight = tile.getHeight();
+			if (rowsIterations == null || rowsIterations.length != width * rowsHeight) {
+				rowsIterations = new int[width * rowsHeight];
+			}
+		}
+
+		// the tiles at the right border may be narrower, a larger buffer is used partially
+		if (tileRow == null || tileRow.length < tile.getWidth()) {
+			tileRow = new int[tile.getWidth()];
+		}
+		for (int pixelY = 0; pixelY < tile.getHeight(); pixelY++) {
+			tile.getRowIterations(pixelY, tileRow);
+			System.arraycopy(tileRow, 0, rowsIterations, pixelY * width + tile.tileX, tile.getWidth());
+		}
+
+		if (tile.tileX + tile.getWidth() == width) {
+			try {
+				writeRows(width);
+			} catch (IOException e) {
+				subscription.cancel();
+				future.completeExceptionally(new UncheckedIOException(e));
+				return;
+			}
+		}
+		subscription.request(1);
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		future.completeExceptionally(throwable);
+	}
+
+	@Override
+	public void onComplete() {
+		try {
+			rowWriter.close();
+			future.complete(null);
+		} catch (IOException | RuntimeException e) {
+			future.completeExceptionally(e);
+		}
+	}
+
+	private void writeRows(int width) throws IOException {
+		if (rgb == null) {
+			// the row writer copies the rows
+			rgb = new int[width];
+		}
+		for (int pixelY = 0; pixelY < rowsHeight; pixelY++) {
+			for (int pixelX = 0; pixelX < width; pixelX++) {
+				rgb[pixelX] = palette.getColor((int) (rowsIterations[pixelX + pixelY * width] + colorOffset)).toRGB();
+			}
+			rowWriter.writeRow(rgb);
+		}
+	}
+}
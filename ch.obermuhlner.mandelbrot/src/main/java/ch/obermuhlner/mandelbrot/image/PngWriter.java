@@ -0,0 +1,457 @@
+package ch.obermuhlner.mandelbrot.image;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import ch.obermuhlner.mandelbrot.jfr.ColorizationEvent;
+import ch.obermuhlner.mandelbrot.jfr.PngEncodingEvent;
+import ch.obermuhlner.mandelbrot.render.RenderPool;
+
+/**
+ * Writes 8 bit RGB PNG images row by row, so that the image never needs to be in memory as a whole.
+ * 
+ * <p>The rows are grouped into bands that are filtered and deflated in parallel.
+ * Every band is compressed by its own {@link Deflater} and ends with a sync flush,
+ * so that the compressed bands can simply be concatenated into a single zlib stream.
+ * Only a limited number of bands is in flight at any time, which keeps the memory bounded.</p>
+ */
+public class PngWriter {
+
+	private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+
+	private static final int COLOR_TYPE_RGB = 2;
+	private static final int FILTER_SUB = 1;
+	private static final int BYTES_PER_PIXEL = 3;
+
+	private static final int IDAT_CHUNK_SIZE = 64 * 1024;
+	private static final int BAND_BYTES = 256 * 1024;
+	private static final int COMPRESSION_LEVEL = Deflater.DEFAULT_COMPRESSION;
+	private static final byte[] ZLIB_HEADER = { 0x78, (byte) 0x9c };
+
+	private final Executor executor;
+	private final int maxPendingBands;
+
+	public interface RowSupplier {
+		/**
+		 * Fills the RGB values (0xRRGGBB) of one image row.
+		 */
+		void getRow(int pixelY, int[] rgb);
+	}
+
+	public PngWriter() {
+		this(ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism());
+	}
+
+	/**
+	 * Creates a writer that compresses the bands in the specified {@link RenderPool}.
+	 */
+	public PngWriter(RenderPool renderPool) {
+		this(renderPool.getPool(), renderPool.getParallelism());
+	}
+
+	/**
+	 * Creates a writer that compresses the bands with the specified executor.
+	 * 
+	 * @param executor the executor to filter and compress the bands
+	 * @param parallelism the expected number of threads of the executor, used to limit the number of bands in memory
+	 */
+	public PngWriter(Executor executor, int parallelism) {
+		this.executor = executor;
+		this.maxPendingBands = Math.max(2, parallelism * 2);
+	}
+
+	/**
+	 * Writes an image from a buffer of RGB values (0xRRGGBB) without converting it into a {@link java.awt.image.BufferedImage}.
+	 */
+	public void write(OutputStream out, int width, int height, int[] rgb) throws IOException {
+		write(out, width, height, (pixelY, row) -> System.arraycopy(rgb, pixelY * width, row, 0, width));
+	}
+
+	/**
+	 * Writes an image row by row.
+	 * 
+	 * <p>The row supplier is called concurrently from several threads (but only once for every row).</p>
+	 */
+	public void write(File file, int width, int height, RowSupplier rowSupplier) throws IOException {
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+			write(out, width, height, rowSupplier);
+		}
+	}
+
+	public void write(OutputStream out, int width, int height, RowSupplier rowSupplier) throws IOException {
+		PngEncodingEvent event = new PngEncodingEvent();
+		event.begin();
+
+		DataOutputStream dataOut = new DataOutputStream(out);
+		ChunkOutputStream dataChunks = writeHeader(dataOut, width, height);
+
+		int rowsPerBand = rowsPerBand(width);
+		Deque<CompletableFuture<CompressedBand>> pendingBands = new ArrayDeque<>();
+		long adler = 1;
+		int bandCount = 0;
+		for (int bandStartY = 0; bandStartY < height; bandStartY += rowsPerBand) {
+			int startY = bandStartY;
+			int endY = Math.min(height, bandStartY + rowsPerBand);
+			pendingBands.add(CompletableFuture.supplyAsync(() -> compressBand(width, startY, endY, endY == height, rowSupplier), executor));
+			bandCount++;
+
+			if (pendingBands.size() >= maxPendingBands) {
+				adler = writeBand(dataChunks, pendingBands.poll(), adler);
+			}
+		}
+		while (!pendingBands.isEmpty()) {
+			adler = writeBand(dataChunks, pendingBands.poll(), adler);
+		}
+
+		writeTrailer(dataOut, dataChunks, adler);
+		commitEvent(event, width, height, bandCount);
+	}
+
+	/**
+	 * Starts writing an image whose rows are pushed in order, for example while the image is still rendered.
+	 * 
+	 * <p>The rows are compressed in bands in parallel,
+	 * {@link RowWriter#writeRow(int[])} blocks while too many bands wait to be written.</p>
+	 */
+	public RowWriter open(OutputStream out, int width, int height) throws IOException {
+		return new RowWriter(out, width, height);
+	}
+
+	/**
+	 * Writes the rows of an image pushed in order, see {@link PngWriter#open(OutputStream, int, int)}.
+	 */
+	public class RowWriter implements Closeable {
+		private final PngEncodingEvent event = new PngEncodingEvent();
+		private final DataOutputStream dataOut;
+		private final ChunkOutputStream dataChunks;
+		private final int width;
+		private final int height;
+		private final int rowsPerBand;
+		private final Deque<CompletableFuture<CompressedBand>> pendingBands = new ArrayDeque<>();
+
+		private int[][] bandRows;
+		private int bandRowCount;
+		private int rowCount;
+		private int bandCount;
+		private long adler = 1;
+
+		private RowWriter(OutputStream out, int width, int height) throws IOException {
+			event.begin();
+			this.dataOut = new DataOutputStream(out);
+			this.dataChunks = writeHeader(dataOut, width, height);
+			this.width = width;
+			this.height = height;
+			this.rowsPerBand = rowsPerBand(width);
+		}
+
+		public int getWidth() {
+			return width;
+		}
+
+		public int getHeight() {
+			return height;
+		}
+
+		/**
+		 * Writes the next row.
+		 * 
+		 * @param rgb the RGB values (0xRRGGBB) of the row, the array is copied
+		 */
+		public void writeRow(int[] rgb) throws IOException {
+			if (rowCount == height) {
+				throw new IllegalStateException("All " + height + " rows are written");
+			}
+			if (bandRows == null) {
+				bandRows = new int[Math.min(rowsPerBand, height - rowCount)][];
+			}
+			bandRows[bandRowCount++] = rgb.clone();
+			rowCount++;
+
+			if (bandRowCount == bandRows.length) {
+				int[][] rows = bandRows;
+				boolean lastBand = rowCount == height;
+				pendingBands.add(CompletableFuture.supplyAsync(() -> compressRows(width, rows, lastBand), executor));
+				bandCount++;
+				bandRows = null;
+				bandRowCount = 0;
+
+				if (pendingBands.size() >= maxPendingBands) {
+					adler = writeBand(dataChunks, pendingBands.poll(), adler);
+				}
+			}
+		}
+
+		/**
+		 * Writes the remaining bands and the end of the image, after all rows were written.
+		 * 
+		 * <p>The underlying stream is not closed.</p>
+		 */
+		@Override
+		public void close() throws IOException {
+			if (rowCount != height) {
+				throw new IllegalStateException("Only " + rowCount + " of " + height + " rows are written");
+			}
+			while (!pendingBands.isEmpty()) {
+				adler = writeBand(dataChunks, pendingBands.poll(), adler);
+			}
+
+			writeTrailer(dataOut, dataChunks, adler);
+			commitEvent(event, width, height, bandCount);
+		}
+	}
+
+	private static ChunkOutputStream writeHeader(DataOutputStream dataOut, int width, int height) throws IOException {
+		dataOut.write(PNG_SIGNATURE);
+
+		ChunkOutputStream headerChunk = new ChunkOutputStream(dataOut, "IHDR");
+		DataOutputStream header = new DataOutputStream(headerChunk);
+		header.writeInt(width);
+		header.writeInt(height);
+		header.writeByte(8); // bit depth
+		header.writeByte(COLOR_TYPE_RGB);
+		header.writeByte(0); // compression method
+		header.writeByte(0); // filter method
+		header.writeByte(0); // interlace method
+		headerChunk.close();
+
+		ChunkOutputStream dataChunks = new ChunkOutputStream(dataOut, "IDAT", IDAT_CHUNK_SIZE);
+		dataChunks.write(ZLIB_HEADER);
+		return dataChunks;
+	}
+
+	private static void writeTrailer(DataOutputStream dataOut, ChunkOutputStream dataChunks, long adler) throws IOException {
+		DataOutputStream adlerOut = new DataOutputStream(dataChunks);
+		adlerOut.writeInt((int) adler);
+		dataChunks.close();
+
+		new ChunkOutputStream(dataOut, "IEND").close();
+		dataOut.flush();
+	}
+
+	private static void commitEvent(PngEncodingEvent event, int width, int height, int bandCount) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.width = width;
+			event.height = height;
+			event.pixelCount = (long) width * height;
+			event.bands = bandCount;
+			event.commit();
+		}
+	}
+
+	private static int rowsPerBand(int width) {
+		int scanlineLength = 1 + width * BYTES_PER_PIXEL;
+		return Math.max(1, BAND_BYTES / scanlineLength);
+	}
+
+	private static CompressedBand compressBand(int width, int startY, int endY, boolean lastBand, RowSupplier rowSupplier) {
+		ColorizationEvent colorizationEvent = new ColorizationEvent();
+		colorizationEvent.begin();
+		int[][] rows = new int[endY - startY][];
+		for (int pixelY = startY; pixelY < endY; pixelY++) {
+			int[] rgb = new int[width];
+			rowSupplier.getRow(pixelY, rgb);
+			rows[pixelY - startY] = rgb;
+		}
+		colorizationEvent.end();
+		if (colorizationEvent.shouldCommit()) {
+			colorizationEvent.pixelCount = (long) width * (endY - startY);
+			colorizationEvent.commit();
+		}
+
+		return compressRows(width, rows, lastBand);
+	}
+
+	private static CompressedBand compressRows(int width, int[][] rows, boolean lastBand) {
+		int scanlineLength = 1 + width * BYTES_PER_PIXEL;
+		byte[] raw = new byte[scanlineLength * rows.length];
+
+		byte[] scanline = new byte[scanlineLength];
+		for (int row = 0; row < rows.length; row++) {
+			filterRow(rows[row], scanline);
+			System.arraycopy(scanline, 0, raw, row * scanlineLength, scanlineLength);
+		}
+
+		Adler32 adler32 = new Adler32();
+		adler32.update(raw);
+
+		Deflater deflater = new Deflater(COMPRESSION_LEVEL, true);
+		try {
+			deflater.setInput(raw);
+			if (lastBand) {
+				deflater.finish();
+			}
+			int flush = lastBand ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH;
+
+			byte[] compressed = new byte[raw.length / 4 + 64];
+			int compressedLength = 0;
+			boolean outputFull;
+			do {
+				if (compressedLength == compressed.length) {
+					byte[] larger = new byte[compressed.length * 2];
+					System.arraycopy(compressed, 0, larger, 0, compressedLength);
+					compressed = larger;
+				}
+				compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength, flush);
+				outputFull = compressedLength == compressed.length;
+			} while (outputFull || (lastBand && !deflater.finished()));
+			return new CompressedBand(compressed, compressedLength, adler32.getValue(), raw.length);
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static long writeBand(OutputStream out, CompletableFuture<CompressedBand> futureBand, long adler) throws IOException {
+		CompressedBand band;
+		try {
+			band = futureBand.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+
+		out.write(band.data, 0, band.length);
+		return combineAdler32(adler, band.adler, band.rawLength);
+	}
+
+	/**
+	 * Combines the Adler-32 checksums of two consecutive blocks of data (same algorithm as adler32_combine() in zlib).
+	 */
+	static long combineAdler32(long adler1, long adler2, long length2) {
+		final long base = 65521;
+		long remainder = length2 % base;
+		long sum1 = adler1 & 0xffff;
+		long sum2 = (remainder * sum1) % base;
+		sum1 += (adler2 & 0xffff) + base - 1;
+		sum2 += ((adler1 >> 16) & 0xffff) + ((adler2 >> 16) & 0xffff) + base - remainder;
+		if (sum1 >= base) {
+			sum1 -= base;
+		}
+		if (sum1 >= base) {
+			sum1 -= base;
+		}
+		if (sum2 >= (base << 1)) {
+			sum2 -= (base << 1);
+		}
+		if (sum2 >= base) {
+			sum2 -= base;
+		}
+		return sum1 | (sum2 << 16);
+	}
+
+	static void filterRow(int[] rgb, byte[] scanline) {
+		scanline[0] = FILTER_SUB;
+		int lastRed = 0;
+		int lastGreen = 0;
+		int lastBlue = 0;
+		int index = 1;
+		for (int i = 0; i < rgb.length; i++) {
+			int red = (rgb[i] >> 16) & 0xff;
+			int green = (rgb[i] >> 8) & 0xff;
+			int blue = rgb[i] & 0xff;
+			scanline[index++] = (byte) (red - lastRed);
+			scanline[index++] = (byte) (green - lastGreen);
+			scanline[index++] = (byte) (blue - lastBlue);
+			lastRed = red;
+			lastGreen = green;
+			lastBlue = blue;
+		}
+	}
+
+	private static class CompressedBand {
+		final byte[] data;
+		final int length;
+		final long adler;
+		final long rawLength;
+
+		CompressedBand(byte[] data, int length, long adler, long rawLength) {
+			this.data = data;
+			this.length = length;
+			this.adler = adler;
+			this.rawLength = rawLength;
+		}
+	}
+
+	/**
+	 * Buffers written data and emits it as PNG chunks of the specified type.
+	 * 
+	 * <p>If the buffer is full a chunk is emitted and a new chunk of the same type is started,
+	 * which is allowed for consecutive IDAT chunks.</p>
+	 */
+	private static class ChunkOutputStream extends OutputStream {
+		private final DataOutputStream out;
+		private final byte[] type;
+		private final byte[] buffer;
+		private int count;
+		private boolean closed;
+
+		public ChunkOutputStream(DataOutputStream out, String type) {
+			this(out, type, 256);
+		}
+
+		public ChunkOutputStream(DataOutputStream out, String type, int bufferSize) {
+			this.out = out;
+			this.type = type.getBytes(StandardCharsets.US_ASCII);
+			this.buffer = new byte[bufferSize];
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (count == buffer.length) {
+				writeChunk();
+			}
+			buffer[count++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			while (length > 0) {
+				if (count == buffer.length) {
+					writeChunk();
+				}
+				int n = Math.min(length, buffer.length - count);
+				System.arraycopy(bytes, offset, buffer, count, n);
+				count += n;
+				offset += n;
+				length -= n;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				writeChunk();
+			}
+		}
+
+		private void writeChunk() throws IOException {
+			CRC32 crc = new CRC32();
+			crc.update(type);
+			crc.update(buffer, 0, count);
+
+			out.writeInt(count);
+			out.write(type);
+			out.write(buffer, 0, count);
+			out.writeInt((int) crc.getValue());
+			count = 0;
+		}
+	}
+}
@@ -1,5 +1,9 @@
 package ch.obermuhlner.mandelbrot.javafx;
 
+import ch.obermuhlner.mandelbrot.jfr.DrawRequestEvent;
+import ch.obermuhlner.mandelbrot.jfr.MandelbrotEvents;
+import ch.obermuhlner.mandelbrot.management.RenderMetrics;
+import ch.obermuhlner.mandelbrot.render.RenderPreemption;
 import javafx.application.Platform;
 
 public class BackgroundProgressiveRenderer extends Thread {
@@ -28,30 +32,51 @@ public class BackgroundProgressiveRenderer extends Thread {
 		notifyAll();
 	}
 
+	private boolean loadFromCache(DrawRequest drawRequest) {
+		if (mandelbrotApp.loadMandelbrotFromCache(drawRequest)) {
+			Platform.runLater(() -> {
+				mandelbrotApp.drawMandelbrot();
+			});
+			return true;
+		}
+		return false;
+	}
+
+	private void commitEvent(DrawRequestEvent event, DrawRequest drawRequest, int passes, boolean cached, boolean replaced) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.zoom = drawRequest.zoom;
+			event.precision = drawRequest.getPrecision();
+			event.engine = drawRequest.isInsideDoublePrecision() ? MandelbrotEvents.ENGINE_DOUBLE : MandelbrotEvents.ENGINE_BIGDECIMAL;
+			event.pixelCount = mandelbrotApp.getImagePixelCount();
+			event.maxIterations = drawRequest.getMaxIteration();
+			event.passes = passes;
+			event.cached = cached;
+			event.replaced = replaced;
+			event.commit();
+		}
+	}
+
+	private void recordMetrics(long startNanos, boolean cached, boolean replaced) {
+		if (replaced) {
+			RenderMetrics.getInstance().renderCancelled();
+		} else {
+			RenderMetrics.getInstance().renderFinished(System.nanoTime() - startNanos);
+		}
+	}
+
 	public void run() {
 		running = true;
 
 		while (running) {
 			DrawRequest currentDrawRequest = getNextDrawRequest();
 			if (currentDrawRequest != null) {
-				BlockRenderInfo[] progressiveRenderInfos = currentDrawRequest.getProgressiveRenderInfo();
-				
-				int block = 0;
-				while (running && block < progressiveRenderInfos.length) {
-					BlockRenderInfo blockRenderInfo = progressiveRenderInfos[block];
-					mandelbrotApp.calculateMandelbrot(currentDrawRequest, blockRenderInfo.blockSize, blockRenderInfo.pixelOffsetX, blockRenderInfo.pixelOffsetY, blockRenderInfo.pixelSize);
-					Platform.runLater(() -> {
-						mandelbrotApp.drawMandelbrot();
-					});
-
-					DrawRequest anotherDrawRequest = getNextDrawRequest();
-					if (anotherDrawRequest == null) {
-						block++;
-					} else {
-						currentDrawRequest = anotherDrawRequest;
-						progressiveRenderInfos = currentDrawRequest.getProgressiveRenderInfo();
-						block = 0;
-					}
+				// pause the snapshots and movies until this and all following draw requests are rendered
+				RenderPreemption.getInstance().interactiveStarted();
+				try {
+					renderDrawRequests(currentDrawRequest);
+				} finally {
+					RenderPreemption.getInstance().interactiveFinished();
 				}
 			}
 			
@@ -66,4 +91,47 @@ public class BackgroundProgressiveRenderer extends Thread {
 			}
 		}
 	}
+
+	private void renderDrawRequests(DrawRequest currentDrawRequest) {
+		BlockRenderInfo[] progressiveRenderInfos = currentDrawRequest.getProgressiveRenderInfo();
+		
+		DrawRequestEvent event = new DrawRequestEvent();
+		event.begin();
+		RenderMetrics.getInstance().renderStarted();
+		long startNanos = System.nanoTime();
+		boolean cached = loadFromCache(currentDrawRequest);
+		int block = cached ? progressiveRenderInfos.length : 0;
+		int passes = 0;
+		while (running && block < progressiveRenderInfos.length) {
+			BlockRenderInfo blockRenderInfo = progressiveRenderInfos[block];
+			mandelbrotApp.calculateMandelbrot(currentDrawRequest, blockRenderInfo.blockSize, blockRenderInfo.pixelOffsetX, blockRenderInfo.pixelOffsetY, blockRenderInfo.pixelSize);
+			Platform.runLater(() -> {
+				mandelbrotApp.drawMandelbrot();
+			});
+			passes++;
+
+			DrawRequest anotherDrawRequest = getNextDrawRequest();
+			if (anotherDrawRequest == null) {
+				block++;
+				if (block == progressiveRenderInfos.length) {
+					mandelbrotApp.storeMandelbrotInCache(currentDrawRequest);
+				}
+			} else {
+				commitEvent(event, currentDrawRequest, passes, false, true);
+				recordMetrics(startNanos, false, true);
+
+				currentDrawRequest = anotherDrawRequest;
+				progressiveRenderInfos = currentDrawRequest.getProgressiveRenderInfo();
+				event = new DrawRequestEvent();
+				event.begin();
+				RenderMetrics.getInstance().renderStarted();
+				startNanos = System.nanoTime();
+				cached = loadFromCache(currentDrawRequest);
+				block = cached ? progressiveRenderInfos.length : 0;
+				passes = 0;
+			}
+		}
+		commitEvent(event, currentDrawRequest, passes, cached, block < progressiveRenderInfos.length);
+		recordMetrics(startNanos, cached, block < progressiveRenderInfos.length);
+	}
 }
\ No newline at end of file
@@ -1,40 +1,73 @@
 package ch.obermuhlner.mandelbrot.javafx;
 
-import java.io.File;
-import java.io.IOException;
 import java.math.BigDecimal;
-import java.math.MathContext;
-import java.math.RoundingMode;
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 
-import javax.imageio.ImageIO;
-
-import ch.obermuhlner.mandelbrot.palette.Palette;
 import ch.obermuhlner.mandelbrot.render.AutoPrecisionMandelbrotRenderer;
+import ch.obermuhlner.mandelbrot.render.CostEstimate;
+import ch.obermuhlner.mandelbrot.render.CostEstimator;
+import ch.obermuhlner.mandelbrot.render.IterationBuffer;
 import ch.obermuhlner.mandelbrot.render.MandelbrotRenderer;
-import ch.obermuhlner.mandelbrot.util.StopWatch;
+import ch.obermuhlner.mandelbrot.render.RenderPool;
+import ch.obermuhlner.mandelbrot.render.RenderPriority;
+import ch.obermuhlner.mandelbrot.render.RenderResult;
+import ch.obermuhlner.mandelbrot.render.RenderService;
+import ch.obermuhlner.mandelbrot.render.RenderSpec;
 import ch.obermuhlner.mandelbrot.util.ThreadInterruptedException;
-import ch.obermuhlner.math.big.BigDecimalMath;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.embed.swing.SwingFXUtils;
 
+/**
+ * Renders the snapshot requests in the background, several at the same time.
+ * 
+ * <p>The cost of every waiting request is estimated before it is started.
+ * The requests that are already estimated are started before the next request is estimated,
+ * so that the estimate of a deep request does not delay the start of the small ones.
+ * The waiting requests are started by priority and in the order of the snapshot table,
+ * as long as their iteration files fit into the disk budget and only one large request is running,
+ * so that small snapshots do not wait behind a large one.</p>
+ * 
+ * <p>The scheduling can be configured with system properties:</p>
+ * <ul>
+ * <li><code>mandelbrot.snapshots.concurrent</code> - the maximum number of snapshots rendered at the same time (default 3)</li>
+ * <li><code>mandelbrot.snapshots.maxBytes</code> - the disk budget for the mapped iteration files of the running snapshots (default half of the usable space in the directory of the snapshot)</li>
+ * <li><code>mandelbrot.snapshots.largeMillis</code> - the estimated calculation time of a large snapshot (default 10 seconds)</li>
+ * </ul>
+ */
 public class BackgroundSnapshotRenderer extends Thread {
 
 	private static final BigDecimal TWO = new BigDecimal(2);
-	
-	private Deque<SnapshotRequest> pendingSnapshotRequests = new ArrayDeque<>();
+
+	private final int maxConcurrent = Math.max(1, Integer.getInteger("mandelbrot.snapshots.concurrent", 3));
+	private final Long maxBytes = Long.getLong("mandelbrot.snapshots.maxBytes");
+	private final long largeMillis = Long.getLong("mandelbrot.snapshots.largeMillis", 10_000);
+
+	private final List<SnapshotRequest> pendingSnapshotRequests = new ArrayList<>();
+	private final Map<SnapshotRequest, CostEstimate> estimates = new HashMap<>();
+	private final Map<SnapshotRequest, CompletableFuture<RenderResult>> runningSnapshotRequests = new HashMap<>();
 	private volatile boolean running;
 
-	private int pendingCount = 0;
-	
 	private final ObservableList<SnapshotRequest> snapshotRequests = FXCollections.observableArrayList();
 	
-	private final MandelbrotRenderer mandelbrotRenderer = new AutoPrecisionMandelbrotRenderer();
+	private final MandelbrotRenderer mandelbrotRenderer = new AutoPrecisionMandelbrotRenderer(RenderPool.BACKGROUND);
+	private final RenderService renderService = new RenderService(mandelbrotRenderer, RenderPool.BACKGROUND, maxConcurrent);
+	private final CostEstimator costEstimator = new CostEstimator(mandelbrotRenderer);
+
+	public BackgroundSnapshotRenderer() {
+		super("mandelbrot-snapshot-scheduler");
+		// several snapshots are rendered at the same time, the iterations are stored outside of the heap
+		renderService.setMaxInMemoryPixels(0);
+	}
 
 	public synchronized int getPendingSnapshotRequestCount() {
-		return pendingCount;
+		return pendingSnapshotRequests.size() + runningSnapshotRequests.size();
 	}
 	
 	public synchronized void stopRunning() {
@@ -47,13 +80,15 @@ public class BackgroundSnapshotRenderer extends Thread {
 		snapshotRequests.clear();
 		//stopRunning();
 		
+		for (CompletableFuture<RenderResult> future : new ArrayList<>(runningSnapshotRequests.values())) {
+			future.cancel(true);
+		}
 		interrupt();
 	}
 
 	public synchronized void addSnapshotRequest(SnapshotRequest snapshotRequest) {
 		snapshotRequests.add(snapshotRequest);
 		pendingSnapshotRequests.add(snapshotRequest);
-		pendingCount++;
 		notifyAll();
 	}
 
@@ -64,82 +99,172 @@ public class BackgroundSnapshotRenderer extends Thread {
 			
 			while (running) {
 				SnapshotRequest snapshotRequest = null;
+				SnapshotRequest unestimatedSnapshotRequest = null;
 				
 				synchronized(this) {
-					if (!pendingSnapshotRequests.isEmpty()) {
-						snapshotRequest = pendingSnapshotRequests.pop();
+					if (runningSnapshotRequests.size() < maxConcurrent) {
+						for (SnapshotRequest candidate : sortedPendingSnapshotRequests()) {
+							if (!estimates.containsKey(candidate)) {
+								if (unestimatedSnapshotRequest == null) {
+									unestimatedSnapshotRequest = candidate;
+								}
+							} else if (isAdmissible(candidate)) {
+								snapshotRequest = candidate;
+								break;
+							}
+						}
 					}
-				}
-				
-				if (snapshotRequest != null) {
-					draw(snapshotRequest);
-					synchronized(this) {
-						pendingCount--;
+
+					if (snapshotRequest != null) {
+						pendingSnapshotRequests.remove(snapshotRequest);
+						start(snapshotRequest, estimates.get(snapshotRequest));
+						// estimate the next request after all admissible requests are started
+						unestimatedSnapshotRequest = null;
+					} else if (unestimatedSnapshotRequest == null && running) {
+						wait();
 					}
 				}
 				
-				synchronized(this) {
-					if (running && pendingSnapshotRequests.isEmpty()) {
-						try {
-							wait();
-						} catch (Exception e) {
-							throw new RuntimeException(e);
-						}
+				if (unestimatedSnapshotRequest != null) {
+					CostEstimate estimate = estimate(unestimatedSnapshotRequest);
+					synchronized(this) {
+						estimates.put(unestimatedSnapshotRequest, estimate);
 					}
 				}
 			}
-		} catch (ThreadInterruptedException ex) {
+		} catch (ThreadInterruptedException | InterruptedException ex) {
 			// ignore end leave thread
 		}
 	}
 
-	private void draw(SnapshotRequest snapshotRequest) {
-		StopWatch stopWatch = new StopWatch();
+	private List<SnapshotRequest> sortedPendingSnapshotRequests() {
+		List<SnapshotRequest> result = new ArrayList<>(pendingSnapshotRequests);
+		result.sort(Comparator.comparing(SnapshotRequest::getPriority));
+		return result;
+	}
+
+	private boolean isAdmissible(SnapshotRequest snapshotRequest) {
+		if (runningSnapshotRequests.isEmpty()) {
+			return true;
+		}
+
+		long bytes = estimateBytes(snapshotRequest);
+		for (SnapshotRequest runningSnapshotRequest : runningSnapshotRequests.keySet()) {
+			bytes += estimateBytes(runningSnapshotRequest);
+		}
+		if (bytes > maxBytes(snapshotRequest)) {
+			return false;
+		}
+
+		if (isLarge(estimates.get(snapshotRequest))) {
+			for (SnapshotRequest runningSnapshotRequest : runningSnapshotRequests.keySet()) {
+				if (isLarge(estimates.get(runningSnapshotRequest))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static long estimateBytes(SnapshotRequest snapshotRequest) {
+		return (long) snapshotRequest.width * snapshotRequest.height * IterationBuffer.bytesPerPixel(snapshotRequest.drawRequest.maxIteration);
+	}
+
+	private long maxBytes(SnapshotRequest snapshotRequest) {
+		if (maxBytes != null) {
+			return maxBytes;
+		}
+		// the iteration files are written next to the snapshot images
+		return snapshotRequest.file.getAbsoluteFile().getParentFile().getUsableSpace() / 2;
+	}
+
+	private boolean isLarge(CostEstimate estimate) {
+		return estimate != null && estimate.getMillis() > largeMillis;
+	}
+
+	private void start(SnapshotRequest snapshotRequest, CostEstimate estimate) {
 		snapshotRequest.snapshotStatusProperty().set(SnapshotStatus.Calculating);
-		renderImage(
-				snapshotRequest.file,
-				snapshotRequest.drawRequest.x,
-				snapshotRequest.drawRequest.y,
-				TWO,
-				BigDecimal.valueOf(snapshotRequest.drawRequest.zoom),
-				snapshotRequest.drawRequest.maxIteration,
-				snapshotRequest.palette,
-				snapshotRequest.width,
-				snapshotRequest.height,
-				new UiThreadProgress(snapshotRequest));
-		snapshotRequest.snapshotStatusProperty().set(SnapshotStatus.Done);
-		snapshotRequest.setCalculationMillis((long) stopWatch.getElapsedMilliseconds());
-	}
-
-	private void renderImage(File file, BigDecimal xCenter, BigDecimal yCenter, BigDecimal zoomStart, BigDecimal zoomPower, int maxIterations, Palette palette, int imageWidth, int imageHeight, Progress progress) {
-		if (file.exists()) {
-			System.out.println("Already calculated " + file.getName() + " with zoom " + zoomPower.toPlainString());
+		Platform.runLater(() -> snapshotRequest.setEstimate(estimate));
+		if (snapshotRequest.file.exists()) {
+			System.out.println("Already calculated " + snapshotRequest.file.getName() + " with zoom " + snapshotRequest.drawRequest.zoom);
+			snapshotRequest.snapshotStatusProperty().set(SnapshotStatus.Done);
+			estimates.remove(snapshotRequest);
 			return;
 		}
 
-		int precision = zoomPower.intValue() * 1 + 10;
-		MathContext mc = new MathContext(precision, RoundingMode.HALF_UP);
-		BigDecimal radius = zoomStart.multiply(BigDecimalMath.pow(BigDecimal.TEN, zoomPower.negate(), mc));
-		BigDecimal minWidthHeight = new BigDecimal(Math.min(imageWidth, imageHeight));
-		BigDecimal xRadius = radius.multiply(new BigDecimal(imageWidth), mc).divide(minWidthHeight, mc);
-		BigDecimal yRadius = radius.multiply(new BigDecimal(imageHeight), mc).divide(minWidthHeight, mc);
+		CompletableFuture<RenderResult> future = renderService.render(renderSpec(snapshotRequest), snapshotRequest.getPriority(), new UiThreadProgress(snapshotRequest));
+		runningSnapshotRequests.put(snapshotRequest, future);
+		future.whenComplete((result, exception) -> {
+			synchronized(this) {
+				runningSnapshotRequests.remove(snapshotRequest);
+				estimates.remove(snapshotRequest);
+				notifyAll();
+			}
 
-		WritableImageMandelbrotResult result = new WritableImageMandelbrotResult(imageWidth, imageHeight, palette);
-		mandelbrotRenderer.drawMandelbrot(result, xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight, progress);
-		
-		try {
-			ImageIO.write(SwingFXUtils.fromFXImage(result.getImage(), null), "png", file);
-		} catch (IOException e) {
-			e.printStackTrace();
+			if (exception == null) {
+				snapshotRequest.snapshotStatusProperty().set(SnapshotStatus.Done);
+				Platform.runLater(() -> {
+					snapshotRequest.setCalculationMillis((long) (result.computeMillis + result.encodeMillis));
+					snapshotRequest.statisticsProperty().set(result.statistics.toString());
+					snapshotRequest.setThroughput(result.statistics);
+				});
+			} else if (!(exception instanceof CancellationException)) {
+				// removed requests are cancelled
+				snapshotRequest.snapshotStatusProperty().set(SnapshotStatus.Failed);
+				exception.printStackTrace();
+			}
+		});
+	}
+
+	private CostEstimate estimate(SnapshotRequest snapshotRequest) {
+		if (snapshotRequest.file.exists()) {
+			return CostEstimate.ZERO;
 		}
+		return costEstimator.estimate(renderSpec(snapshotRequest));
+	}
+
+	private static RenderSpec renderSpec(SnapshotRequest snapshotRequest) {
+		BigDecimal zoomPower = BigDecimal.valueOf(snapshotRequest.drawRequest.zoom);
+		return RenderSpec.ofZoom(snapshotRequest.drawRequest.x, snapshotRequest.drawRequest.y, TWO, zoomPower, snapshotRequest.drawRequest.maxIteration, snapshotRequest.width, snapshotRequest.height)
+				.withImage(snapshotRequest.file, snapshotRequest.palette, 0.0);
 	}
 
 	public ObservableList<SnapshotRequest> getSnapshotRequests() {
 		return snapshotRequests;
 	}
 
-	public void removeSnapshotRequest(SnapshotRequest snapshotRequest) {
+	/**
+	 * Removes a snapshot request from the table, a running snapshot is stopped (its checkpoint is kept).
+	 */
+	public synchronized void removeSnapshotRequest(SnapshotRequest snapshotRequest) {
 		pendingSnapshotRequests.remove(snapshotRequest);
+		estimates.remove(snapshotRequest);
 		snapshotRequests.remove(snapshotRequest);
-	}	
+		CompletableFuture<RenderResult> future = runningSnapshotRequests.get(snapshotRequest);
+		if (future != null) {
+			future.cancel(true);
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Moves a snapshot request up (negative offset) or down in the table, which changes the order of the waiting requests with the same priority.
+	 */
+	public synchronized void moveSnapshotRequest(SnapshotRequest snapshotRequest, int offset) {
+		int index = snapshotRequests.indexOf(snapshotRequest);
+		int newIndex = Math.max(0, Math.min(snapshotRequests.size() - 1, index + offset));
+		if (index < 0 || index == newIndex) {
+			return;
+		}
+		snapshotRequests.remove(index);
+		snapshotRequests.add(newIndex, snapshotRequest);
+
+		pendingSnapshotRequests.sort(Comparator.comparingInt(snapshotRequests::indexOf));
+		notifyAll();
+	}
+
+	public synchronized void setSnapshotPriority(SnapshotRequest snapshotRequest, RenderPriority priority) {
+		snapshotRequest.setPriority(priority);
+		notifyAll();
+	}
 }
@@ -11,9 +11,15 @@ import java.text.DecimalFormat;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.Properties;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
 import java.util.stream.IntStream;
 
+import ch.obermuhlner.mandelbrot.jfr.ColorizationEvent;
+import ch.obermuhlner.mandelbrot.jfr.MandelbrotEvents;
+import ch.obermuhlner.mandelbrot.jfr.ProgressivePassEvent;
+import ch.obermuhlner.mandelbrot.management.RenderMetrics;
 import ch.obermuhlner.mandelbrot.movie.MandelbrotMovie;
 import ch.obermuhlner.mandelbrot.movie.MovieStep;
 import ch.obermuhlner.mandelbrot.palette.Color;
@@ -22,6 +28,12 @@ import ch.obermuhlner.mandelbrot.palette.PaletteFactory;
 import ch.obermuhlner.mandelbrot.palette.PaletteType;
 import ch.obermuhlner.mandelbrot.poi.PointOfInterest;
 import ch.obermuhlner.mandelbrot.poi.StandardPointsOfInterest;
+import ch.obermuhlner.mandelbrot.render.CheckpointMandelbrotRenderer;
+import ch.obermuhlner.mandelbrot.render.IntIterationBuffer;
+import ch.obermuhlner.mandelbrot.render.MandelbrotResult;
+import ch.obermuhlner.mandelbrot.render.RenderCache;
+import ch.obermuhlner.mandelbrot.render.RenderPool;
+import ch.obermuhlner.mandelbrot.render.RenderPriority;
 import javafx.application.Application;
 import javafx.beans.binding.Bindings;
 import javafx.beans.property.*;
@@ -107,6 +119,9 @@ public class MandelbrotApp extends Application {
 
 	private Canvas mandelbrotCanvas;
 	private WritableImage image = new WritableImage(IMAGE_SIZE, IMAGE_SIZE);
+	private final IntIterationBuffer imageIterations = new IntIterationBuffer(IMAGE_SIZE, IMAGE_SIZE);
+
+	private final RenderCache renderCache = RenderCache.getDefault();
 
 	private final Path homeDirectory = homeDirectory();
 
@@ -120,6 +135,10 @@ public class MandelbrotApp extends Application {
 
 		backgroundSnapshotRenderer = new BackgroundSnapshotRenderer();
 		backgroundSnapshotRenderer.start();
+		resumeInterruptedSnapshots();
+
+		RenderMetrics.getInstance().setSnapshotQueueDepthSupplier(backgroundSnapshotRenderer::getPendingSnapshotRequestCount);
+		RenderMetrics.register();
 		
 		Group root = new Group();
 		Scene scene = new Scene(root);
@@ -183,6 +202,36 @@ public class MandelbrotApp extends Application {
 		super.stop();
 	}
 	
+	private void resumeInterruptedSnapshots() {
+		String checkpointSuffix = ".png" + CheckpointMandelbrotRenderer.CHECKPOINT_SUFFIX;
+		File[] checkpointDirectories = homeDirectory.toFile().listFiles(file -> file.isDirectory() && file.getName().endsWith(checkpointSuffix));
+		if (checkpointDirectories == null) {
+			return;
+		}
+
+		for (File checkpointDirectory : checkpointDirectories) {
+			String basename = checkpointDirectory.getName().substring(0, checkpointDirectory.getName().length() - checkpointSuffix.length());
+			File snapshotFile = homeDirectory.resolve(basename + ".png").toFile();
+			File mandelbrotFile = homeDirectory.resolve(basename + ".mandelbrot").toFile();
+			Properties checkpointProperties = CheckpointMandelbrotRenderer.readCheckpointProperties(snapshotFile);
+			if (snapshotFile.exists() || !mandelbrotFile.exists() || checkpointProperties == null) {
+				continue;
+			}
+
+			try {
+				PointOfInterest pointOfInterest = PointOfInterest.load(mandelbrotFile);
+				Palette snapshotPalette = paletteFactory.createPalette(pointOfInterest.paletteType, pointOfInterest.paletteSeed, pointOfInterest.paletteStep);
+				int maxIterations = Integer.parseInt(checkpointProperties.getProperty("maxIterations"));
+				int width = Integer.parseInt(checkpointProperties.getProperty("width"));
+				int height = Integer.parseInt(checkpointProperties.getProperty("height"));
+				DrawRequest drawRequest = new DrawRequest(pointOfInterest.x, pointOfInterest.y, pointOfInterest.zoom, maxIterations);
+				backgroundSnapshotRenderer.addSnapshotRequest(new SnapshotRequest(drawRequest, snapshotPalette, width, height, snapshotFile));
+			} catch (IOException | RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
 	private Canvas createMandelbrotCanvas() {
 		double height = IMAGE_SIZE;
 		double width = IMAGE_SIZE;
@@ -438,7 +487,26 @@ public class MandelbrotApp extends Application {
 					removeMenuItem.setOnAction(event -> {
 						backgroundSnapshotRenderer.removeSnapshotRequest(tableRow.getItem());
 					});
+					MenuItem moveUpMenuItem = new MenuItem("Move Up");
+					moveUpMenuItem.setOnAction(event -> {
+						backgroundSnapshotRenderer.moveSnapshotRequest(tableRow.getItem(), -1);
+					});
+					MenuItem moveDownMenuItem = new MenuItem("Move Down");
+					moveDownMenuItem.setOnAction(event -> {
+						backgroundSnapshotRenderer.moveSnapshotRequest(tableRow.getItem(), 1);
+					});
+					Menu priorityMenu = new Menu("Priority");
+					for (RenderPriority priority : RenderPriority.values()) {
+						MenuItem priorityMenuItem = new MenuItem(priority.name());
+						priorityMenuItem.setOnAction(event -> {
+							backgroundSnapshotRenderer.setSnapshotPriority(tableRow.getItem(), priority);
+						});
+						priorityMenu.getItems().add(priorityMenuItem);
+					}
 					tableRow.setContextMenu(new ContextMenu(
+								moveUpMenuItem,
+								moveDownMenuItem,
+								priorityMenu,
 								removeMenuItem
 							));
 					return tableRow;
@@ -450,15 +518,27 @@ public class MandelbrotApp extends Application {
 			addTableColumn(snapshotTableView, "Status", 100, snapshotRequest -> {
 				return snapshotRequest.snapshotStatusProperty();
 			});
+			addTableColumn(snapshotTableView, "Priority", 60, snapshotRequest -> {
+				return snapshotRequest.priorityProperty();
+			});
 			addProgressBarTableColumn(snapshotTableView, "Progress", 100, snapshotRequest -> {
 				return snapshotRequest.progressProperty().asObject();
 			});
 			addTableColumn(snapshotTableView, "%", 60, snapshotRequest -> {
 				return snapshotRequest.progressProperty().multiply(100);
 			});
+			addTableColumn(snapshotTableView, "ETA", 100, snapshotRequest -> {
+				return snapshotRequest.etaProperty();
+			});
 			addTableColumn(snapshotTableView, "Calculation Time", 100, snapshotRequest -> {
 				return snapshotRequest.calculationTimeProperty();
 			});
+			addTableColumn(snapshotTableView, "Throughput", 200, snapshotRequest -> {
+				return snapshotRequest.throughputProperty();
+			});
+			addTableColumn(snapshotTableView, "Statistics", 300, snapshotRequest -> {
+				return snapshotRequest.statisticsProperty();
+			});
 			addTableColumn(snapshotTableView, "X", 100, snapshotRequest -> {
 				return new ReadOnlyStringWrapper(DOUBLE_8DIGITS_FORMAT.format(snapshotRequest.drawRequest.x));
 			});
@@ -501,17 +581,19 @@ public class MandelbrotApp extends Application {
 			Button createMovieButton = new Button("Create Movie");
 			hBox.getChildren().add(createMovieButton);
 			createMovieButton.setOnAction(event -> {
-				new Thread(() -> {
+				Thread movieThread = new Thread(() -> {
 					createMovieButton.setDisable(true);
 					try {
 						String basename = "mandelbrot_" + LocalDateTime.now().toString().replace(':', '_');
 						Path directory = homeDirectory.resolve(basename);
-						MandelbrotMovie movie = new MandelbrotMovie();
+						MandelbrotMovie movie = new MandelbrotMovie(RenderPool.MOVIE);
 						movie.createMovie(directory, movieStepsProperty.get());
 					} finally {
 						createMovieButton.setDisable(false);
 					}
-				}).start();
+				}, "mandelbrot-movie");
+				movieThread.setPriority(Thread.MIN_PRIORITY);
+				movieThread.start();
 			});
 		}
 
@@ -793,12 +875,68 @@ public class MandelbrotApp extends Application {
 		}
 	}
 
+	boolean loadMandelbrotFromCache(DrawRequest drawRequest) {
+		if (!renderCache.load(cacheKey(drawRequest), imageIterations, IMAGE_SIZE, IMAGE_SIZE)) {
+			return false;
+		}
+
+		ColorizationEvent event = new ColorizationEvent();
+		event.begin();
+
+		PixelWriter pixelWriter = image.getPixelWriter();
+		for (int pixelY = 0; pixelY < IMAGE_SIZE; pixelY++) {
+			for (int pixelX = 0; pixelX < IMAGE_SIZE; pixelX++) {
+				int iterations = imageIterations.getIterations(pixelX, pixelY);
+				Color color = iterations == MandelbrotResult.NEVER_ESCAPED ? Color.BLACK : palette.getColor(iterations);
+				pixelWriter.setColor(pixelX, pixelY, ColorUtil.toJavafxColor(color));
+			}
+		}
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.pixelCount = getImagePixelCount();
+			event.commit();
+		}
+		return true;
+	}
+
+	void storeMandelbrotInCache(DrawRequest drawRequest) {
+		renderCache.store(cacheKey(drawRequest), drawRequest.getMaxIteration(), imageIterations);
+	}
+
+	private static String cacheKey(DrawRequest drawRequest) {
+		BigDecimal radius = drawRequest.getRadius();
+		return RenderCache.key(drawRequest.x, drawRequest.y, radius, radius, drawRequest.getPrecision(), drawRequest.getMaxIteration(), IMAGE_SIZE, IMAGE_SIZE, MandelbrotApp.class.getSimpleName());
+	}
+
+	long getImagePixelCount() {
+		return (long) IMAGE_SIZE * IMAGE_SIZE;
+	}
+
 	void calculateMandelbrot(DrawRequest drawRequest, int blockSize, int blockPixelOffsetX, int blockPixelOffsetY, int pixelSize) {
+		ProgressivePassEvent event = new ProgressivePassEvent();
+		event.begin();
+
 		if (drawRequest.isInsideDoublePrecision()) {
 			calculateMandelbrotDouble(drawRequest, blockSize, blockPixelOffsetX, blockPixelOffsetY, pixelSize);
 		} else {
 			calculateMandelbrotBigDecimal(drawRequest, blockSize, blockPixelOffsetX, blockPixelOffsetY, pixelSize, true);
 		}
+
+		event.end();
+		long columns = (IMAGE_SIZE - blockPixelOffsetX + blockSize - 1) / blockSize;
+		long rows = (IMAGE_SIZE - blockPixelOffsetY + blockSize - 1) / blockSize;
+		// the progressive passes do not count iterations
+		RenderMetrics.getInstance().tileFinished(columns * rows, 0);
+		if (event.shouldCommit()) {
+			event.zoom = drawRequest.zoom;
+			event.precision = drawRequest.getPrecision();
+			event.engine = drawRequest.isInsideDoublePrecision() ? MandelbrotEvents.ENGINE_DOUBLE : MandelbrotEvents.ENGINE_BIGDECIMAL;
+			event.pixelCount = columns * rows;
+			event.blockSize = blockSize;
+			event.pixelSize = pixelSize;
+			event.commit();
+		}
 	}
 	
 	private void calculateMandelbrotDouble(DrawRequest drawRequest, int blockSize, int blockPixelOffsetX, int blockPixelOffsetY, int pixelSize) {
@@ -823,6 +961,7 @@ public class MandelbrotApp extends Application {
 			double y0 = pixelStepY * blockPixelOffsetY - yCenter - yRadius; 
 			for (int pixelY = blockPixelOffsetY; pixelY < pixelHeight; pixelY+=blockSize) {
 				int iterations = MandelbrotMath.calculateMandelbrotIterations(x0, y0, maxIteration);
+				imageIterations.setIterations(pixelX, pixelY, iterations == maxIteration ? MandelbrotResult.NEVER_ESCAPED : iterations);
 
 				Color color = iterations == maxIteration ? Color.BLACK : palette.getColor(iterations);
 				for (int pixelOffsetX = 0; pixelOffsetX < pixelSize; pixelOffsetX++) {
@@ -861,16 +1000,14 @@ public class MandelbrotApp extends Application {
 		BigDecimal blockStepY = pixelStepY.multiply(new BigDecimal(blockSize), mc);
 		BigDecimal x0Start = pixelStepX.multiply(new BigDecimal(blockPixelOffsetX), mc).subtract(xCenter, mc).subtract(xRadius, mc);
 
-		IntStream range = IntStream.range(0, (int)(pixelWidth / blockSize));
-		if (parallel) {
-			range = range.parallel();
-		}
-		range.forEach(indexPixelX -> {
+		IntStream range = IntStream.range(0, (int) Math.ceil((pixelWidth - blockPixelOffsetX) / blockSize));
+		IntConsumer column = indexPixelX -> {
 			int pixelX = blockPixelOffsetX + indexPixelX * blockSize;
 			BigDecimal x0 = x0Start.add(blockStepX.multiply(new BigDecimal(indexPixelX), mc), mc);
 			BigDecimal y0 = pixelStepY.multiply(new BigDecimal(blockPixelOffsetY), mc).subtract(yCenter, mc).subtract(yRadius, mc);
 			for (int pixelY = blockPixelOffsetY; pixelY < pixelHeight; pixelY+=blockSize) {
 				int iterations = MandelbrotMath.calculateMandelbrotIterations(x0, y0, maxIteration, mc);
+				imageIterations.setIterations(pixelX, pixelY, iterations == maxIteration ? MandelbrotResult.NEVER_ESCAPED : iterations);
 				
 				Color color = iterations == maxIteration ? Color.BLACK : palette.getColor(iterations);
 				for (int pixelOffsetX = 0; pixelOffsetX < pixelSize; pixelOffsetX++) {
@@ -885,7 +1022,12 @@ public class MandelbrotApp extends Application {
 				
 				y0 = y0.add(blockStepY, mc);
 			}
-		});
+		};
+		if (parallel) {
+			RenderPool.INTERACTIVE.getPool().submit(() -> range.parallel().forEach(column)).join();
+		} else {
+			range.forEach(column);
+		}
 	}
 
 	private static Path homeDirectory() {
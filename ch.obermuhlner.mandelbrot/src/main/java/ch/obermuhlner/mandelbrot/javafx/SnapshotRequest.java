@@ -3,12 +3,14 @@ package ch.obermuhlner.mandelbrot.javafx;
 import java.io.File;
 
 import ch.obermuhlner.mandelbrot.palette.Palette;
+import ch.obermuhlner.mandelbrot.render.CostEstimate;
+import ch.obermuhlner.mandelbrot.render.RenderPriority;
+import ch.obermuhlner.mandelbrot.render.RenderStatistics;
+import ch.obermuhlner.mandelbrot.util.StopWatch;
 import javafx.beans.property.*;
 
 public class SnapshotRequest implements Progress {
-	private static final long MILLISECONDS_PER_HOUR = 60 * 60 * 1000;
-	private static final long MILLISECONDS_PER_MINUTE = 60 * 1000;
-	private static final long MILLISECONDS_PER_SECOND = 1000;
+	private static final double MIN_PROGRESS_FOR_EXTRAPOLATION = 0.05;
 
 	public final DrawRequest drawRequest;
 	public final Palette palette;
@@ -18,9 +20,16 @@ public class SnapshotRequest implements Progress {
 	
 	private double totalProgress;
 	private double currentProgress;
+	private CostEstimate estimate;
+	private long startMillis;
 	private final DoubleProperty progressProperty = new SimpleDoubleProperty();
 	private final StringProperty calculationTimeProperty = new SimpleStringProperty();
+	private final StringProperty etaProperty = new SimpleStringProperty();
+	private final StringProperty statisticsProperty = new SimpleStringProperty();
+	private final StringProperty throughputProperty = new SimpleStringProperty();
 	private final ObjectProperty<SnapshotStatus> snapshotStatusProperty = new SimpleObjectProperty<>(SnapshotStatus.Waiting);
+	private final ObjectProperty<RenderPriority> priorityProperty = new SimpleObjectProperty<>(RenderPriority.Normal);
+	private volatile RenderPriority priority = RenderPriority.Normal;
 	
 	public SnapshotRequest(DrawRequest drawRequest, Palette palette, int width, int height, File file) {
 		this.drawRequest = drawRequest;
@@ -29,7 +38,7 @@ public class SnapshotRequest implements Progress {
 		this.height = height;
 		this.file = file;
 		
-		totalProgress = width * height;
+		totalProgress = (double) width * height;
 	}
 	
 	@Override
@@ -47,8 +56,60 @@ public class SnapshotRequest implements Progress {
 		currentProgress += progress;
 		double relativeProgress = Math.min(1.0, currentProgress / totalProgress);
 		progressProperty.set(relativeProgress);
+		updateEta();
+		updateThroughput();
+	}
+
+	/**
+	 * Sets the estimated cost when the calculation starts.
+	 * 
+	 * <p>The ETA is based on the estimate until enough progress has been made to extrapolate from the elapsed time.</p>
+	 */
+	public void setEstimate(CostEstimate estimate) {
+		this.estimate = estimate;
+		this.startMillis = System.currentTimeMillis();
+		updateEta();
+	}
+
+	private void updateEta() {
+		if (estimate == null) {
+			return;
+		}
+
+		double progress = progressProperty.get();
+		long elapsedMillis = System.currentTimeMillis() - startMillis;
+		long remainingMillis;
+		if (progress >= MIN_PROGRESS_FOR_EXTRAPOLATION) {
+			remainingMillis = (long) (elapsedMillis * (1.0 - progress) / progress);
+		} else {
+			remainingMillis = Math.max(0, estimate.getMillis() - elapsedMillis);
+		}
+		etaProperty.set(progress >= 1.0 ? "" : StopWatch.formatMillis(remainingMillis));
 	}
 	
+	private void updateThroughput() {
+		long elapsedMillis = System.currentTimeMillis() - startMillis;
+		if (estimate == null || elapsedMillis <= 0) {
+			return;
+		}
+
+		double pixels = progressProperty.get() * width * height;
+		throughputProperty.set(String.format("%.2f Mpixels/s", pixels / elapsedMillis / 1000));
+	}
+
+	/**
+	 * Sets the final throughput of the calculation.
+	 */
+	public void setThroughput(RenderStatistics statistics) {
+		double elapsedMillis = statistics.getElapsedNanos() / 1_000_000.0;
+		if (elapsedMillis <= 0) {
+			return;
+		}
+		throughputProperty.set(String.format("%.2f Mpixels/s, %.1f Miterations/s",
+				statistics.getPixelCount() / elapsedMillis / 1000,
+				statistics.getIterationCount() / elapsedMillis / 1000));
+	}
+
 	public DoubleProperty progressProperty() {
 		return progressProperty;
 	}
@@ -57,46 +118,40 @@ public class SnapshotRequest implements Progress {
 		return calculationTimeProperty;
 	}
 
-	public void setCalculationMillis(long millis) {
-		long remainingMillis = millis;
-
-		long hours = remainingMillis / MILLISECONDS_PER_HOUR;
-		remainingMillis -= hours * MILLISECONDS_PER_HOUR;
-
-		long minutes = remainingMillis / MILLISECONDS_PER_MINUTE;
-		remainingMillis -= minutes * MILLISECONDS_PER_MINUTE;
-
-		long seconds = remainingMillis / MILLISECONDS_PER_SECOND;
-		remainingMillis -= seconds * MILLISECONDS_PER_SECOND;
-
-		StringBuilder textBuilder = new StringBuilder();
-		if (hours > 0) {
-			textBuilder.append(hours);
-			textBuilder.append("h ");
-		}
-		if (minutes > 0) {
-			textBuilder.append(minutes);
-			textBuilder.append("m ");
-		}
-		if (seconds > 0) {
-			textBuilder.append(seconds);
-			textBuilder.append("s ");
-		}
-		if (remainingMillis > 0) {
-			textBuilder.append(remainingMillis);
-			textBuilder.append("ms ");
-		}
+	public StringProperty etaProperty() {
+		return etaProperty;
+	}
 
-		String text = textBuilder.toString();
+	public StringProperty statisticsProperty() {
+		return statisticsProperty;
+	}
 
-		if (text.equals("")) {
-			text = "< 1 ms";
-		}
+	public StringProperty throughputProperty() {
+		return throughputProperty;
+	}
 
-		calculationTimeProperty.set(text);
+	public void setCalculationMillis(long millis) {
+		etaProperty.set("");
+		calculationTimeProperty.set(StopWatch.formatMillis(millis));
 	}
 	
 	public ObjectProperty<SnapshotStatus> snapshotStatusProperty() {
 		return snapshotStatusProperty;
 	}
+
+	public ObjectProperty<RenderPriority> priorityProperty() {
+		return priorityProperty;
+	}
+
+	public RenderPriority getPriority() {
+		return priority;
+	}
+
+	/**
+	 * Sets the priority in the UI thread, see {@link BackgroundSnapshotRenderer#setSnapshotPriority(SnapshotRequest, RenderPriority)}.
+	 */
+	void setPriority(RenderPriority priority) {
+		this.priority = priority;
+		priorityProperty.set(priority);
+	}
 }
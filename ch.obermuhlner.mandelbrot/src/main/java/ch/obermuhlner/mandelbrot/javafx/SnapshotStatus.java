@@ -4,5 +4,6 @@ public enum SnapshotStatus {
 	
 	Waiting,
 	Calculating,
-	Done
+	Done,
+	Failed
 }
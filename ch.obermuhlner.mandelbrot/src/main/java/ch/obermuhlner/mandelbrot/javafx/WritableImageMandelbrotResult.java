@@ -3,11 +3,15 @@ package ch.obermuhlner.mandelbrot.javafx;
 import ch.obermuhlner.mandelbrot.palette.Color;
 import ch.obermuhlner.mandelbrot.palette.Palette;
 import ch.obermuhlner.mandelbrot.render.MandelbrotResult;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.PixelWriter;
 import javafx.scene.image.WritableImage;
 
 public class WritableImageMandelbrotResult implements MandelbrotResult {
 
+	// the blocks of every render thread are colored into the same buffer, setPixels() copies it
+	private static final ThreadLocal<int[]> argbBuffer = ThreadLocal.withInitial(() -> new int[0]);
+
 	private final WritableImage image;
 	private final Palette palette;
 	private final PixelWriter pixelWriter;
@@ -28,4 +32,20 @@ public class WritableImageMandelbrotResult implements MandelbrotResult {
 		Color color = palette.getColor(iterations);
 		pixelWriter.setColor(pixelX, pixelY, ColorUtil.toJavafxColor(color));
 	}
+
+	@Override
+	public void setIterations(int pixelX, int pixelY, int width, int height, int[] iterations, int offset, int scanlineStride) {
+		int[] argb = argbBuffer.get();
+		if (argb.length < width * height) {
+			argb = new int[width * height];
+			argbBuffer.set(argb);
+		}
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				Color color = palette.getColor(iterations[offset + x + y * scanlineStride]);
+				argb[x + y * width] = color == null ? 0 : 0xff000000 | color.toRGB();
+			}
+		}
+		pixelWriter.setPixels(pixelX, pixelY, width, height, PixelFormat.getIntArgbInstance(), argb, 0, width);
+	}
 }
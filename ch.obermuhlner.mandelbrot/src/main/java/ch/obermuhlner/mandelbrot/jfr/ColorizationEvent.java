@@ -0,0 +1,17 @@
+package ch.obermuhlner.mandelbrot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ch.obermuhlner.mandelbrot.Colorization")
+@Label("Colorization")
+@Category(MandelbrotEvents.CATEGORY)
+@Description("Conversion of iterations into colors with a palette")
+public class ColorizationEvent extends Event {
+
+	@Label("Pixel Count")
+	public long pixelCount;
+}
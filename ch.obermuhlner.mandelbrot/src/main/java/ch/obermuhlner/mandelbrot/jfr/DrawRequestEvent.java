@@ -0,0 +1,41 @@
+package ch.obermuhlner.mandelbrot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ch.obermuhlner.mandelbrot.DrawRequest")
+@Label("Draw Request")
+@Category(MandelbrotEvents.CATEGORY)
+@Description("The viewer calculates a new view progressively, until it is complete or replaced by another draw request")
+public class DrawRequestEvent extends Event {
+
+	@Label("Zoom")
+	public double zoom;
+
+	@Label("Precision")
+	@Description("Number of significant digits used by the BigDecimal calculations")
+	public int precision;
+
+	@Label("Engine")
+	public String engine;
+
+	@Label("Pixel Count")
+	public long pixelCount;
+
+	@Label("Max Iterations")
+	public int maxIterations;
+
+	@Label("Passes")
+	@Description("Number of progressive passes that were calculated")
+	public int passes;
+
+	@Label("Cached")
+	public boolean cached;
+
+	@Label("Replaced")
+	@Description("The draw request was replaced by another one before it was complete")
+	public boolean replaced;
+}
@@ -0,0 +1,22 @@
+package ch.obermuhlner.mandelbrot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ch.obermuhlner.mandelbrot.FileWrite")
+@Label("File Write")
+@Category(MandelbrotEvents.CATEGORY)
+@Description("A file is written atomically")
+public class FileWriteEvent extends Event {
+
+	@Label("Path")
+	public String path;
+
+	@Label("Bytes")
+	@DataAmount
+	public long bytes;
+}
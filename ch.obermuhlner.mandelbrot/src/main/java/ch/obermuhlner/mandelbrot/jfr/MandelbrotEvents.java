@@ -0,0 +1,30 @@
+package ch.obermuhlner.mandelbrot.jfr;
+
+import java.math.BigDecimal;
+
+/**
+ * Helpers to fill the fields of the Java Flight Recorder events.
+ * 
+ * <p>The events require a JVM with the <code>jdk.jfr</code> API (Java 8u272 or later, Java 11 or later).
+ * Record them with <code>-XX:StartFlightRecording</code> or <code>jcmd &lt;pid&gt; JFR.start</code>,
+ * they are shown in the category "Mandelbrot".</p>
+ */
+public class MandelbrotEvents {
+
+	public static final String CATEGORY = "Mandelbrot";
+
+	public static final String ENGINE_DOUBLE = "double";
+	public static final String ENGINE_BIGDECIMAL = "BigDecimal";
+
+	/**
+	 * Converts a radius into the zoom level used in the points of interest (radius = 2 * 10<sup>-zoom</sup>).
+	 */
+	public static double zoom(BigDecimal radius) {
+		if (radius.signum() <= 0) {
+			return 0;
+		}
+		int exponent = radius.precision() - radius.scale() - 1;
+		double mantissa = radius.movePointLeft(exponent).doubleValue();
+		return -exponent - Math.log10(mantissa / 2);
+	}
+}
@@ -0,0 +1,27 @@
+package ch.obermuhlner.mandelbrot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ch.obermuhlner.mandelbrot.PngEncoding")
+@Label("PNG Encoding")
+@Category(MandelbrotEvents.CATEGORY)
+@Description("Encoding and compression of a PNG image")
+public class PngEncodingEvent extends Event {
+
+	@Label("Pixel Count")
+	public long pixelCount;
+
+	@Label("Width")
+	public int width;
+
+	@Label("Height")
+	public int height;
+
+	@Label("Bands")
+	@Description("Number of bands that were compressed in parallel")
+	public int bands;
+}
@@ -0,0 +1,34 @@
+package ch.obermuhlner.mandelbrot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ch.obermuhlner.mandelbrot.ProgressivePass")
+@Label("Progressive Pass")
+@Category(MandelbrotEvents.CATEGORY)
+@Description("A single pass of the progressive calculation in the viewer")
+public class ProgressivePassEvent extends Event {
+
+	@Label("Zoom")
+	public double zoom;
+
+	@Label("Precision")
+	@Description("Number of significant digits used by the BigDecimal calculations")
+	public int precision;
+
+	@Label("Engine")
+	public String engine;
+
+	@Label("Pixel Count")
+	@Description("Number of calculated pixels")
+	public long pixelCount;
+
+	@Label("Block Size")
+	public int blockSize;
+
+	@Label("Pixel Size")
+	public int pixelSize;
+}
@@ -0,0 +1,33 @@
+package ch.obermuhlner.mandelbrot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ch.obermuhlner.mandelbrot.Render")
+@Label("Render")
+@Category(MandelbrotEvents.CATEGORY)
+@Description("Calculation of the iterations of a complete image or tile by a renderer")
+public class RenderEvent extends Event {
+
+	@Label("Zoom")
+	public double zoom;
+
+	@Label("Precision")
+	@Description("Number of significant digits used by the BigDecimal calculations")
+	public int precision;
+
+	@Label("Engine")
+	public String engine;
+
+	@Label("Pixel Count")
+	public long pixelCount;
+
+	@Label("Max Iterations")
+	public int maxIterations;
+
+	@Label("Iterations")
+	public long iterations;
+}
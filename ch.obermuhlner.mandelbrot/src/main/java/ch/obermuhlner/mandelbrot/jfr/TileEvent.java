@@ -0,0 +1,37 @@
+package ch.obermuhlner.mandelbrot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("ch.obermuhlner.mandelbrot.Tile")
+@Label("Tile")
+@Category(MandelbrotEvents.CATEGORY)
+@Description("Calculation of a single tile of a checkpointed image")
+public class TileEvent extends Event {
+
+	@Label("Zoom")
+	public double zoom;
+
+	@Label("Precision")
+	@Description("Number of significant digits used by the BigDecimal calculations")
+	public int precision;
+
+	@Label("Engine")
+	public String engine;
+
+	@Label("Pixel Count")
+	public long pixelCount;
+
+	@Label("Tile X")
+	public int tileX;
+
+	@Label("Tile Y")
+	public int tileY;
+
+	@Label("From Checkpoint")
+	@Description("The tile was loaded from the checkpoint of an interrupted render")
+	public boolean fromCheckpoint;
+}
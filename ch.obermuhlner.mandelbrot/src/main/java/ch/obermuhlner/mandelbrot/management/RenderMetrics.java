@@ -0,0 +1,307 @@
+package ch.obermuhlner.mandelbrot.management;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import ch.obermuhlner.mandelbrot.render.RenderCache;
+import ch.obermuhlner.mandelbrot.render.RenderPool;
+import ch.obermuhlner.mandelbrot.render.RenderPreemption;
+import ch.obermuhlner.mandelbrot.render.RenderStatistics;
+
+/**
+ * Collects the metrics of all renders in this JVM and exposes them as {@link RenderMetricsMXBean}.
+ */
+public class RenderMetrics implements RenderMetricsMXBean {
+
+	public static final String OBJECT_NAME = "ch.obermuhlner.mandelbrot:type=RenderMetrics";
+
+	private static final int RATE_WINDOW_SECONDS = 60;
+	private static final long NANOS_PER_SECOND = 1_000_000_000L;
+	private static final int FRAME_TIME_COUNT = 1000;
+	private static final double NANOS_PER_MILLISECOND = 1_000_000.0;
+
+	private static final RenderMetrics INSTANCE = new RenderMetrics();
+
+	private final long startNanos = System.nanoTime();
+
+	private volatile IntSupplier snapshotQueueDepthSupplier = () -> 0;
+	private volatile Supplier<RenderCache> renderCacheSupplier = RenderCache::getDefault;
+
+	private int activeRenderCount;
+	private long finishedRenderCount;
+	private long cancelledRenderCount;
+	private long totalPixelCount;
+	private long totalIterationCount;
+
+	private final long[] rateSeconds = new long[RATE_WINDOW_SECONDS];
+	private final long[] ratePixels = new long[RATE_WINDOW_SECONDS];
+	private final long[] rateIterations = new long[RATE_WINDOW_SECONDS];
+	private final long[] frameNanos = new long[FRAME_TIME_COUNT];
+
+	private RenderMetrics() {
+	}
+
+	public static RenderMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Registers the metrics in the platform MBean server, so that they can be monitored with standard JMX tools (for example jconsole).
+	 */
+	public static synchronized void register() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(INSTANCE, name);
+			}
+		} catch (JMException e) {
+			e.printStackTrace();
+		}
+	}
+
+	public void setSnapshotQueueDepthSupplier(IntSupplier snapshotQueueDepthSupplier) {
+		this.snapshotQueueDepthSupplier = snapshotQueueDepthSupplier;
+	}
+
+	/**
+	 * Sets the cache that is reported in the cache metrics, if it is not the {@link RenderCache#getDefault() default cache}.
+	 */
+	public void setRenderCache(RenderCache renderCache) {
+		this.renderCacheSupplier = () -> renderCache;
+	}
+
+	public synchronized void renderStarted() {
+		activeRenderCount++;
+	}
+
+	public void renderFinished(RenderStatistics statistics) {
+		renderFinished(statistics.getElapsedNanos());
+	}
+
+	/**
+	 * Records the frame time of a finished render.
+	 * The calculated pixels are reported with {@link #tileFinished(long, long)} while the render is running.
+	 */
+	public synchronized void renderFinished(long elapsedNanos) {
+		activeRenderCount--;
+		frameNanos[(int) (finishedRenderCount % FRAME_TIME_COUNT)] = elapsedNanos;
+		finishedRenderCount++;
+	}
+
+	/**
+	 * Records a calculated tile, so that the rates also change during long renders.
+	 */
+	public synchronized void tileFinished(long pixels, long iterations) {
+		totalPixelCount += pixels;
+		totalIterationCount += iterations;
+
+		long second = currentSecond();
+		int index = (int) (second % RATE_WINDOW_SECONDS);
+		if (rateSeconds[index] != second) {
+			rateSeconds[index] = second;
+			ratePixels[index] = 0;
+			rateIterations[index] = 0;
+		}
+		ratePixels[index] += pixels;
+		rateIterations[index] += iterations;
+	}
+
+	public synchronized void renderCancelled() {
+		activeRenderCount--;
+		cancelledRenderCount++;
+	}
+
+	@Override
+	public int getSnapshotQueueDepth() {
+		return snapshotQueueDepthSupplier.getAsInt();
+	}
+
+	@Override
+	public synchronized int getActiveRenderCount() {
+		return activeRenderCount;
+	}
+
+	@Override
+	public synchronized long getFinishedRenderCount() {
+		return finishedRenderCount;
+	}
+
+	@Override
+	public synchronized long getCancelledRenderCount() {
+		return cancelledRenderCount;
+	}
+
+	@Override
+	public synchronized long getTotalPixelCount() {
+		return totalPixelCount;
+	}
+
+	@Override
+	public synchronized long getTotalIterationCount() {
+		return totalIterationCount;
+	}
+
+	@Override
+	public synchronized double getPixelsPerSecond() {
+		return sumRateWindow(ratePixels) / rateWindowSeconds();
+	}
+
+	@Override
+	public synchronized double getIterationsPerSecond() {
+		return sumRateWindow(rateIterations) / rateWindowSeconds();
+	}
+
+	@Override
+	public synchronized double getAverageFrameMillis() {
+		long[] sorted = sortedFrameNanos();
+		return sorted.length == 0 ? 0 : Arrays.stream(sorted).average().getAsDouble() / NANOS_PER_MILLISECOND;
+	}
+
+	@Override
+	public double getMedianFrameMillis() {
+		return frameMillis(0.5);
+	}
+
+	@Override
+	public double getFrameMillis90Percentile() {
+		return frameMillis(0.9);
+	}
+
+	@Override
+	public double getFrameMillis99Percentile() {
+		return frameMillis(0.99);
+	}
+
+	@Override
+	public double getMaxFrameMillis() {
+		return frameMillis(1.0);
+	}
+
+	@Override
+	public long getCacheHitCount() {
+		return renderCacheSupplier.get().getHitCount();
+	}
+
+	@Override
+	public long getCacheMissCount() {
+		return renderCacheSupplier.get().getMissCount();
+	}
+
+	@Override
+	public double getCacheHitRatio() {
+		long hits = getCacheHitCount();
+		long total = hits + getCacheMissCount();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	@Override
+	public long getCacheBytes() {
+		return renderCacheSupplier.get().getTotalBytes();
+	}
+
+	@Override
+	public int getPoolParallelism() {
+		return (int) sumPools(ForkJoinPool::getParallelism);
+	}
+
+	@Override
+	public int getPoolActiveThreadCount() {
+		return (int) sumPools(ForkJoinPool::getActiveThreadCount);
+	}
+
+	@Override
+	public long getPoolQueuedTaskCount() {
+		return sumPools(ForkJoinPool::getQueuedTaskCount);
+	}
+
+	@Override
+	public double getPoolOccupancy() {
+		return (double) getPoolActiveThreadCount() / getPoolParallelism();
+	}
+
+	@Override
+	public Map<String, Double> getPoolOccupancies() {
+		Map<String, Double> result = new LinkedHashMap<>();
+		result.put("common", occupancy(ForkJoinPool.commonPool()));
+		for (RenderPool renderPool : RenderPool.values()) {
+			if (renderPool.isStarted()) {
+				result.put(renderPool.getName(), occupancy(renderPool.getPool()));
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public int getPausedBackgroundThreadCount() {
+		return RenderPreemption.getInstance().getPausedThreadCount();
+	}
+
+	@Override
+	public long getBackgroundPreemptionCount() {
+		return RenderPreemption.getInstance().getPreemptionCount();
+	}
+
+	private static double occupancy(ForkJoinPool pool) {
+		return (double) pool.getActiveThreadCount() / pool.getParallelism();
+	}
+
+	private static long sumPools(ToLongFunction<ForkJoinPool> function) {
+		List<ForkJoinPool> pools = new ArrayList<>();
+		pools.add(ForkJoinPool.commonPool());
+		for (RenderPool renderPool : RenderPool.values()) {
+			if (renderPool.isStarted()) {
+				pools.add(renderPool.getPool());
+			}
+		}
+		return pools.stream().mapToLong(function).sum();
+	}
+
+	private double frameMillis(double percentile) {
+		long[] sorted = sortedFrameNanos();
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(percentile * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / NANOS_PER_MILLISECOND;
+	}
+
+	private synchronized long[] sortedFrameNanos() {
+		int count = (int) Math.min(finishedRenderCount, FRAME_TIME_COUNT);
+		long[] sorted = Arrays.copyOf(frameNanos, count);
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	private long currentSecond() {
+		return (System.nanoTime() - startNanos) / NANOS_PER_SECOND;
+	}
+
+	private long sumRateWindow(long[] counts) {
+		long second = currentSecond();
+		long sum = 0;
+		for (int i = 0; i < RATE_WINDOW_SECONDS; i++) {
+			if (second - rateSeconds[i] < RATE_WINDOW_SECONDS) {
+				sum += counts[i];
+			}
+		}
+		return sum;
+	}
+
+	private double rateWindowSeconds() {
+		long windowNanos = Math.min(RATE_WINDOW_SECONDS * NANOS_PER_SECOND, System.nanoTime() - startNanos);
+		return Math.max(1, windowNanos) / (double) NANOS_PER_SECOND;
+	}
+}
@@ -0,0 +1,70 @@
+package ch.obermuhlner.mandelbrot.management;
+
+import java.util.Map;
+
+/**
+ * Live metrics of the renderers, registered as <code>ch.obermuhlner.mandelbrot:type=RenderMetrics</code>.
+ * 
+ * <p>The rates are calculated over the tiles that were calculated during the last minute, including the tiles of running renders.
+ * The frame times are calculated over the last 1000 renders.
+ * The pool attributes are summed over the common pool and all started render pools.</p>
+ */
+public interface RenderMetricsMXBean {
+
+	int getSnapshotQueueDepth();
+
+	int getActiveRenderCount();
+
+	long getFinishedRenderCount();
+
+	long getCancelledRenderCount();
+
+	long getTotalPixelCount();
+
+	long getTotalIterationCount();
+
+	double getPixelsPerSecond();
+
+	double getIterationsPerSecond();
+
+	double getAverageFrameMillis();
+
+	double getMedianFrameMillis();
+
+	double getFrameMillis90Percentile();
+
+	double getFrameMillis99Percentile();
+
+	double getMaxFrameMillis();
+
+	long getCacheHitCount();
+
+	long getCacheMissCount();
+
+	double getCacheHitRatio();
+
+	long getCacheBytes();
+
+	int getPoolParallelism();
+
+	int getPoolActiveThreadCount();
+
+	long getPoolQueuedTaskCount();
+
+	double getPoolOccupancy();
+
+	/**
+	 * Returns the fraction of busy threads of every pool by name.
+	 */
+	Map<String, Double> getPoolOccupancies();
+
+	/**
+	 * Returns the number of background threads that are paused by the interactive rendering.
+	 */
+	int getPausedBackgroundThreadCount();
+
+	/**
+	 * Returns how many times a background thread was paused by the interactive rendering.
+	 */
+	long getBackgroundPreemptionCount();
+}
@@ -1,21 +1,24 @@
 package ch.obermuhlner.mandelbrot.movie;
 
-import ch.obermuhlner.mandelbrot.javafx.DummyProgress;
-import ch.obermuhlner.mandelbrot.javafx.Progress;
+import ch.obermuhlner.mandelbrot.management.RenderMetrics;
 import ch.obermuhlner.mandelbrot.palette.MixPalette;
 import ch.obermuhlner.mandelbrot.palette.Palette;
 import ch.obermuhlner.mandelbrot.palette.PaletteFactory;
 import ch.obermuhlner.mandelbrot.poi.PointOfInterest;
 import ch.obermuhlner.mandelbrot.poi.StandardPointsOfInterest;
 import ch.obermuhlner.mandelbrot.render.AutoPrecisionMandelbrotRenderer;
-import ch.obermuhlner.mandelbrot.render.BufferedImageMandelbrotResult;
-import ch.obermuhlner.mandelbrot.render.MandelbrotRenderer;
+import ch.obermuhlner.mandelbrot.render.RenderPool;
+import ch.obermuhlner.mandelbrot.render.RenderResult;
+import ch.obermuhlner.mandelbrot.render.RenderService;
+import ch.obermuhlner.mandelbrot.render.RenderSpec;
+import ch.obermuhlner.mandelbrot.util.FrameFarm;
+import ch.obermuhlner.mandelbrot.util.FrameLog;
 import ch.obermuhlner.mandelbrot.util.StopWatch;
 import ch.obermuhlner.math.big.BigDecimalMath;
 
-import javax.imageio.ImageIO;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
@@ -24,6 +27,10 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.DoubleFunction;
 
 public class MandelbrotMovie {
@@ -53,23 +60,63 @@ public class MandelbrotMovie {
     private final double secondsPerZoomLevel;
     private final double framesPerSecond;
 
-    private final MandelbrotRenderer mandelbrotRenderer = new AutoPrecisionMandelbrotRenderer();
+    private final RenderService renderService;
+
+    private FrameLog frameLog;
+    private FrameFarm frameFarm;
 
     public MandelbrotMovie() {
-        this(1.0, 1.0, 24.0);
+        this(RenderPool.BATCH);
+    }
+
+    public MandelbrotMovie(RenderPool renderPool) {
+        this(1.0, 1.0, 24.0, renderPool);
     }
 
-    public MandelbrotMovie(double secondsPerTranslate, double secondsPerZoomLevel, double framesPerSecond) {
+    public MandelbrotMovie(double secondsPerTranslate, double secondsPerZoomLevel, double framesPerSecond, RenderPool renderPool) {
         this.secondsPerTranslate = secondsPerTranslate;
         this.secondsPerZoomLevel = secondsPerZoomLevel;
         this.framesPerSecond = framesPerSecond;
+        this.renderService = new RenderService(new AutoPrecisionMandelbrotRenderer(renderPool), renderPool, 1);
+    }
+
+    /**
+     * Sets the log that records the timings of every rendered frame.
+     */
+    public void setFrameLog(FrameLog frameLog) {
+        this.frameLog = frameLog;
     }
 
     public void createMovie(Path directory, List<MovieStep> movieSteps) {
         double framesPerTranslate = secondsPerTranslate * framesPerSecond;
         double framePerZoomLevel = secondsPerZoomLevel * framesPerSecond;
 
-        createMovie(directory, movieSteps, framesPerTranslate, framePerZoomLevel);
+        // several processes (also on other machines) may render the same movie into a shared directory
+        Properties job = new Properties();
+        job.setProperty("secondsPerTranslate", String.valueOf(secondsPerTranslate));
+        job.setProperty("secondsPerZoomLevel", String.valueOf(secondsPerZoomLevel));
+        job.setProperty("framesPerSecond", String.valueOf(framesPerSecond));
+        for (int i = 0; i < movieSteps.size(); i++) {
+            MovieStep movieStep = movieSteps.get(i);
+            job.setProperty("step." + i + ".x", movieStep.x.toPlainString());
+            job.setProperty("step." + i + ".y", movieStep.y.toPlainString());
+            job.setProperty("step." + i + ".zoom", movieStep.zoom.toPlainString());
+        }
+        try {
+            frameFarm = FrameFarm.open(directory.toFile(), job, System.out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (IllegalStateException e) {
+            // the directory contains the frames of another movie
+            System.out.println(e.getMessage());
+            return;
+        }
+
+        try {
+            createMovie(directory, movieSteps, framesPerTranslate, framePerZoomLevel);
+        } finally {
+            frameFarm.close();
+        }
     }
 
     private void createMovie(Path directory, List<MovieStep> movieSteps, double framesPerTranslate, double framesPerZoomLevel ) {
@@ -236,44 +283,59 @@ public class MandelbrotMovie {
         int maxIterationsLinear = 1000;
         double colorOffset = 0.0;
 
-        renderImage(file, x, y, zoomStart, zoom, maxIterationsConst, maxIterationsLinear, palette, colorOffset);
+        renderImage(file, imageIndex, x, y, zoomStart, zoom, maxIterationsConst, maxIterationsLinear, palette, colorOffset);
     }
 
-    private void renderImage(File file, BigDecimal xCenter, BigDecimal yCenter, BigDecimal zoomStart, BigDecimal zoomPower, int maxIterationsConst, int maxIterationsLinear, Palette palette, double colorOffset) {
-        if (file.exists()) {
-            //System.out.println("Already calculated " + file.getName() + " with zoom " + zoomPower.toPlainString());
+    private void renderImage(File file, int imageIndex, BigDecimal xCenter, BigDecimal yCenter, BigDecimal zoomStart, BigDecimal zoomPower, int maxIterationsConst, int maxIterationsLinear, Palette palette, double colorOffset) {
+        try {
+            if (!frameFarm.claim(file)) {
+                //System.out.println("Already calculated " + file.getName() + " with zoom " + zoomPower.toPlainString());
+                return;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
             return;
         }
 
-        StopWatch stopWatch = new StopWatch();
-
-        int precision = zoomPower.intValue() * 1 + 10;
-        MathContext mc = new MathContext(precision, RoundingMode.HALF_UP);
-        BigDecimal radius = zoomStart.multiply(BigDecimalMath.pow(BigDecimal.TEN, zoomPower.negate(), mc));
-        int maxIterations = maxIterationsConst + zoomPower.intValue() * maxIterationsLinear;
-        int imageWidth = 800;
-        int imageHeight = 800;
-
-        Progress progress = new DummyProgress();
-
-        BufferedImageMandelbrotResult result = new BufferedImageMandelbrotResult(imageWidth, imageHeight, palette, colorOffset);
-        mandelbrotRenderer.drawMandelbrot(
-                result,
-                xCenter,
-                yCenter,
-                radius,
-                radius,
-                precision,
-                maxIterations,
-                imageWidth,
-                imageHeight,
-                progress);
+        try {
+            renderClaimedImage(file, imageIndex, xCenter, yCenter, zoomStart, zoomPower, maxIterationsConst, maxIterationsLinear, palette, colorOffset);
+        } finally {
+            frameFarm.release(file);
+        }
+    }
+
+    private void renderClaimedImage(File file, int imageIndex, BigDecimal xCenter, BigDecimal yCenter, BigDecimal zoomStart, BigDecimal zoomPower, int maxIterationsConst, int maxIterationsLinear, Palette palette, double colorOffset) {
+        int maxIterations = RenderSpec.maxIterations(zoomPower, maxIterationsConst, maxIterationsLinear);
+        RenderSpec spec = RenderSpec.ofZoom(xCenter, yCenter, zoomStart, zoomPower, maxIterations, 800, 800).withImage(file, palette, colorOffset);
 
+        RenderResult result;
         try {
-            System.out.println("Calculated " + file.getName() + " with zoom " + zoomPower.toPlainString() + " in " + stopWatch);
-            ImageIO.write(result.getImage(), "png", file);
-        } catch (IOException e) {
-            e.printStackTrace();
+            CompletableFuture<RenderResult> render = renderService.render(spec);
+            frameFarm.watch(file, render);
+            result = render.join();
+        } catch (CompletionException e) {
+            e.getCause().printStackTrace();
+            return;
+        } catch (CancellationException e) {
+            System.out.println("Stopped " + file.getName() + " after losing its lease");
+            return;
+        }
+
+        System.out.println("Calculated " + file.getName() + " with zoom " + zoomPower.toPlainString() + " in " + StopWatch.formatMillis((long) result.computeMillis));
+
+        if (frameLog != null) {
+            FrameLog.Frame frame = new FrameLog.Frame();
+            frame.index = imageIndex;
+            frame.zoom = zoomPower.doubleValue();
+            frame.precision = spec.precision;
+            frame.maxIterations = maxIterations;
+            frame.engine = AutoPrecisionMandelbrotRenderer.engine(spec.xRadius, spec.yRadius);
+            frame.computeMillis = result.computeMillis;
+            frame.colorizeMillis = result.colorizeMillis;
+            frame.encodeMillis = result.encodeMillis;
+            frame.bytes = file.length();
+            frame.setStatistics(result.statistics);
+            frameLog.log(frame);
         }
     }
 
@@ -310,6 +372,8 @@ public class MandelbrotMovie {
     }
 
     public static void main(String[] args) {
+        RenderMetrics.register();
+
         List<MovieStep> movieSteps = new ArrayList<>();
         List<PointOfInterest> pointsOfInterest = travelingSalesman(StandardPointsOfInterest.POINTS_OF_INTEREST);
         for (PointOfInterest poi : pointsOfInterest) {
@@ -319,7 +383,16 @@ public class MandelbrotMovie {
         Path directory = Paths.get("images", "zoom");
 
         MandelbrotMovie mandelbrotMovie = new MandelbrotMovie();
-        mandelbrotMovie.createMovie(directory, movieSteps);
+        if (args.length >= 2 && args[0].equals("--frameLog")) {
+            try (FrameLog frameLog = new FrameLog(new File(args[1]))) {
+                mandelbrotMovie.setFrameLog(frameLog);
+                mandelbrotMovie.createMovie(directory, movieSteps);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        } else {
+            mandelbrotMovie.createMovie(directory, movieSteps);
+        }
     }
 
     private static List<PointOfInterest> travelingSalesman(PointOfInterest[] pointsOfInterest) {
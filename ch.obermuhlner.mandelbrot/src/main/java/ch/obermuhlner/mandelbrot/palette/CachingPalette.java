@@ -1,14 +1,14 @@
 package ch.obermuhlner.mandelbrot.palette;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 public class CachingPalette implements Palette {
 
 	private final Palette palette;
 	
-	private final Map<Integer, Color> cache = new HashMap<>();
+	private final Map<Integer, Color> cache = new ConcurrentHashMap<>();
 
 	public CachingPalette(Palette palette) {
 		this.palette = palette;
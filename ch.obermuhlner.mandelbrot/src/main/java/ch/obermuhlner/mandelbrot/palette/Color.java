@@ -914,6 +914,17 @@ public class Color {
 		return b;
 	}
 
+	/**
+	 * Returns the color as packed 8 bit RGB value (0xRRGGBB).
+	 */
+	public int toRGB() {
+		return (toByte(r) << 16) | (toByte(g) << 8) | toByte(b);
+	}
+
+	private static int toByte(double value) {
+		return Math.max(0, Math.min(255, (int) (value * 255 + 0.5)));
+	}
+
 	public Color interpolate(Color end, double weight) {
 		if (weight <= 0.0) {
 			return this;
@@ -5,6 +5,7 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.Reader;
 import java.math.BigDecimal;
 import java.util.Properties;
 
@@ -35,21 +36,25 @@ public class PointOfInterest {
 	
 	public void save(File file) throws IOException {
 		try(PrintWriter writer = new PrintWriter(new FileWriter(file))) {
-			writer.println("# Mandelbrot");
-			writer.println("# https://github.com/eobermuhlner/mandelbrot");
-			writer.println();
-			writer.println("version=1.1.0");
-			writer.println("name=" + name);
-			writer.println("x=" + x.toPlainString());
-			writer.println("y=" + y.toPlainString());
-			writer.println("zoom=" + zoom);
-			writer.println("paletteType=" + paletteType);
-			writer.println("paletteSeed=" + paletteSeed);
-			writer.println("paletteStep=" + paletteStep);
-			writer.println("maxIterationsConst=" + maxIterationsConst);
-			if (maxIterationsLinear != 0) {
-				writer.println("maxIterationsLinear=" + maxIterationsLinear);
-			}
+			save(writer);
+		}
+	}
+
+	public void save(PrintWriter writer) {
+		writer.println("# Mandelbrot");
+		writer.println("# https://github.com/eobermuhlner/mandelbrot");
+		writer.println();
+		writer.println("version=1.1.0");
+		writer.println("name=" + name);
+		writer.println("x=" + x.toPlainString());
+		writer.println("y=" + y.toPlainString());
+		writer.println("zoom=" + zoom);
+		writer.println("paletteType=" + paletteType);
+		writer.println("paletteSeed=" + paletteSeed);
+		writer.println("paletteStep=" + paletteStep);
+		writer.println("maxIterationsConst=" + maxIterationsConst);
+		if (maxIterationsLinear != 0) {
+			writer.println("maxIterationsLinear=" + maxIterationsLinear);
 		}
 	}
 	
@@ -60,38 +65,42 @@ public class PointOfInterest {
 	
 	public static PointOfInterest load(File file) throws IOException {
 		try(FileReader reader = new FileReader(file)) {
-			Properties properties = new Properties();
-			properties.load(reader);
-			
-			String version = properties.getProperty("version");
-			if (!version.startsWith("1.")) {
-				throw new IOException("Incompatible mandelbrot version: " + version);
-			}
-			
-			String maxIterationsConstString = properties.getProperty("maxIterationsConst");
-			String maxIterationsLinearString = properties.getProperty("maxIterationsLinear");
-			
-			if (maxIterationsConstString == null) {
-				maxIterationsConstString = "1000";
-				if (maxIterationsLinearString == null) {
-					maxIterationsLinearString = "1000";
-				}
-			}
+			return load(reader);
+		}
+	}
+
+	public static PointOfInterest load(Reader reader) throws IOException {
+		Properties properties = new Properties();
+		properties.load(reader);
+		
+		String version = properties.getProperty("version");
+		if (!version.startsWith("1.")) {
+			throw new IOException("Incompatible mandelbrot version: " + version);
+		}
+		
+		String maxIterationsConstString = properties.getProperty("maxIterationsConst");
+		String maxIterationsLinearString = properties.getProperty("maxIterationsLinear");
+		
+		if (maxIterationsConstString == null) {
+			maxIterationsConstString = "1000";
 			if (maxIterationsLinearString == null) {
-				maxIterationsLinearString = "0";
+				maxIterationsLinearString = "1000";
 			}
-			
-			return new PointOfInterest(
-					properties.getProperty("name"),
-					new BigDecimal(properties.getProperty("x")),
-					new BigDecimal(properties.getProperty("y")),
-					Double.parseDouble(properties.getProperty("zoom")),
-					PaletteType.valueOf(properties.getProperty("paletteType")),
-					Integer.parseInt(properties.getProperty("paletteSeed")),
-					Integer.parseInt(properties.getProperty("paletteStep")),
-					Integer.parseInt(maxIterationsConstString),
-					Integer.parseInt(maxIterationsLinearString));
 		}
+		if (maxIterationsLinearString == null) {
+			maxIterationsLinearString = "0";
+		}
+		
+		return new PointOfInterest(
+				properties.getProperty("name"),
+				new BigDecimal(properties.getProperty("x")),
+				new BigDecimal(properties.getProperty("y")),
+				Double.parseDouble(properties.getProperty("zoom")),
+				PaletteType.valueOf(properties.getProperty("paletteType")),
+				Integer.parseInt(properties.getProperty("paletteSeed")),
+				Integer.parseInt(properties.getProperty("paletteStep")),
+				Integer.parseInt(maxIterationsConstString),
+				Integer.parseInt(maxIterationsLinearString));
 	}
 
 	public BigDecimal distanceSquare(PointOfInterest other) {
@@ -3,22 +3,56 @@ package ch.obermuhlner.mandelbrot.render;
 import java.math.BigDecimal;
 
 import ch.obermuhlner.mandelbrot.javafx.Progress;
+import ch.obermuhlner.mandelbrot.jfr.MandelbrotEvents;
 
 public class AutoPrecisionMandelbrotRenderer implements MandelbrotRenderer {
 
 	private static final BigDecimal DOUBLE_THRESHOLD = new BigDecimal("0.00000000002");
 
-	private final MandelbrotRenderer lowPrecisionMandelbrotRenderer = new DoubleMandelbrotRenderer();
+	private final MandelbrotRenderer lowPrecisionMandelbrotRenderer;
 	
-	private final MandelbrotRenderer highPrecisionMandelbrotRenderer = new BigDecimalMandelbrotRenderer();
+	private final MandelbrotRenderer highPrecisionMandelbrotRenderer;
+
+	public AutoPrecisionMandelbrotRenderer() {
+		this(new TileScheduler());
+	}
+
+	public AutoPrecisionMandelbrotRenderer(RenderPool renderPool) {
+		this(new TileScheduler(renderPool));
+	}
+
+	public AutoPrecisionMandelbrotRenderer(TileScheduler tileScheduler) {
+		lowPrecisionMandelbrotRenderer = new DoubleMandelbrotRenderer(tileScheduler);
+		highPrecisionMandelbrotRenderer = new BigDecimalMandelbrotRenderer(tileScheduler);
+	}
 	
 	@Override
-	public void drawMandelbrot(MandelbrotResult result, BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, Progress progress) {
-		if (xRadius.compareTo(DOUBLE_THRESHOLD) > 0 && yRadius.compareTo(DOUBLE_THRESHOLD) > 0) {
-			lowPrecisionMandelbrotRenderer.drawMandelbrot(result, xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight, progress);
+	public RenderStatistics drawMandelbrot(MandelbrotResult result, BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, Progress progress) {
+		if (isDoublePrecision(xRadius, yRadius)) {
+			return lowPrecisionMandelbrotRenderer.drawMandelbrot(result, xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight, progress);
+		} else {
+			return highPrecisionMandelbrotRenderer.drawMandelbrot(result, xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight, progress);
+		}
+	}
+
+	@Override
+	public RenderStatistics drawMandelbrotRegion(MandelbrotResult result, BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, int regionX, int regionY, int regionWidth, int regionHeight, Progress progress) {
+		// the engine is selected by the complete image, so that all regions use the same engine
+		if (isDoublePrecision(xRadius, yRadius)) {
+			return lowPrecisionMandelbrotRenderer.drawMandelbrotRegion(result, xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight, regionX, regionY, regionWidth, regionHeight, progress);
 		} else {
-			highPrecisionMandelbrotRenderer.drawMandelbrot(result, xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight, progress);
+			return highPrecisionMandelbrotRenderer.drawMandelbrotRegion(result, xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight, regionX, regionY, regionWidth, regionHeight, progress);
 		}
 	}
 
+	public static boolean isDoublePrecision(BigDecimal xRadius, BigDecimal yRadius) {
+		return xRadius.compareTo(DOUBLE_THRESHOLD) > 0 && yRadius.compareTo(DOUBLE_THRESHOLD) > 0;
+	}
+
+	/**
+	 * Returns the name of the engine that calculates the specified view.
+	 */
+	public static String engine(BigDecimal xRadius, BigDecimal yRadius) {
+		return isDoublePrecision(xRadius, yRadius) ? MandelbrotEvents.ENGINE_DOUBLE : MandelbrotEvents.ENGINE_BIGDECIMAL;
+	}
 }
@@ -3,9 +3,10 @@ package ch.obermuhlner.mandelbrot.render;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
-import java.util.stream.IntStream;
 
 import ch.obermuhlner.mandelbrot.javafx.Progress;
+import ch.obermuhlner.mandelbrot.jfr.MandelbrotEvents;
+import ch.obermuhlner.mandelbrot.jfr.RenderEvent;
 import ch.obermuhlner.mandelbrot.util.ThreadInterruptedException;
 
 public class BigDecimalMandelbrotRenderer implements MandelbrotRenderer {
@@ -13,43 +14,101 @@ public class BigDecimalMandelbrotRenderer implements MandelbrotRenderer {
 	private static final BigDecimal TWO = new BigDecimal(2);
 	private static final BigDecimal TWO_SQUARE = new BigDecimal(2*2);
 
+	private final TileScheduler tileScheduler;
+
+	public BigDecimalMandelbrotRenderer() {
+		this(new TileScheduler());
+	}
+
+	public BigDecimalMandelbrotRenderer(TileScheduler tileScheduler) {
+		this.tileScheduler = tileScheduler;
+	}
+
+	@Override
+	public RenderStatistics drawMandelbrot(MandelbrotResult result, BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, Progress progress) {
+		return drawMandelbrotRegion(result, xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight, 0, 0, imageWidth, imageHeight, progress);
+	}
+
 	@Override
-	public void drawMandelbrot(MandelbrotResult result, BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, Progress progress) {
+	public RenderStatistics drawMandelbrotRegion(MandelbrotResult result, BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, int regionX, int regionY, int regionWidth, int regionHeight, Progress progress) {
+		RenderEvent event = new RenderEvent();
+		event.begin();
+
 		MathContext mc = new MathContext(precision, RoundingMode.HALF_EVEN);
 		
 		BigDecimal stepX = xRadius.multiply(TWO, mc).divide(BigDecimal.valueOf(imageWidth), mc);
 		BigDecimal stepY = yRadius.multiply(TWO, mc).divide(BigDecimal.valueOf(imageHeight), mc);
 		BigDecimal x0Start = xCenter.negate().subtract(xRadius, mc); 
+		BigDecimal y0Start = yCenter.negate().subtract(yRadius, mc); 
 		
-		IntStream.range(0, imageWidth).parallel().forEach(pixelX -> {
-			BigDecimal x0 = x0Start.add(stepX.multiply(new BigDecimal(pixelX), mc), mc);
-			BigDecimal y0 = yCenter.negate().subtract(yRadius, mc); 
-			for (int pixelY = 0; pixelY < imageHeight; pixelY++) {
-				BigDecimal x = BigDecimal.ZERO;
-				BigDecimal y = BigDecimal.ZERO;
-				int iterations = 0;
-				BigDecimal xx = x.multiply(x, mc);
-				BigDecimal yy = y.multiply(y, mc);
-				while (xx.add(yy, mc).compareTo(TWO_SQUARE) < 0 && iterations < maxIterations) {
-					if (Thread.interrupted()) {
-						throw new ThreadInterruptedException();
+		// the coordinates are calculated from the pixel in the complete image, so that every region calculates exactly the same pixels
+		BigDecimal[] x0s = new BigDecimal[regionWidth];
+		for (int pixelX = 0; pixelX < regionWidth; pixelX++) {
+			x0s[pixelX] = x0Start.add(stepX.multiply(new BigDecimal(regionX + pixelX), mc), mc);
+		}
+
+		// every row is calculated in segments that are handed over to the result as blocks
+		RenderStatistics.Collector statistics = new RenderStatistics.Collector();
+		tileScheduler.run(
+				regionHeight,
+				regionWidth,
+				(pixelY, pixelX) -> calculateIterations(
+						x0s[pixelX],
+						y0Start.add(stepY.multiply(new BigDecimal(regionY + pixelY))),
+						maxIterations,
+						mc),
+				(pixelY, startPixelX, endPixelX, tile) -> {
+					int[] rowIterations = new int[endPixelX - startPixelX];
+					BigDecimal y0 = y0Start.add(stepY.multiply(new BigDecimal(regionY + pixelY)));
+					for (int pixelX = startPixelX; pixelX < endPixelX; pixelX++) {
+						BigDecimal x0 = x0s[pixelX];
+						int iterations = calculateIterations(x0, y0, maxIterations, mc);
+
+						if (iterations == maxIterations) {
+							tile.addMaxIterationPixel(maxIterations, x0.doubleValue(), y0.doubleValue());
+							iterations = MandelbrotResult.NEVER_ESCAPED;
+						} else {
+							tile.addPixel(iterations);
+						}
+						rowIterations[pixelX - startPixelX] = iterations;
 					}
-					y = TWO.multiply(x, mc).multiply(y, mc).add(y0, mc);
-					x = xx.subtract(yy, mc).add(x0, mc);
-					iterations++;
-					
-					xx = x.multiply(x, mc);
-					yy = y.multiply(y, mc);
-				}
-
-				iterations = iterations == maxIterations ? Integer.MAX_VALUE : iterations;
-				result.setIterations(pixelX, pixelY, iterations);
-
-				y0 = y0.add(stepY);
-			}
+					result.setIterations(startPixelX, pixelY, rowIterations.length, 1, rowIterations, 0, rowIterations.length);
+				},
+				statistics,
+				progress);
+		RenderStatistics renderStatistics = statistics.finish();
 
-			progress.incrementProgress(imageWidth);
-		});
+		event.end();
+		if (event.shouldCommit()) {
+			event.zoom = MandelbrotEvents.zoom(xRadius.min(yRadius));
+			event.precision = precision;
+			event.engine = MandelbrotEvents.ENGINE_BIGDECIMAL;
+			event.pixelCount = (long) regionWidth * regionHeight;
+			event.maxIterations = maxIterations;
+			event.iterations = renderStatistics.getIterationCount();
+			event.commit();
+		}
+		return renderStatistics;
+	}
+
+	private static int calculateIterations(BigDecimal x0, BigDecimal y0, int maxIterations, MathContext mc) {
+		BigDecimal x = BigDecimal.ZERO;
+		BigDecimal y = BigDecimal.ZERO;
+		int iterations = 0;
+		BigDecimal xx = x.multiply(x, mc);
+		BigDecimal yy = y.multiply(y, mc);
+		while (xx.add(yy, mc).compareTo(TWO_SQUARE) < 0 && iterations < maxIterations) {
+			if (Thread.interrupted()) {
+				throw new ThreadInterruptedException();
+			}
+			y = TWO.multiply(x, mc).multiply(y, mc).add(y0, mc);
+			x = xx.subtract(yy, mc).add(x0, mc);
+			iterations++;
+			
+			xx = x.multiply(x, mc);
+			yy = y.multiply(y, mc);
+		}
+		return iterations;
 	}
 
 }
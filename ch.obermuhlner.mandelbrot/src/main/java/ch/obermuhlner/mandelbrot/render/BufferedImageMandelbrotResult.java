@@ -6,22 +6,35 @@ import java.awt.image.BufferedImage;
 import ch.obermuhlner.mandelbrot.palette.Color;
 import ch.obermuhlner.mandelbrot.palette.Palette;
 
-public class BufferedImageMandelbrotResult implements MandelbrotResult {
+/**
+ * Stores the iterations in an {@link IterationBuffer} and colors them into a {@link BufferedImage}.
+ */
+public class BufferedImageMandelbrotResult implements MandelbrotResult, IterationData {
 
 	private final int width;
 	private final int height;
 	private final Palette palette;
 	private final double colorOffset;
 
-	private final int data[];
+	private final IterationBuffer iterations;
 
 	public BufferedImageMandelbrotResult(int width, int height, Palette palette, double colorOffset) {
+		this(width, height, palette, colorOffset, new IntIterationBuffer(width, height));
+	}
+
+	/**
+	 * Creates a result that stores the iterations with the fewest bytes per pixel possible for the maximum number of iterations of the render.
+	 */
+	public BufferedImageMandelbrotResult(int width, int height, int maxIterations, Palette palette, double colorOffset) {
+		this(width, height, palette, colorOffset, IterationBuffer.create(width, height, maxIterations));
+	}
+
+	private BufferedImageMandelbrotResult(int width, int height, Palette palette, double colorOffset, IterationBuffer iterations) {
 		this.width = width;
 		this.height = height;
 		this.palette = palette;
 		this.colorOffset = colorOffset;
-
-		data = new int[width * height];
+		this.iterations = iterations;
 	}
 	
 	public BufferedImage getImage() {
@@ -30,7 +43,7 @@ public class BufferedImageMandelbrotResult implements MandelbrotResult {
 		
 		for (int y = 0; y < height; y++) {
 			for (int x = 0; x < width; x++) {
-				Color color = palette.getColor((int) (data[x + y * width] + colorOffset));
+				Color color = palette.getColor((int) (iterations.getIterations(x, y) + colorOffset));
 				
 				graphics.setColor(toAwtColor(color));
 				graphics.drawRect(x, y, 1, 1);
@@ -41,8 +54,33 @@ public class BufferedImageMandelbrotResult implements MandelbrotResult {
 	}
 	
 	@Override
-	public void setIterations(int pixelX, int pixelY, int iterations) {
-		data[pixelX + pixelY * width] = iterations;
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public void setIterations(int pixelX, int pixelY, int pixelIterations) {
+		iterations.setIterations(pixelX, pixelY, pixelIterations);
+	}
+
+	@Override
+	public void setIterations(int pixelX, int pixelY, int blockWidth, int blockHeight, int[] blockIterations, int offset, int scanlineStride) {
+		iterations.setIterations(pixelX, pixelY, blockWidth, blockHeight, blockIterations, offset, scanlineStride);
+	}
+
+	@Override
+	public int getIterations(int pixelX, int pixelY) {
+		return iterations.getIterations(pixelX, pixelY);
+	}
+
+	@Override
+	public void getRowIterations(int pixelY, int[] rowIterations) {
+		iterations.getRowIterations(pixelY, rowIterations);
 	}
 
 	private java.awt.Color toAwtColor(Color color) {
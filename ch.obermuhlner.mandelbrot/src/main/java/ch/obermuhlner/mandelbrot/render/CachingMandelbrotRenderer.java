@@ -0,0 +1,73 @@
+package ch.obermuhlner.mandelbrot.render;
+
+import java.math.BigDecimal;
+
+import ch.obermuhlner.mandelbrot.javafx.Progress;
+
+/**
+ * Looks up the rendered iterations in a {@link RenderCache} before delegating to another {@link MandelbrotRenderer}
+ * and stores the calculated iterations in the cache afterwards.
+ *
+ * <p>The cache key contains the engine that calculates the pixels ({@link AutoPrecisionMandelbrotRenderer#engine(BigDecimal, BigDecimal)}),
+ * so the wrapped renderer must calculate exactly the same iterations as the {@link AutoPrecisionMandelbrotRenderer}
+ * (for example the renderer itself, a checkpoint or a coordinator of remote workers).</p>
+ */
+public class CachingMandelbrotRenderer implements MandelbrotRenderer {
+
+	private static final long MAX_CACHED_PIXELS = 4096L * 4096L;
+
+	private final MandelbrotRenderer mandelbrotRenderer;
+	private final RenderCache renderCache;
+
+	public CachingMandelbrotRenderer(MandelbrotRenderer mandelbrotRenderer, RenderCache renderCache) {
+		this.mandelbrotRenderer = mandelbrotRenderer;
+		this.renderCache = renderCache;
+	}
+
+	@Override
+	public RenderStatistics drawMandelbrot(MandelbrotResult result, BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, Progress progress) {
+		return drawMandelbrotRegion(result, xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight, 0, 0, imageWidth, imageHeight, progress);
+	}
+
+	@Override
+	public RenderStatistics drawMandelbrotRegion(MandelbrotResult result, BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, int regionX, int regionY, int regionWidth, int regionHeight, Progress progress) {
+		if (!renderCache.isEnabled() || (long) regionWidth * regionHeight > MAX_CACHED_PIXELS) {
+			return mandelbrotRenderer.drawMandelbrotRegion(result, xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight, regionX, regionY, regionWidth, regionHeight, progress);
+		}
+
+		String key = RenderCache.key(xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight, regionX, regionY, regionWidth, regionHeight, AutoPrecisionMandelbrotRenderer.engine(xRadius, yRadius));
+		RenderStatistics.Collector cacheStatistics = new RenderStatistics.Collector();
+		if (renderCache.load(key, result, regionWidth, regionHeight)) {
+			progress.incrementProgress((double) regionWidth * regionHeight);
+			cacheStatistics.addCachedPixels((long) regionWidth * regionHeight);
+			return cacheStatistics.finish();
+		}
+
+		RenderStatistics statistics;
+		IterationData iterationData;
+		if (result instanceof IterationData && ((IterationData) result).getWidth() == regionWidth && ((IterationData) result).getHeight() == regionHeight) {
+			statistics = mandelbrotRenderer.drawMandelbrotRegion(result, xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight, regionX, regionY, regionWidth, regionHeight, progress);
+			iterationData = (IterationData) result;
+		} else {
+			IterationBuffer capture = IterationBuffer.create(regionWidth, regionHeight, maxIterations);
+			MandelbrotResult captureAndResult = new MandelbrotResult() {
+				@Override
+				public void setIterations(int pixelX, int pixelY, int iterations) {
+					capture.setIterations(pixelX, pixelY, iterations);
+					result.setIterations(pixelX, pixelY, iterations);
+				}
+
+				@Override
+				public void setIterations(int pixelX, int pixelY, int width, int height, int[] iterations, int offset, int scanlineStride) {
+					capture.setIterations(pixelX, pixelY, width, height, iterations, offset, scanlineStride);
+					result.setIterations(pixelX, pixelY, width, height, iterations, offset, scanlineStride);
+				}
+			};
+			statistics = mandelbrotRenderer.drawMandelbrotRegion(captureAndResult, xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight, regionX, regionY, regionWidth, regionHeight, progress);
+			iterationData = capture;
+		}
+
+		renderCache.store(key, maxIterations, iterationData);
+		return statistics;
+	}
+}
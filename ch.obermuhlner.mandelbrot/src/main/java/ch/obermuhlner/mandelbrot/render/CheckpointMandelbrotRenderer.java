@@ -0,0 +1,305 @@
+package ch.obermuhlner.mandelbrot.render;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import ch.obermuhlner.mandelbrot.javafx.DummyProgress;
+import ch.obermuhlner.mandelbrot.javafx.Progress;
+import ch.obermuhlner.mandelbrot.jfr.MandelbrotEvents;
+import ch.obermuhlner.mandelbrot.jfr.TileEvent;
+import ch.obermuhlner.mandelbrot.util.AtomicFiles;
+import ch.obermuhlner.mandelbrot.util.ThreadInterruptedException;
+
+/**
+ * Renders an image tile by tile and persists every completed tile into a checkpoint directory next to the output file.
+ * 
+ * <p>If the rendering is interrupted (or the JVM dies) the next rendering of the same view into the same output file
+ * continues with the tiles that are still missing.
+ * The checkpoint is only reused if all parameters of the view are identical.</p>
+ * 
+ * <p>Only images with at least <code>mandelbrot.checkpoint.minPixels</code> pixels (system property, default 2048 x 2048) are checkpointed,
+ * smaller images are rendered at once, because writing their tiles costs more than rendering them again.</p>
+ * 
+ * <p>The missing tiles are rendered one after the other,
+ * except with a {@link RemoteMandelbrotRenderer} which gets all missing tiles at once.</p>
+ * 
+ * <p>Call {@link #deleteCheckpoint()} after the output file was written successfully.</p>
+ */
+public class CheckpointMandelbrotRenderer implements MandelbrotRenderer {
+
+	public static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+	private static final String PROPERTIES_FILENAME = "checkpoint.properties";
+	private static final int DEFAULT_TILE_SIZE = 256;
+	private static final int CHECKPOINT_VERSION = 2;
+	private static final long DEFAULT_MIN_PIXELS = 2048L * 2048L;
+
+	private final MandelbrotRenderer mandelbrotRenderer;
+	private final File checkpointDirectory;
+	private final int tileSize;
+	private final long minPixels = Long.getLong("mandelbrot.checkpoint.minPixels", DEFAULT_MIN_PIXELS);
+
+	public CheckpointMandelbrotRenderer(MandelbrotRenderer mandelbrotRenderer, File outputFile) {
+		this(mandelbrotRenderer, outputFile, DEFAULT_TILE_SIZE);
+	}
+
+	public CheckpointMandelbrotRenderer(MandelbrotRenderer mandelbrotRenderer, File outputFile, int tileSize) {
+		this.mandelbrotRenderer = mandelbrotRenderer;
+		this.checkpointDirectory = checkpointDirectory(outputFile);
+		this.tileSize = tileSize;
+	}
+
+	public static File checkpointDirectory(File outputFile) {
+		return new File(outputFile.getPath() + CHECKPOINT_SUFFIX);
+	}
+
+	/**
+	 * Reads the view parameters of an existing checkpoint.
+	 * 
+	 * @param outputFile the output file of the interrupted rendering
+	 * @return the properties (x, y, xRadius, yRadius, precision, maxIterations, width, height, tileSize, version) or <code>null</code> if no checkpoint exists
+	 */
+	public static Properties readCheckpointProperties(File outputFile) {
+		File propertiesFile = new File(checkpointDirectory(outputFile), PROPERTIES_FILENAME);
+		if (!propertiesFile.exists()) {
+			return null;
+		}
+
+		try (Reader reader = new FileReader(propertiesFile)) {
+			Properties properties = new Properties();
+			properties.load(reader);
+			return properties;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public RenderStatistics drawMandelbrot(MandelbrotResult result, BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, Progress progress) {
+		if ((long) imageWidth * imageHeight < minPixels) {
+			return mandelbrotRenderer.drawMandelbrot(result, xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight, progress);
+		}
+
+		RenderStatistics.Collector statistics = new RenderStatistics.Collector();
+		List<RemoteTile> remoteTiles = new ArrayList<>();
+		BlockingQueue<RemoteTile> completedRemoteTiles = new LinkedBlockingQueue<>();
+		try {
+			prepareCheckpoint(xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight);
+
+			for (int tileY = 0; tileY < imageHeight; tileY += tileSize) {
+				for (int tileX = 0; tileX < imageWidth; tileX += tileSize) {
+					int tileWidth = Math.min(tileSize, imageWidth - tileX);
+					int tileHeight = Math.min(tileSize, imageHeight - tileY);
+					File tileFile = new File(checkpointDirectory, "tile_" + tileY + "_" + tileX + ".tile");
+
+					TileEvent event = new TileEvent();
+					event.begin();
+
+					IterationBuffer tileIterations = loadTile(tileFile, tileWidth, tileHeight, maxIterations);
+					if (tileIterations != null) {
+						statistics.addCachedPixels(tileWidth * tileHeight);
+						event.fromCheckpoint = true;
+						copyTile(result, tileX, tileY, tileIterations, event, xRadius, yRadius, precision, progress);
+					} else if (mandelbrotRenderer instanceof RemoteMandelbrotRenderer) {
+						IterationBuffer tileResult = IterationBuffer.create(tileWidth, tileHeight, maxIterations);
+						CompletableFuture<RenderStatistics> future = ((RemoteMandelbrotRenderer) mandelbrotRenderer).submitMandelbrotRegion(
+								tileResult,
+								xCenter, yCenter, xRadius, yRadius,
+								precision, maxIterations, imageWidth, imageHeight,
+								tileX, tileY, tileWidth, tileHeight, new DummyProgress());
+						RemoteTile remoteTile = new RemoteTile(tileX, tileY, tileFile, tileResult, event, future);
+						remoteTiles.add(remoteTile);
+						future.whenComplete((tileStatistics, exception) -> completedRemoteTiles.add(remoteTile));
+					} else {
+						IterationBuffer tileResult = IterationBuffer.create(tileWidth, tileHeight, maxIterations);
+						RenderStatistics tileStatistics = mandelbrotRenderer.drawMandelbrotRegion(
+								tileResult,
+								xCenter, yCenter, xRadius, yRadius,
+								precision, maxIterations, imageWidth, imageHeight,
+								tileX, tileY, tileWidth, tileHeight, new DummyProgress());
+						statistics.addTile(tileStatistics);
+						saveTile(tileFile, tileResult);
+						copyTile(result, tileX, tileY, tileResult, event, xRadius, yRadius, precision, progress);
+					}
+				}
+			}
+
+			// the remote tiles are saved in the order they are completed
+			for (int i = 0; i < remoteTiles.size(); i++) {
+				RemoteTile remoteTile = completedRemoteTiles.take();
+				statistics.addTile(remoteTile.future.join());
+				saveTile(remoteTile.tileFile, remoteTile.iterations);
+				copyTile(result, remoteTile.tileX, remoteTile.tileY, remoteTile.iterations, remoteTile.event, xRadius, yRadius, precision, progress);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (InterruptedException e) {
+			throw new ThreadInterruptedException();
+		} finally {
+			// does nothing if all remote tiles are completed
+			for (RemoteTile remoteTile : remoteTiles) {
+				remoteTile.future.cancel(false);
+			}
+		}
+		return statistics.finish();
+	}
+
+	private static void copyTile(MandelbrotResult result, int tileX, int tileY, IterationBuffer tileIterations, TileEvent event, BigDecimal xRadius, BigDecimal yRadius, int precision, Progress progress) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.zoom = MandelbrotEvents.zoom(xRadius.min(yRadius));
+			event.precision = precision;
+			event.engine = AutoPrecisionMandelbrotRenderer.engine(xRadius, yRadius);
+			event.pixelCount = tileIterations.getWidth() * tileIterations.getHeight();
+			event.tileX = tileX;
+			event.tileY = tileY;
+			event.commit();
+		}
+
+		tileIterations.copyTo(result, tileX, tileY);
+		progress.incrementProgress(tileIterations.getWidth() * tileIterations.getHeight());
+	}
+
+	/**
+	 * Renders a complete image with a checkpoint, other regions are rendered by the wrapped renderer without checkpoint.
+	 */
+	@Override
+	public RenderStatistics drawMandelbrotRegion(MandelbrotResult result, BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, int regionX, int regionY, int regionWidth, int regionHeight, Progress progress) {
+		if (regionX == 0 && regionY == 0 && regionWidth == imageWidth && regionHeight == imageHeight) {
+			return drawMandelbrot(result, xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight, progress);
+		}
+		return mandelbrotRenderer.drawMandelbrotRegion(result, xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight, regionX, regionY, regionWidth, regionHeight, progress);
+	}
+
+	public void deleteCheckpoint() {
+		File[] files = checkpointDirectory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		checkpointDirectory.delete();
+	}
+
+	private void prepareCheckpoint(BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight) throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty("x", xCenter.toPlainString());
+		properties.setProperty("y", yCenter.toPlainString());
+		properties.setProperty("xRadius", xRadius.toPlainString());
+		properties.setProperty("yRadius", yRadius.toPlainString());
+		properties.setProperty("precision", String.valueOf(precision));
+		properties.setProperty("maxIterations", String.valueOf(maxIterations));
+		properties.setProperty("width", String.valueOf(imageWidth));
+		properties.setProperty("height", String.valueOf(imageHeight));
+		properties.setProperty("tileSize", String.valueOf(tileSize));
+		// tiles of older versions were rendered as views of their own, with slightly different coordinates
+		properties.setProperty("version", String.valueOf(CHECKPOINT_VERSION));
+
+		File propertiesFile = new File(checkpointDirectory, PROPERTIES_FILENAME);
+		if (propertiesFile.exists()) {
+			Properties existingProperties = new Properties();
+			try (Reader reader = new FileReader(propertiesFile)) {
+				existingProperties.load(reader);
+			}
+			if (existingProperties.equals(properties)) {
+				return;
+			}
+			deleteCheckpoint();
+		}
+
+		checkpointDirectory.mkdirs();
+		AtomicFiles.write(propertiesFile, file -> {
+			try (Writer writer = new FileWriter(file)) {
+				properties.store(writer, "Mandelbrot checkpoint");
+			}
+		});
+	}
+
+	private static IterationBuffer loadTile(File tileFile, int tileWidth, int tileHeight, int maxIterations) {
+		if (!tileFile.exists()) {
+			return null;
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(tileFile)))) {
+			if (in.readInt() != tileWidth || in.readInt() != tileHeight) {
+				return null;
+			}
+			byte[] encoded = new byte[in.readInt()];
+			in.readFully(encoded);
+
+			IterationBuffer tileIterations = IterationBuffer.create(tileWidth, tileHeight, maxIterations);
+			int[] row = new int[tileWidth];
+			ByteBuffer buffer = ByteBuffer.wrap(encoded);
+			for (int pixelY = 0; pixelY < tileHeight; pixelY++) {
+				IterationFileReader.decodeRow(buffer, row, tileWidth);
+				tileIterations.setIterations(0, pixelY, tileWidth, 1, row, 0, tileWidth);
+			}
+			return tileIterations;
+		} catch (IOException | RuntimeException e) {
+			// corrupt tile - render it again
+			return null;
+		}
+	}
+
+	private static void saveTile(File tileFile, IterationData tileIterations) throws IOException {
+		int tileWidth = tileIterations.getWidth();
+		int tileHeight = tileIterations.getHeight();
+		byte[] encoded = new byte[tileWidth * tileHeight * 5];
+		int length = 0;
+		int[] row = new int[tileWidth];
+		byte[] rowBuffer = new byte[tileWidth * 5];
+		for (int pixelY = 0; pixelY < tileHeight; pixelY++) {
+			tileIterations.getRowIterations(pixelY, row);
+			int rowLength = IterationFileWriter.encodeRow(row, rowBuffer);
+			System.arraycopy(rowBuffer, 0, encoded, length, rowLength);
+			length += rowLength;
+		}
+
+		int encodedLength = length;
+		AtomicFiles.write(tileFile, file -> {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+				out.writeInt(tileWidth);
+				out.writeInt(tileHeight);
+				out.writeInt(encodedLength);
+				out.write(encoded, 0, encodedLength);
+			}
+		});
+	}
+
+	private static class RemoteTile {
+		final int tileX;
+		final int tileY;
+		final File tileFile;
+		final IterationBuffer iterations;
+		final TileEvent event;
+		final CompletableFuture<RenderStatistics> future;
+
+		RemoteTile(int tileX, int tileY, File tileFile, IterationBuffer iterations, TileEvent event, CompletableFuture<RenderStatistics> future) {
+			this.tileX = tileX;
+			this.tileY = tileY;
+			this.tileFile = tileFile;
+			this.iterations = iterations;
+			this.event = event;
+			this.future = future;
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package ch.obermuhlner.mandelbrot.render;
+
+import ch.obermuhlner.mandelbrot.util.StopWatch;
+
+/**
+ * The estimated cost to render a view, see {@link CostEstimator}.
+ */
+public class CostEstimate {
+
+	public static final CostEstimate ZERO = new CostEstimate(0, 0, 0);
+
+	public final long pixels;
+	public final long iterations;
+	public final long nanos;
+
+	public CostEstimate(long pixels, long iterations, long nanos) {
+		this.pixels = pixels;
+		this.iterations = iterations;
+		this.nanos = nanos;
+	}
+
+	public long getMillis() {
+		return nanos / 1_000_000;
+	}
+
+	public CostEstimate add(CostEstimate other) {
+		return new CostEstimate(pixels + other.pixels, iterations + other.iterations, nanos + other.nanos);
+	}
+
+	@Override
+	public String toString() {
+		return "~" + iterations + " iterations, ~" + StopWatch.formatMillis(getMillis());
+	}
+}
@@ -0,0 +1,84 @@
+package ch.obermuhlner.mandelbrot.render;
+
+import java.math.BigDecimal;
+
+import ch.obermuhlner.mandelbrot.javafx.DummyProgress;
+
+/**
+ * Estimates the cost of a render by rendering a sparse grid of sample pixels over the same view
+ * and extrapolating the iterations and the calculation time to the full image.
+ * 
+ * <p>The samples are calculated with the same renderer (and therefore the same engine and precision) as the real render,
+ * on the same threads, so the estimate includes the per pixel overhead of the high precision calculation
+ * and the parallelism of the renderer.
+ * The first sample is repeated until its time is stable, so that the measured time is not dominated by the JIT compiler.</p>
+ */
+public class CostEstimator {
+
+	public static final int DEFAULT_SAMPLE_SIZE = 32;
+
+	private static final int MAX_WARMUP_SAMPLES = 10;
+	private static final double STABLE_SAMPLE_RATIO = 1.2;
+
+	private final MandelbrotRenderer mandelbrotRenderer;
+	private final int sampleSize;
+
+	private boolean warmedUp;
+
+	public CostEstimator(MandelbrotRenderer mandelbrotRenderer) {
+		this(mandelbrotRenderer, DEFAULT_SAMPLE_SIZE);
+	}
+
+	/**
+	 * @param sampleSize the number of sample pixels along the longer side of the image
+	 */
+	public CostEstimator(MandelbrotRenderer mandelbrotRenderer, int sampleSize) {
+		this.mandelbrotRenderer = mandelbrotRenderer;
+		this.sampleSize = sampleSize;
+	}
+
+	public CostEstimate estimate(RenderSpec spec) {
+		return estimate(spec.xCenter, spec.yCenter, spec.xRadius, spec.yRadius, spec.precision, spec.maxIterations, spec.width, spec.height);
+	}
+
+	public CostEstimate estimate(BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight) {
+		double sampleScale = Math.min(1.0, (double) sampleSize / Math.max(imageWidth, imageHeight));
+		int sampleWidth = Math.max(1, (int) Math.round(imageWidth * sampleScale));
+		int sampleHeight = Math.max(1, (int) Math.round(imageHeight * sampleScale));
+
+		RenderStatistics statistics = renderSample(xCenter, yCenter, xRadius, yRadius, precision, maxIterations, sampleWidth, sampleHeight);
+		if (!warmedUp) {
+			for (int i = 0; i < MAX_WARMUP_SAMPLES; i++) {
+				RenderStatistics nextStatistics = renderSample(xCenter, yCenter, xRadius, yRadius, precision, maxIterations, sampleWidth, sampleHeight);
+				boolean stable = statistics.getElapsedNanos() < nextStatistics.getElapsedNanos() * STABLE_SAMPLE_RATIO;
+				statistics = nextStatistics;
+				if (stable) {
+					break;
+				}
+			}
+			warmedUp = true;
+		}
+
+		long pixels = (long) imageWidth * imageHeight;
+		double extrapolation = (double) pixels / ((long) sampleWidth * sampleHeight);
+
+		return new CostEstimate(
+				pixels,
+				(long) (statistics.getIterationCount() * extrapolation),
+				(long) (statistics.getElapsedNanos() * extrapolation));
+	}
+
+	private RenderStatistics renderSample(BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int sampleWidth, int sampleHeight) {
+		return mandelbrotRenderer.drawMandelbrot(
+				(pixelX, pixelY, iterations) -> {},
+				xCenter,
+				yCenter,
+				xRadius,
+				yRadius,
+				precision,
+				maxIterations,
+				sampleWidth,
+				sampleHeight,
+				new DummyProgress());
+	}
+}
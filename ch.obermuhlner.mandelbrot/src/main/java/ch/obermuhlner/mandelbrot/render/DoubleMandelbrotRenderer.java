@@ -1,50 +1,99 @@
 package ch.obermuhlner.mandelbrot.render;
 
 import java.math.BigDecimal;
-import java.util.stream.IntStream;
 
 import ch.obermuhlner.mandelbrot.javafx.Progress;
+import ch.obermuhlner.mandelbrot.jfr.MandelbrotEvents;
+import ch.obermuhlner.mandelbrot.jfr.RenderEvent;
 
 public class DoubleMandelbrotRenderer implements MandelbrotRenderer {
 
+	private final TileScheduler tileScheduler;
+
+	public DoubleMandelbrotRenderer() {
+		this(new TileScheduler());
+	}
+
+	public DoubleMandelbrotRenderer(TileScheduler tileScheduler) {
+		this.tileScheduler = tileScheduler;
+	}
+
 	@Override
-	public void drawMandelbrot(MandelbrotResult result, BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, Progress progress) {
-		drawMandelbrotDouble(result, xCenter.doubleValue(), yCenter.doubleValue(), xRadius.doubleValue(), yRadius.doubleValue(), maxIterations, imageWidth, imageHeight, progress);
+	public RenderStatistics drawMandelbrot(MandelbrotResult result, BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, Progress progress) {
+		return drawMandelbrotRegion(result, xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight, 0, 0, imageWidth, imageHeight, progress);
 	}
 
-	private void drawMandelbrotDouble(MandelbrotResult result, double xCenter, double yCenter, double xRadius, double yRadius, int maxIterations, int imageWidth, int imageHeight, Progress progress) {
+	@Override
+	public RenderStatistics drawMandelbrotRegion(MandelbrotResult result, BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, int regionX, int regionY, int regionWidth, int regionHeight, Progress progress) {
+		RenderEvent event = new RenderEvent();
+		event.begin();
+
+		RenderStatistics statistics = drawMandelbrotDouble(result, xCenter.doubleValue(), yCenter.doubleValue(), xRadius.doubleValue(), yRadius.doubleValue(), maxIterations, imageWidth, imageHeight, regionX, regionY, regionWidth, regionHeight, progress);
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.zoom = MandelbrotEvents.zoom(xRadius.min(yRadius));
+			event.precision = precision;
+			event.engine = MandelbrotEvents.ENGINE_DOUBLE;
+			event.pixelCount = (long) regionWidth * regionHeight;
+			event.maxIterations = maxIterations;
+			event.iterations = statistics.getIterationCount();
+			event.commit();
+		}
+		return statistics;
+	}
+
+	private RenderStatistics drawMandelbrotDouble(MandelbrotResult result, double xCenter, double yCenter, double xRadius, double yRadius, int maxIterations, int imageWidth, int imageHeight, int regionX, int regionY, int regionWidth, int regionHeight, Progress progress) {
 		double stepX = xRadius*2 / imageWidth;
 		double stepY = yRadius*2 / imageHeight;
 		double x0Start = -xCenter - xRadius; 
+		double y0Start = 0 - yCenter - yRadius; 
 		
-		IntStream.range(0, imageWidth).parallel().forEach(pixelX -> {
-			double x0 = x0Start + stepX * pixelX;
-			double y0 = 0 - yCenter - yRadius; 
-			for (int pixelY = 0; pixelY < imageHeight; pixelY++) {
-				double x = 0;
-				double y = 0;
-				int iterations = 0;
-				double xx = x*x;
-				double yy = y*y;
-				while (xx + yy < 2*2 && iterations < maxIterations) {
-					y = 2*x*y + y0;
-					x = xx - yy + x0;
-					iterations++;
-					
-					xx = x*x;
-					yy = y*y;
-				}
-
-				iterations = iterations == maxIterations ? Integer.MAX_VALUE : iterations;
-				result.setIterations(pixelX, pixelY, iterations);
-
-				y0 += stepY;
-			}
-			x0 += stepX;
-			
-			progress.incrementProgress(imageWidth);
-		});
+		// the coordinates are calculated from the pixel in the complete image, so that every region calculates exactly the same pixels
+		RenderStatistics.Collector statistics = new RenderStatistics.Collector();
+		// every row is calculated in segments that are handed over to the result as blocks
+		tileScheduler.run(
+				regionHeight,
+				regionWidth,
+				(pixelY, pixelX) -> calculateIterations(x0Start + stepX * (regionX + pixelX), y0Start + stepY * (regionY + pixelY), maxIterations),
+				(pixelY, startPixelX, endPixelX, tile) -> {
+					int[] rowIterations = new int[endPixelX - startPixelX];
+					double y0 = y0Start + stepY * (regionY + pixelY);
+					for (int pixelX = startPixelX; pixelX < endPixelX; pixelX++) {
+						double x0 = x0Start + stepX * (regionX + pixelX);
+						int iterations = calculateIterations(x0, y0, maxIterations);
+
+						if (iterations == maxIterations) {
+							tile.addMaxIterationPixel(maxIterations, x0, y0);
+							iterations = MandelbrotResult.NEVER_ESCAPED;
+						} else {
+							tile.addPixel(iterations);
+						}
+						rowIterations[pixelX - startPixelX] = iterations;
+					}
+					result.setIterations(startPixelX, pixelY, rowIterations.length, 1, rowIterations, 0, rowIterations.length);
+				},
+				statistics,
+				progress);
+		return statistics.finish();
 	}	
 
+	private static int calculateIterations(double x0, double y0, int maxIterations) {
+		double x = 0;
+		double y = 0;
+		int iterations = 0;
+		double xx = x*x;
+		double yy = y*y;
+		while (xx + yy < 2*2 && iterations < maxIterations) {
+			y = 2*x*y + y0;
+			x = xx - yy + x0;
+			iterations++;
+			
+			xx = x*x;
+			yy = y*y;
+		}
+		return iterations;
+	}
+
 	
 }
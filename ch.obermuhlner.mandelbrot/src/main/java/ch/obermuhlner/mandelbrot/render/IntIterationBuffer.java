@@ -0,0 +1,57 @@
+package ch.obermuhlner.mandelbrot.render;
+
+/**
+ * Stores the iterations with 4 bytes per pixel in an array, row by row, copying the blocks of the renderers with {@link System#arraycopy}.
+ */
+public class IntIterationBuffer extends IterationBuffer {
+
+	private final int[] iterations;
+
+	public IntIterationBuffer(int width, int height) {
+		this(width, height, new int[width * height]);
+	}
+
+	/**
+	 * Creates a buffer that stores the iterations in the specified array.
+	 *
+	 * @param iterations the array with at least <code>width * height</code> elements
+	 */
+	public IntIterationBuffer(int width, int height, int[] iterations) {
+		super(width, height);
+		this.iterations = iterations;
+	}
+
+	/**
+	 * Returns the array with the iterations, row by row.
+	 */
+	public int[] getIterationArray() {
+		return iterations;
+	}
+
+	@Override
+	public int getBytesPerPixel() {
+		return 4;
+	}
+
+	@Override
+	public void setIterations(int pixelX, int pixelY, int pixelIterations) {
+		iterations[pixelX + pixelY * width] = pixelIterations;
+	}
+
+	@Override
+	public void setIterations(int pixelX, int pixelY, int blockWidth, int blockHeight, int[] blockIterations, int offset, int scanlineStride) {
+		for (int y = 0; y < blockHeight; y++) {
+			System.arraycopy(blockIterations, offset + y * scanlineStride, iterations, pixelX + (pixelY + y) * width, blockWidth);
+		}
+	}
+
+	@Override
+	public int getIterations(int pixelX, int pixelY) {
+		return iterations[pixelX + pixelY * width];
+	}
+
+	@Override
+	public void getRowIterations(int pixelY, int[] rowIterations) {
+		System.arraycopy(iterations, pixelY * width, rowIterations, 0, width);
+	}
+}
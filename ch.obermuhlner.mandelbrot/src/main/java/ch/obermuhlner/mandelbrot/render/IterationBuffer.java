@@ -0,0 +1,74 @@
+package ch.obermuhlner.mandelbrot.render;
+
+/**
+ * Stores the iterations of an image in memory, using the smallest integer type that can hold the iterations.
+ *
+ * <p>Use {@link #create(int, int, int)} to get a buffer with 1, 2 or 4 bytes per pixel for a maximum number of iterations.
+ * The compact buffers store pixels that never escaped ({@link MandelbrotResult#NEVER_ESCAPED}) as the largest value of their type,
+ * iterations that do not fit are stored as never escaped.</p>
+ */
+public abstract class IterationBuffer implements MandelbrotResult, IterationData {
+
+	protected final int width;
+	protected final int height;
+
+	protected IterationBuffer(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Creates a buffer for the iterations of a render with the specified maximum number of iterations.
+	 *
+	 * <p>Renderers hand over the pixels that reach <code>maxIterations</code> as {@link MandelbrotResult#NEVER_ESCAPED},
+	 * so all other iterations are less than <code>maxIterations</code>.</p>
+	 */
+	public static IterationBuffer create(int width, int height, int maxIterations) {
+		if (maxIterations <= ByteIterationBuffer.MAX_ITERATIONS) {
+			return new ByteIterationBuffer(width, height);
+		}
+		if (maxIterations <= ShortIterationBuffer.MAX_ITERATIONS) {
+			return new ShortIterationBuffer(width, height);
+		}
+		return new IntIterationBuffer(width, height);
+	}
+
+	/**
+	 * Returns the number of bytes per pixel used by buffers for the specified maximum number of iterations.
+	 */
+	public static int bytesPerPixel(int maxIterations) {
+		if (maxIterations <= ByteIterationBuffer.MAX_ITERATIONS) {
+			return 1;
+		}
+		if (maxIterations <= ShortIterationBuffer.MAX_ITERATIONS) {
+			return 2;
+		}
+		return 4;
+	}
+
+	public abstract int getBytesPerPixel();
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Copies all iterations into the specified result, row by row.
+	 *
+	 * @param pixelX the x coordinate in the result of the first pixel of this buffer
+	 * @param pixelY the y coordinate in the result of the first pixel of this buffer
+	 */
+	public void copyTo(MandelbrotResult result, int pixelX, int pixelY) {
+		int[] rowIterations = new int[width];
+		for (int y = 0; y < height; y++) {
+			getRowIterations(y, rowIterations);
+			result.setIterations(pixelX, pixelY + y, width, 1, rowIterations, 0, width);
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package ch.obermuhlner.mandelbrot.render;
+
+public interface IterationData {
+
+	int getWidth();
+
+	int getHeight();
+
+	int getIterations(int pixelX, int pixelY);
+
+	default void getRowIterations(int pixelY, int[] iterations) {
+		for (int pixelX = 0; pixelX < getWidth(); pixelX++) {
+			iterations[pixelX] = getIterations(pixelX, pixelY);
+		}
+	}
+}
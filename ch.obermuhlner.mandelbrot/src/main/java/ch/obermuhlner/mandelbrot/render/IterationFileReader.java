@@ -0,0 +1,168 @@
+package ch.obermuhlner.mandelbrot.render;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+
+import ch.obermuhlner.mandelbrot.poi.PointOfInterest;
+
+/**
+ * Reads files written by {@link IterationFileWriter} using memory mapping.
+ * 
+ * <p>The rows are mapped in segments of at most 1 GB, so that files larger than 2 GB can be read.</p>
+ */
+public class IterationFileReader implements IterationData, Closeable {
+
+	private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+	private final RandomAccessFile randomAccessFile;
+
+	private final int width;
+	private final int height;
+	private final int maxIterations;
+	private final PointOfInterest pointOfInterest;
+
+	private final long[] rowOffsets;
+	private final int[] rowSegments;
+	private final MappedByteBuffer[] segments;
+	private final long[] segmentOffsets;
+
+	private volatile DecodedRow lastRow;
+
+	public IterationFileReader(File file) throws IOException {
+		randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+
+			if (randomAccessFile.readInt() != IterationFileWriter.MAGIC) {
+				throw new IOException("Not a mandelbrot iteration file: " + file);
+			}
+			int version = randomAccessFile.readInt();
+			if (version != IterationFileWriter.VERSION) {
+				throw new IOException("Incompatible mandelbrot iteration file version: " + version);
+			}
+			width = randomAccessFile.readInt();
+			height = randomAccessFile.readInt();
+			maxIterations = randomAccessFile.readInt();
+			byte[] header = new byte[randomAccessFile.readInt()];
+			randomAccessFile.readFully(header);
+			pointOfInterest = header.length == 0 ? null : PointOfInterest.load(new StringReader(new String(header, StandardCharsets.UTF_8)));
+
+			randomAccessFile.seek(randomAccessFile.length() - 8);
+			long rowOffsetsPosition = randomAccessFile.readLong();
+			ByteBuffer rowOffsetsBuffer = channel.map(MapMode.READ_ONLY, rowOffsetsPosition, (height + 1) * 8L);
+			rowOffsets = new long[height + 1];
+			rowOffsetsBuffer.asLongBuffer().get(rowOffsets);
+
+			rowSegments = new int[height];
+			int segmentCount = 0;
+			long[] segmentStarts = new long[height + 1];
+			int firstRow = 0;
+			for (int row = 0; row < height; row++) {
+				if (rowOffsets[row + 1] - rowOffsets[firstRow] > MAX_SEGMENT_BYTES && row > firstRow) {
+					segmentStarts[segmentCount++] = rowOffsets[firstRow];
+					firstRow = row;
+				}
+				rowSegments[row] = segmentCount;
+			}
+			segmentStarts[segmentCount++] = rowOffsets[firstRow];
+			segmentStarts[segmentCount] = rowOffsets[height];
+
+			segments = new MappedByteBuffer[segmentCount];
+			segmentOffsets = new long[segmentCount];
+			for (int i = 0; i < segmentCount; i++) {
+				segmentOffsets[i] = segmentStarts[i];
+				segments[i] = channel.map(MapMode.READ_ONLY, segmentStarts[i], segmentStarts[i + 1] - segmentStarts[i]);
+			}
+		} catch (IOException | RuntimeException e) {
+			randomAccessFile.close();
+			throw e;
+		}
+	}
+
+	public PointOfInterest getPointOfInterest() {
+		return pointOfInterest;
+	}
+
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the iterations of a single pixel.
+	 * 
+	 * <p>The rows can only be decoded as a whole, so the last decoded row is kept.
+	 * Reading the pixels row by row decodes every row once, reading them column by column decodes a row for every pixel,
+	 * use {@link #getRowIterations(int, int[])} where possible.</p>
+	 */
+	@Override
+	public int getIterations(int pixelX, int pixelY) {
+		DecodedRow row = lastRow;
+		if (row == null || row.pixelY != pixelY) {
+			row = new DecodedRow(pixelY, new int[width]);
+			getRowIterations(pixelY, row.iterations);
+			lastRow = row;
+		}
+		return row.iterations[pixelX];
+	}
+
+	@Override
+	public void getRowIterations(int pixelY, int[] iterations) {
+		int segment = rowSegments[pixelY];
+		ByteBuffer buffer = segments[segment].duplicate();
+		buffer.position((int) (rowOffsets[pixelY] - segmentOffsets[segment]));
+		decodeRow(buffer, iterations, width);
+	}
+
+	/**
+	 * Decodes a row of iterations encoded by {@link IterationFileWriter#encodeRow(int[], byte[])}.
+	 */
+	public static void decodeRow(ByteBuffer buffer, int[] iterations, int width) {
+		int last = 0;
+		for (int pixelX = 0; pixelX < width; pixelX++) {
+			int zigZag = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = buffer.get();
+				zigZag |= (b & 0x7f) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			int value = last + ((zigZag >>> 1) ^ -(zigZag & 1));
+			iterations[pixelX] = value == IterationFileWriter.ENCODED_NEVER_ESCAPED ? MandelbrotResult.NEVER_ESCAPED : value;
+			last = value;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		randomAccessFile.close();
+	}
+
+	private static class DecodedRow {
+		final int pixelY;
+		final int[] iterations;
+
+		DecodedRow(int pixelY, int[] iterations) {
+			this.pixelY = pixelY;
+			this.iterations = iterations;
+		}
+	}
+}
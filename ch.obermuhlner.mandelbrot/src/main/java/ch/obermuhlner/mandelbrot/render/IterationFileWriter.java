@@ -0,0 +1,100 @@
+package ch.obermuhlner.mandelbrot.render;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import ch.obermuhlner.mandelbrot.poi.PointOfInterest;
+
+/**
+ * Writes the raw iterations of a rendered image, so that it can be colored again later without recalculating it.
+ * 
+ * <p>File layout (all numbers big endian):</p>
+ * <pre>
+ * magic "MBIT", int version
+ * int width, int height, int maxIterations
+ * int headerLength, byte[headerLength] point of interest (UTF-8, same format as *.mandelbrot files, empty if none)
+ * row data for every row
+ * long[height + 1] row offsets
+ * long offset of the row offsets
+ * </pre>
+ * 
+ * <p>Every row is encoded as the difference to the previous pixel of the same row,
+ * zig-zag encoded and stored as variable length integer (7 bits per byte).
+ * Pixels that never escaped ({@link MandelbrotResult#NEVER_ESCAPED}) are stored as -1.</p>
+ */
+public class IterationFileWriter {
+
+	static final int MAGIC = ('M' << 24) | ('B' << 16) | ('I' << 8) | 'T';
+	static final int VERSION = 1;
+
+	static final int ENCODED_NEVER_ESCAPED = -1;
+
+	public void write(File file, PointOfInterest pointOfInterest, int maxIterations, IterationData iterationData) throws IOException {
+		int width = iterationData.getWidth();
+		int height = iterationData.getHeight();
+
+		byte[] header = new byte[0];
+		if (pointOfInterest != null) {
+			StringWriter headerWriter = new StringWriter();
+			pointOfInterest.save(new PrintWriter(headerWriter));
+			header = headerWriter.toString().getBytes(StandardCharsets.UTF_8);
+		}
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(width);
+			out.writeInt(height);
+			out.writeInt(maxIterations);
+			out.writeInt(header.length);
+			out.write(header);
+			long position = 6 * 4 + header.length;
+
+			long[] rowOffsets = new long[height + 1];
+			int[] iterations = new int[width];
+			byte[] buffer = new byte[width * 5];
+			for (int pixelY = 0; pixelY < height; pixelY++) {
+				rowOffsets[pixelY] = position;
+				iterationData.getRowIterations(pixelY, iterations);
+				int length = encodeRow(iterations, buffer);
+				out.write(buffer, 0, length);
+				position += length;
+			}
+			rowOffsets[height] = position;
+
+			for (long rowOffset : rowOffsets) {
+				out.writeLong(rowOffset);
+			}
+			out.writeLong(position);
+		}
+	}
+
+	/**
+	 * Encodes a row of iterations as zig-zag varint deltas.
+	 * 
+	 * @param buffer the buffer for the encoded row, at least 5 bytes per pixel
+	 * @return the number of encoded bytes
+	 */
+	public static int encodeRow(int[] iterations, byte[] buffer) {
+		int index = 0;
+		int last = 0;
+		for (int iteration : iterations) {
+			int value = iteration == MandelbrotResult.NEVER_ESCAPED ? ENCODED_NEVER_ESCAPED : iteration;
+			int delta = value - last;
+			int zigZag = (delta << 1) ^ (delta >> 31);
+			while ((zigZag & ~0x7f) != 0) {
+				buffer[index++] = (byte) ((zigZag & 0x7f) | 0x80);
+				zigZag >>>= 7;
+			}
+			buffer[index++] = (byte) zigZag;
+			last = value;
+		}
+		return index;
+	}
+}
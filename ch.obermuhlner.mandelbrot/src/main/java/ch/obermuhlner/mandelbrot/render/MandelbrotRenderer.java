@@ -1,11 +1,44 @@
 package ch.obermuhlner.mandelbrot.render;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
 
 import ch.obermuhlner.mandelbrot.javafx.Progress;
 
 public interface MandelbrotRenderer {
 
-	void drawMandelbrot(MandelbrotResult result, BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, Progress progress);
+	RenderStatistics drawMandelbrot(MandelbrotResult result, BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, Progress progress);
 
+	/**
+	 * Renders a rectangular region of the pixels of an image.
+	 *
+	 * <p>The pixel coordinates of the result are relative to the region.
+	 * The pixels are calculated with the same coordinates as in a render of the complete image,
+	 * so that an image rendered region by region is identical to the image rendered at once.</p>
+	 *
+	 * <p>The default implementation renders the region as a view of its own with the pixel step of the complete image,
+	 * which may differ from the complete image in the last digits of the coordinates.</p>
+	 *
+	 * @param regionX the x coordinate of the first pixel of the region in the image
+	 * @param regionY the y coordinate of the first pixel of the region in the image
+	 * @param regionWidth the width of the region in pixels
+	 * @param regionHeight the height of the region in pixels
+	 */
+	default RenderStatistics drawMandelbrotRegion(MandelbrotResult result, BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, int regionX, int regionY, int regionWidth, int regionHeight, Progress progress) {
+		if (regionX == 0 && regionY == 0 && regionWidth == imageWidth && regionHeight == imageHeight) {
+			return drawMandelbrot(result, xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight, progress);
+		}
+
+		MathContext mc = new MathContext(precision, RoundingMode.HALF_EVEN);
+		BigDecimal two = BigDecimal.valueOf(2);
+		BigDecimal stepX = xRadius.multiply(two, mc).divide(BigDecimal.valueOf(imageWidth), mc);
+		BigDecimal stepY = yRadius.multiply(two, mc).divide(BigDecimal.valueOf(imageHeight), mc);
+
+		BigDecimal regionXRadius = stepX.multiply(BigDecimal.valueOf(regionWidth), mc).divide(two, mc);
+		BigDecimal regionYRadius = stepY.multiply(BigDecimal.valueOf(regionHeight), mc).divide(two, mc);
+		BigDecimal regionXCenter = xCenter.add(xRadius, mc).subtract(stepX.multiply(BigDecimal.valueOf(regionX), mc), mc).subtract(regionXRadius, mc);
+		BigDecimal regionYCenter = yCenter.add(yRadius, mc).subtract(stepY.multiply(BigDecimal.valueOf(regionY), mc), mc).subtract(regionYRadius, mc);
+		return drawMandelbrot(result, regionXCenter, regionYCenter, regionXRadius, regionYRadius, precision, maxIterations, regionWidth, regionHeight, progress);
+	}
 }
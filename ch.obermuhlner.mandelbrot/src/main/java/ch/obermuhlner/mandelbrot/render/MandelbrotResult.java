@@ -1,6 +1,41 @@
 package ch.obermuhlner.mandelbrot.render;
 
+/**
+ * Receives the calculated iterations of a render.
+ *
+ * <p>The renderers hand over the iterations in blocks (usually segments of a row) with {@link #setIterations(int, int, int, int, int[], int, int)}.
+ * Results that store the iterations in arrays should override it to copy the block at once,
+ * the default implementation calls {@link #setIterations(int, int, int)} for every pixel,
+ * so that a lambda receiving single pixels can still be used as a result.</p>
+ */
 public interface MandelbrotResult {
 
+	/**
+	 * The iterations of the pixels that did not escape within the maximum number of iterations.
+	 */
+	int NEVER_ESCAPED = Integer.MAX_VALUE;
+
 	void setIterations(int pixelX, int pixelY, int iterations);
+
+	/**
+	 * Sets the iterations of a rectangular block of pixels (same layout as <code>PixelWriter.setPixels()</code> in JavaFX).
+	 *
+	 * <p>The array may be reused by the caller after this method returns.</p>
+	 *
+	 * @param pixelX the x coordinate of the top left pixel of the block
+	 * @param pixelY the y coordinate of the top left pixel of the block
+	 * @param width the width of the block
+	 * @param height the height of the block
+	 * @param iterations the iterations of the block, row by row
+	 * @param offset the index of the top left pixel in the array
+	 * @param scanlineStride the distance between the rows of the block in the array
+	 */
+	default void setIterations(int pixelX, int pixelY, int width, int height, int[] iterations, int offset, int scanlineStride) {
+		for (int y = 0; y < height; y++) {
+			int index = offset + y * scanlineStride;
+			for (int x = 0; x < width; x++) {
+				setIterations(pixelX + x, pixelY + y, iterations[index + x]);
+			}
+		}
+	}
 }
@@ -0,0 +1,182 @@
+package ch.obermuhlner.mandelbrot.render;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Stores the iterations of every pixel in a memory-mapped file instead of the heap.
+ * 
+ * <p>The file is split into segments of complete rows, each segment mapped separately,
+ * so that images with more than 2^31 bytes of iteration data can be stored.</p>
+ *
+ * <p>Like the {@link IterationBuffer}s the file uses 1, 2 or 4 bytes per pixel, depending on the maximum number of iterations.</p>
+ */
+public class MappedFileMandelbrotResult implements MandelbrotResult, IterationData, Closeable {
+
+	private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+	// every render thread encodes its rows into the same buffers before writing them in bulk
+	private static final ThreadLocal<byte[]> byteRows = ThreadLocal.withInitial(() -> new byte[0]);
+	private static final ThreadLocal<short[]> shortRows = ThreadLocal.withInitial(() -> new short[0]);
+
+	private final int width;
+	private final int height;
+	private final File file;
+	private final int bytesPerPixel;
+	private final int rowsPerSegment;
+
+	private final RandomAccessFile randomAccessFile;
+	private final MappedByteBuffer[] segments;
+
+	public MappedFileMandelbrotResult(int width, int height, File file) throws IOException {
+		this(width, height, Integer.MAX_VALUE, file);
+	}
+
+	public MappedFileMandelbrotResult(int width, int height, int maxIterations, File file) throws IOException {
+		this.width = width;
+		this.height = height;
+		this.file = file;
+		this.bytesPerPixel = IterationBuffer.bytesPerPixel(maxIterations);
+
+		long rowBytes = (long) width * bytesPerPixel;
+		rowsPerSegment = (int) Math.max(1, MAX_SEGMENT_BYTES / rowBytes);
+
+		randomAccessFile = new RandomAccessFile(file, "rw");
+		randomAccessFile.setLength(rowBytes * height);
+
+		FileChannel channel = randomAccessFile.getChannel();
+		int segmentCount = (height + rowsPerSegment - 1) / rowsPerSegment;
+		segments = new MappedByteBuffer[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			long position = rowBytes * rowsPerSegment * i;
+			long size = rowBytes * Math.min(rowsPerSegment, height - rowsPerSegment * i);
+			segments[i] = channel.map(MapMode.READ_WRITE, position, size);
+		}
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	public void setIterations(int pixelX, int pixelY, int iterations) {
+		MappedByteBuffer segment = segments[pixelY / rowsPerSegment];
+		int offset = offset(pixelX, pixelY);
+		switch (bytesPerPixel) {
+		case 1:
+			segment.put(offset, ByteIterationBuffer.encode(iterations));
+			break;
+		case 2:
+			segment.putShort(offset, ShortIterationBuffer.encode(iterations));
+			break;
+		default:
+			segment.putInt(offset, iterations);
+		}
+	}
+
+	@Override
+	public void setIterations(int pixelX, int pixelY, int blockWidth, int blockHeight, int[] iterations, int offset, int scanlineStride) {
+		for (int y = 0; y < blockHeight; y++) {
+			int source = offset + y * scanlineStride;
+			// the segments are shared by all render threads, so the position is only changed in a view
+			ByteBuffer segment = segments[(pixelY + y) / rowsPerSegment].duplicate();
+			segment.position(offset(pixelX, pixelY + y));
+			switch (bytesPerPixel) {
+			case 1:
+				byte[] byteRow = byteRow(blockWidth);
+				for (int x = 0; x < blockWidth; x++) {
+					byteRow[x] = ByteIterationBuffer.encode(iterations[source + x]);
+				}
+				segment.put(byteRow, 0, blockWidth);
+				break;
+			case 2:
+				short[] shortRow = shortRow(blockWidth);
+				for (int x = 0; x < blockWidth; x++) {
+					shortRow[x] = ShortIterationBuffer.encode(iterations[source + x]);
+				}
+				segment.asShortBuffer().put(shortRow, 0, blockWidth);
+				break;
+			default:
+				segment.asIntBuffer().put(iterations, source, blockWidth);
+			}
+		}
+	}
+
+	@Override
+	public int getIterations(int pixelX, int pixelY) {
+		return getIterations(segments[pixelY / rowsPerSegment], offset(pixelX, pixelY));
+	}
+
+	@Override
+	public void getRowIterations(int pixelY, int[] iterations) {
+		MappedByteBuffer segment = segments[pixelY / rowsPerSegment];
+		int offset = offset(0, pixelY);
+		for (int pixelX = 0; pixelX < width; pixelX++) {
+			iterations[pixelX] = getIterations(segment, offset);
+			offset += bytesPerPixel;
+		}
+	}
+
+	private int getIterations(MappedByteBuffer segment, int offset) {
+		switch (bytesPerPixel) {
+		case 1:
+			return ByteIterationBuffer.decode(segment.get(offset));
+		case 2:
+			return ShortIterationBuffer.decode(segment.getShort(offset));
+		default:
+			return segment.getInt(offset);
+		}
+	}
+
+	private int offset(int pixelX, int pixelY) {
+		return ((pixelY % rowsPerSegment) * width + pixelX) * bytesPerPixel;
+	}
+
+	private static byte[] byteRow(int length) {
+		byte[] row = byteRows.get();
+		if (row.length < length) {
+			row = new byte[length];
+			byteRows.set(row);
+		}
+		return row;
+	}
+
+	private static short[] shortRow(int length) {
+		short[] row = shortRows.get();
+		if (row.length < length) {
+			row = new short[length];
+			shortRows.set(row);
+		}
+		return row;
+	}
+
+	/**
+	 * Closes the backing file and deletes it.
+	 * 
+	 * <p>The mapped segments are only released by the garbage collector,
+	 * so on some platforms the file can only be deleted when the JVM exits.</p>
+	 */
+	@Override
+	public void close() throws IOException {
+		randomAccessFile.close();
+		if (!file.delete()) {
+			file.deleteOnExit();
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package ch.obermuhlner.mandelbrot.render;
+
+import java.math.BigDecimal;
+
+import ch.obermuhlner.mandelbrot.javafx.Progress;
+import ch.obermuhlner.mandelbrot.management.RenderMetrics;
+
+/**
+ * Reports every render of another {@link MandelbrotRenderer} to the {@link RenderMetrics}.
+ */
+public class MonitoredMandelbrotRenderer implements MandelbrotRenderer {
+
+	private final MandelbrotRenderer mandelbrotRenderer;
+
+	public MonitoredMandelbrotRenderer(MandelbrotRenderer mandelbrotRenderer) {
+		this.mandelbrotRenderer = mandelbrotRenderer;
+	}
+
+	@Override
+	public RenderStatistics drawMandelbrot(MandelbrotResult result, BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, Progress progress) {
+		return drawMandelbrotRegion(result, xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight, 0, 0, imageWidth, imageHeight, progress);
+	}
+
+	@Override
+	public RenderStatistics drawMandelbrotRegion(MandelbrotResult result, BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, int regionX, int regionY, int regionWidth, int regionHeight, Progress progress) {
+		RenderMetrics metrics = RenderMetrics.getInstance();
+		metrics.renderStarted();
+		RenderStatistics statistics = null;
+		try {
+			statistics = mandelbrotRenderer.drawMandelbrotRegion(result, xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight, regionX, regionY, regionWidth, regionHeight, progress);
+			return statistics;
+		} finally {
+			if (statistics != null) {
+				metrics.renderFinished(statistics);
+			} else {
+				metrics.renderCancelled();
+			}
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package ch.obermuhlner.mandelbrot.render;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+import ch.obermuhlner.mandelbrot.javafx.Progress;
+
+/**
+ * Renderer that calculates the pixels on other machines.
+ *
+ * <p>A submitted region does not use a local thread while it is calculated,
+ * so many regions can be submitted at the same time to keep all remote machines busy.</p>
+ */
+public interface RemoteMandelbrotRenderer extends MandelbrotRenderer {
+
+	/**
+	 * Submits a region of an image, see {@link MandelbrotRenderer#drawMandelbrotRegion}.
+	 *
+	 * <p>The result and the progress are updated from other threads.
+	 * Cancelling the returned future removes the waiting pixels of the region,
+	 * the result is not written after {@link CompletableFuture#cancel(boolean)} returned.</p>
+	 *
+	 * @return the future statistics, completed when all pixels of the region are written into the result
+	 */
+	CompletableFuture<RenderStatistics> submitMandelbrotRegion(MandelbrotResult result, BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, int regionX, int regionY, int regionWidth, int regionHeight, Progress progress);
+}
@@ -0,0 +1,208 @@
+package ch.obermuhlner.mandelbrot.render;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ch.obermuhlner.mandelbrot.util.AtomicFiles;
+
+/**
+ * Content addressed on-disk cache of rendered iterations.
+ *
+ * <p>Every entry is an iteration file (see {@link IterationFileWriter}) named after the hash of the view it was rendered from,
+ * so that any palette can be applied to a cached entry.
+ * The least recently used entries are deleted when the cache grows beyond its maximum size.</p>
+ *
+ * <p>The default cache lives in <code>~/Mandelbrot/cache</code> and is shared by the command line tools and the viewer.
+ * It can be configured with the system properties <code>mandelbrot.cache.directory</code>
+ * and <code>mandelbrot.cache.maxBytes</code> (0 disables the cache).</p>
+ */
+public class RenderCache {
+
+	private static final String ENTRY_EXTENSION = ".iterations";
+
+	private static final long DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+
+	private static RenderCache defaultCache;
+
+	private final File directory;
+	private final long maxBytes;
+
+	private final Map<String, Long> entrySizes = new LinkedHashMap<>(16, 0.75f, true);
+	private long totalBytes;
+
+	private long hitCount;
+	private long missCount;
+
+	public RenderCache(File directory, long maxBytes) {
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(ENTRY_EXTENSION));
+		if (files != null) {
+			Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+			for (File file : files) {
+				String key = file.getName().substring(0, file.getName().length() - ENTRY_EXTENSION.length());
+				entrySizes.put(key, file.length());
+				totalBytes += file.length();
+			}
+		}
+	}
+
+	public static synchronized RenderCache getDefault() {
+		if (defaultCache == null) {
+			File defaultDirectory = new File(new File(System.getProperty("user.home", "."), "Mandelbrot"), "cache");
+			String directory = System.getProperty("mandelbrot.cache.directory", defaultDirectory.getPath());
+			long maxBytes = Long.getLong("mandelbrot.cache.maxBytes", DEFAULT_MAX_BYTES);
+			defaultCache = new RenderCache(new File(directory), maxBytes);
+		}
+		return defaultCache;
+	}
+
+	/**
+	 * Calculates the key of a view.
+	 *
+	 * <p>The numbers are canonicalized, so that equal views with different scale (for example "0.5" and "0.50") have the same key.</p>
+	 */
+	public static String key(BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, String engine) {
+		return key(xCenter, yCenter, xRadius, yRadius, precision, maxIterations, imageWidth, imageHeight, 0, 0, imageWidth, imageHeight, engine);
+	}
+
+	/**
+	 * Calculates the key of a region of a view, see {@link MandelbrotRenderer#drawMandelbrotRegion}.
+	 *
+	 * <p>The key of the complete image is the key of the view.</p>
+	 */
+	public static String key(BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int imageWidth, int imageHeight, int regionX, int regionY, int regionWidth, int regionHeight, String engine) {
+		String canonical = "x=" + canonical(xCenter)
+			+ "\ny=" + canonical(yCenter)
+			+ "\nxRadius=" + canonical(xRadius)
+			+ "\nyRadius=" + canonical(yRadius)
+			+ "\nprecision=" + precision
+			+ "\nmaxIterations=" + maxIterations
+			+ "\nwidth=" + imageWidth
+			+ "\nheight=" + imageHeight
+			+ "\nengine=" + engine;
+		if (regionX != 0 || regionY != 0 || regionWidth != imageWidth || regionHeight != imageHeight) {
+			canonical += "\nregion=" + regionX + "," + regionY + "," + regionWidth + "," + regionHeight;
+		}
+
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			StringBuilder result = new StringBuilder();
+			for (byte b : digest.digest(canonical.getBytes(StandardCharsets.UTF_8))) {
+				result.append(String.format("%02x", b));
+			}
+			return result.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String canonical(BigDecimal value) {
+		if (value.signum() == 0) {
+			return "0";
+		}
+		return value.stripTrailingZeros().toPlainString();
+	}
+
+	public boolean isEnabled() {
+		return maxBytes > 0;
+	}
+
+	/**
+	 * Loads the cached iterations into the result.
+	 *
+	 * @return <code>true</code> if the entry was found and loaded, <code>false</code> if it must be calculated
+	 */
+	public boolean load(String key, MandelbrotResult result, int imageWidth, int imageHeight) {
+		if (!isEnabled()) {
+			return false;
+		}
+
+		File file = entryFile(key);
+		if (file.exists()) {
+			try (IterationFileReader reader = new IterationFileReader(file)) {
+				if (reader.getWidth() == imageWidth && reader.getHeight() == imageHeight) {
+					int[] iterations = new int[imageWidth];
+					for (int pixelY = 0; pixelY < imageHeight; pixelY++) {
+						reader.getRowIterations(pixelY, iterations);
+						result.setIterations(0, pixelY, imageWidth, 1, iterations, 0, imageWidth);
+					}
+					file.setLastModified(System.currentTimeMillis());
+					synchronized (this) {
+						if (entrySizes.get(key) == null) {
+							// stored by another process
+							entrySizes.put(key, file.length());
+							totalBytes += file.length();
+						}
+						hitCount++;
+					}
+					return true;
+				}
+			} catch (IOException | RuntimeException e) {
+				// entry is corrupt or was evicted concurrently by another process - treat as miss
+			}
+		}
+
+		synchronized (this) {
+			missCount++;
+		}
+		return false;
+	}
+
+	public void store(String key, int maxIterations, IterationData iterationData) {
+		if (!isEnabled()) {
+			return;
+		}
+
+		File file = entryFile(key);
+		try {
+			directory.mkdirs();
+			AtomicFiles.write(file, tempFile -> new IterationFileWriter().write(tempFile, null, maxIterations, iterationData));
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+
+		synchronized (this) {
+			Long oldSize = entrySizes.put(key, file.length());
+			totalBytes += file.length() - (oldSize == null ? 0 : oldSize);
+			evict();
+		}
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<String, Long>> iterator = entrySizes.entrySet().iterator();
+		while (totalBytes > maxBytes && iterator.hasNext()) {
+			Map.Entry<String, Long> entry = iterator.next();
+			entryFile(entry.getKey()).delete();
+			totalBytes -= entry.getValue();
+			iterator.remove();
+		}
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	public synchronized long getTotalBytes() {
+		return totalBytes;
+	}
+
+	private File entryFile(String key) {
+		return new File(directory, key + ENTRY_EXTENSION);
+	}
+}
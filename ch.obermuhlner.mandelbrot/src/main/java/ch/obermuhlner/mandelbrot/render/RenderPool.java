@@ -0,0 +1,126 @@
+package ch.obermuhlner.mandelbrot.render;
+
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Named thread pools for the different kinds of rendering, so that a long background render never takes all the cores from the interactive viewer.
+ * 
+ * <p>The pools are created when they are used the first time and can be configured with system properties:</p>
+ * <ul>
+ * <li><code>mandelbrot.threads.&lt;name&gt;</code> - the number of threads of the pool</li>
+ * <li><code>mandelbrot.threads.&lt;name&gt;.priority</code> - the thread priority of the pool</li>
+ * <li><code>mandelbrot.threads.interactive.reserved</code> - the number of cores that the background pools leave to the interactive pool (default 1)</li>
+ * <li><code>mandelbrot.threads.background.budget</code> - the fraction of the cores that the background pools may use (default 1.0)</li>
+ * </ul>
+ * 
+ * <p>The background pools share a single budget of cores:
+ * every background pool may use the complete budget while it renders alone,
+ * but together they never calculate more tiles at the same time than the budget allows (see {@link #acquireBackgroundCore()}).</p>
+ */
+public enum RenderPool {
+	/**
+	 * The progressive rendering of the viewer, uses all cores.
+	 */
+	INTERACTIVE(false, Thread.NORM_PRIORITY),
+
+	/**
+	 * The snapshots of the viewer, limited by the background budget.
+	 */
+	BACKGROUND(true, Thread.MIN_PRIORITY),
+
+	/**
+	 * The movies created by the viewer, limited by the background budget.
+	 */
+	MOVIE(true, Thread.MIN_PRIORITY),
+
+	/**
+	 * The command line tools, uses all cores.
+	 */
+	BATCH(false, Thread.NORM_PRIORITY);
+
+	private final boolean background;
+	private final int defaultPriority;
+
+	private static Semaphore backgroundCores;
+
+	private ForkJoinPool pool;
+
+	private RenderPool(boolean background, int defaultPriority) {
+		this.background = background;
+		this.defaultPriority = defaultPriority;
+	}
+
+	public String getName() {
+		return name().toLowerCase(Locale.ROOT);
+	}
+
+	public synchronized ForkJoinPool getPool() {
+		if (pool == null) {
+			int priority = Integer.getInteger("mandelbrot.threads." + getName() + ".priority", defaultPriority);
+			ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory = forkJoinPool -> {
+				ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+				thread.setName("mandelbrot-" + getName() + "-" + thread.getPoolIndex());
+				thread.setPriority(priority);
+				return thread;
+			};
+			pool = new ForkJoinPool(getConfiguredParallelism(), threadFactory, null, false);
+		}
+		return pool;
+	}
+
+	/**
+	 * Returns whether the pool is limited by the background budget and is paused by the interactive rendering (see {@link RenderPreemption}).
+	 */
+	public boolean isBackground() {
+		return background;
+	}
+
+	/**
+	 * Waits for a core of the shared background budget before a background pool calculates a part of a tile.
+	 * 
+	 * <p>Must be followed by {@link #releaseBackgroundCore()}.</p>
+	 */
+	public static void acquireBackgroundCore() {
+		getBackgroundCores().acquireUninterruptibly();
+	}
+
+	public static void releaseBackgroundCore() {
+		getBackgroundCores().release();
+	}
+
+	private static synchronized Semaphore getBackgroundCores() {
+		if (backgroundCores == null) {
+			backgroundCores = new Semaphore(getBackgroundBudget());
+		}
+		return backgroundCores;
+	}
+
+	/**
+	 * Returns the number of cores shared by all background pools.
+	 */
+	public static int getBackgroundBudget() {
+		int processors = Runtime.getRuntime().availableProcessors();
+		int reserved = Integer.getInteger("mandelbrot.threads.interactive.reserved", 1);
+		double budget = Double.parseDouble(System.getProperty("mandelbrot.threads.background.budget", "1.0"));
+		return Math.max(1, Math.min(processors - reserved, (int) (processors * budget)));
+	}
+
+	public int getParallelism() {
+		return getPool().getParallelism();
+	}
+
+	/**
+	 * Returns whether the pool was already created, so that monitoring does not create unused pools.
+	 */
+	public synchronized boolean isStarted() {
+		return pool != null;
+	}
+
+	private int getConfiguredParallelism() {
+		int defaultParallelism = background ? getBackgroundBudget() : Runtime.getRuntime().availableProcessors();
+		return Math.max(1, Integer.getInteger("mandelbrot.threads." + getName(), defaultParallelism));
+	}
+}
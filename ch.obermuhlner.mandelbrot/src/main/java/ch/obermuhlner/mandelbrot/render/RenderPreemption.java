@@ -0,0 +1,84 @@
+package ch.obermuhlner.mandelbrot.render;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Pauses the background rendering while the viewer renders interactively.
+ * 
+ * <p>The {@link TileScheduler} of a background {@link RenderPool} calls {@link #yieldToInteractive(BooleanSupplier)} before every row segment,
+ * so that background threads stop at the next checkpoint when an interactive render starts
+ * and continue with the remaining segments of the same rows when the viewer is idle again.
+ * No calculated segments are lost.</p>
+ */
+public class RenderPreemption {
+
+	private static final long CANCEL_CHECK_MILLIS = 100;
+
+	private static final RenderPreemption INSTANCE = new RenderPreemption();
+
+	private int activeInteractiveCount;
+	private int pausedThreadCount;
+	private long preemptionCount;
+
+	public static RenderPreemption getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Marks the start of an interactive render, the background renders pause at their next checkpoint.
+	 */
+	public synchronized void interactiveStarted() {
+		activeInteractiveCount++;
+	}
+
+	/**
+	 * Marks the end of an interactive render, the background renders continue if no other interactive render is active.
+	 */
+	public synchronized void interactiveFinished() {
+		activeInteractiveCount--;
+		if (activeInteractiveCount == 0) {
+			notifyAll();
+		}
+	}
+
+	public synchronized boolean isInteractiveActive() {
+		return activeInteractiveCount > 0;
+	}
+
+	/**
+	 * Waits while an interactive render is active.
+	 * 
+	 * @param cancelled returns <code>true</code> if the background render was cancelled while waiting
+	 */
+	public synchronized void yieldToInteractive(BooleanSupplier cancelled) {
+		if (activeInteractiveCount == 0) {
+			return;
+		}
+
+		preemptionCount++;
+		pausedThreadCount++;
+		try {
+			while (activeInteractiveCount > 0 && !cancelled.getAsBoolean()) {
+				wait(CANCEL_CHECK_MILLIS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			pausedThreadCount--;
+		}
+	}
+
+	/**
+	 * Returns the number of background threads that are currently paused.
+	 */
+	public synchronized int getPausedThreadCount() {
+		return pausedThreadCount;
+	}
+
+	/**
+	 * Returns how many times a background thread was paused.
+	 */
+	public synchronized long getPreemptionCount() {
+		return preemptionCount;
+	}
+}
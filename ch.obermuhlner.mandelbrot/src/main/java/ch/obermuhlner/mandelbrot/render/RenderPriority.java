@@ -0,0 +1,13 @@
+package ch.obermuhlner.mandelbrot.render;
+
+/**
+ * The priority of a render in the {@link RenderService}.
+ * 
+ * <p>Renders with the same priority are started in the order they were submitted.</p>
+ */
+public enum RenderPriority {
+	
+	High,
+	Normal,
+	Low
+}
@@ -0,0 +1,34 @@
+package ch.obermuhlner.mandelbrot.render;
+
+import java.io.File;
+
+/**
+ * The result of a render of the {@link RenderService}.
+ */
+public class RenderResult {
+
+	public final RenderSpec spec;
+	public final RenderStatistics statistics;
+
+	/**
+	 * The iterations, only if the specification has no image file.
+	 */
+	public final IterationData iterationData;
+
+	public final double computeMillis;
+	public final double colorizeMillis;
+	public final double encodeMillis;
+
+	RenderResult(RenderSpec spec, RenderStatistics statistics, IterationData iterationData, double computeMillis, double colorizeMillis, double encodeMillis) {
+		this.spec = spec;
+		this.statistics = statistics;
+		this.iterationData = iterationData;
+		this.computeMillis = computeMillis;
+		this.colorizeMillis = colorizeMillis;
+		this.encodeMillis = encodeMillis;
+	}
+
+	public File getFile() {
+		return spec.file;
+	}
+}
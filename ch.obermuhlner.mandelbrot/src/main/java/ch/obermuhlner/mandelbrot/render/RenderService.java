@@ -0,0 +1,365 @@
+package ch.obermuhlner.mandelbrot.render;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ch.obermuhlner.mandelbrot.image.PaletteRowSupplier;
+import ch.obermuhlner.mandelbrot.image.PngTileSubscriber;
+import ch.obermuhlner.mandelbrot.image.PngWriter;
+import ch.obermuhlner.mandelbrot.javafx.DummyProgress;
+import ch.obermuhlner.mandelbrot.javafx.Progress;
+import ch.obermuhlner.mandelbrot.util.AtomicFiles;
+import ch.obermuhlner.mandelbrot.util.StopWatch;
+import ch.obermuhlner.mandelbrot.util.ThreadInterruptedException;
+
+/**
+ * Renders images asynchronously for the viewer, the command line tools and the tile server.
+ *
+ * <p>The renders are started in the order of their {@link RenderPriority} and submission,
+ * at most <code>concurrentRenders</code> at the same time (the tiles of every render are calculated in the {@link RenderPool}).</p>
+ *
+ * <p>Concurrent requests for equal {@link RenderSpec}s share a single render, the progress of the first request is reported.
+ * Cancelling the future of a request cancels the render when no other request waits for it.
+ * A running render is interrupted and keeps its checkpoint.</p>
+ *
+ * <p>Renders into an image file are checkpointed, all renders use the {@link RenderCache}.
+ * Images with more than {@link #setMaxInMemoryPixels(long) maxInMemoryPixels} pixels store their iterations in a memory-mapped file.
+ * Images with at least {@link #setMinStreamedPixels(long) minStreamedPixels} pixels (and no iterations file) are written
+ * by a {@link PngTileSubscriber} while they are rendered, without storing the iterations and without checkpoint.</p>
+ */
+public class RenderService {
+
+	public static final long DEFAULT_MAX_IN_MEMORY_PIXELS = 8192L * 8192L;
+
+	private final MandelbrotRenderer mandelbrotRenderer;
+	private final RenderPool renderPool;
+	private final ThreadPoolExecutor renderExecutor;
+	private final AtomicInteger nextSequence = new AtomicInteger();
+
+	private final Map<RenderSpec, Job> jobs = new HashMap<>();
+	private long deduplicatedCount;
+
+	private RenderCache renderCache = RenderCache.getDefault();
+	private Executor encodeExecutor;
+	private long maxInMemoryPixels = DEFAULT_MAX_IN_MEMORY_PIXELS;
+	private long minStreamedPixels = Long.getLong("mandelbrot.render.streamPixels", Long.MAX_VALUE);
+	private int maxQueuedRenders = Integer.MAX_VALUE;
+
+	public RenderService(MandelbrotRenderer mandelbrotRenderer, RenderPool renderPool, int concurrentRenders) {
+		this.mandelbrotRenderer = mandelbrotRenderer;
+		this.renderPool = renderPool;
+
+		AtomicInteger threadCount = new AtomicInteger();
+		renderExecutor = new ThreadPoolExecutor(concurrentRenders, concurrentRenders, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(), runnable -> {
+			Thread thread = new Thread(runnable, "mandelbrot-render-" + renderPool.getName() + "-" + threadCount.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public void setRenderCache(RenderCache renderCache) {
+		this.renderCache = renderCache;
+	}
+
+	/**
+	 * Sets the executor that writes the images, so that the next render can start while an image is written.
+	 *
+	 * <p>By default the images are written by the render thread.
+	 * Images in a memory-mapped file are always written by the render thread.</p>
+	 */
+	public void setEncodeExecutor(Executor encodeExecutor) {
+		this.encodeExecutor = encodeExecutor;
+	}
+
+	public void setMaxInMemoryPixels(long maxInMemoryPixels) {
+		this.maxInMemoryPixels = maxInMemoryPixels;
+	}
+
+	/**
+	 * Sets the number of pixels from which on images are written while they are rendered, tile row by tile row.
+	 *
+	 * <p>By default (system property <code>mandelbrot.render.streamPixels</code>) no images are streamed.</p>
+	 */
+	public void setMinStreamedPixels(long minStreamedPixels) {
+		this.minStreamedPixels = minStreamedPixels;
+	}
+
+	/**
+	 * Sets the number of renders that may wait, further requests are rejected with a {@link RejectedExecutionException}.
+	 */
+	public void setMaxQueuedRenders(int maxQueuedRenders) {
+		this.maxQueuedRenders = maxQueuedRenders;
+	}
+
+	public CompletableFuture<RenderResult> render(RenderSpec spec) {
+		return render(spec, RenderPriority.Normal, new DummyProgress());
+	}
+
+	/**
+	 * Submits a render.
+	 *
+	 * @param spec the specification of the render
+	 * @param priority the priority of the render
+	 * @param progress the progress of the render
+	 * @return the future result, completed when the image is written,
+	 * 	failed with an {@link IllegalStateException} if the same image file is already rendered with a different palette
+	 * @throws RejectedExecutionException if too many renders are waiting
+	 */
+	public synchronized CompletableFuture<RenderResult> render(RenderSpec spec, RenderPriority priority, Progress progress) {
+		Job job = jobs.get(spec);
+		if (job != null && job.spec.palette != spec.palette) {
+			CompletableFuture<RenderResult> conflict = new CompletableFuture<>();
+			conflict.completeExceptionally(new IllegalStateException("The file " + spec.file + " is already rendered with a different palette"));
+			return conflict;
+		}
+		if (job != null) {
+			deduplicatedCount++;
+			if (priority.compareTo(job.priority) < 0 && renderExecutor.remove(job)) {
+				job.priority = priority;
+				renderExecutor.execute(job);
+			}
+		} else {
+			if (renderExecutor.getQueue().size() >= maxQueuedRenders) {
+				throw new RejectedExecutionException("Too many waiting renders: " + renderExecutor.getQueue().size());
+			}
+			job = new Job(spec, priority, progress, nextSequence.getAndIncrement());
+			jobs.put(spec, job);
+			renderExecutor.execute(job);
+		}
+
+		RenderFuture future = new RenderFuture(job);
+		job.futures.add(future);
+		return future;
+	}
+
+	public synchronized int getQueuedCount() {
+		return renderExecutor.getQueue().size();
+	}
+
+	public synchronized int getActiveCount() {
+		return jobs.size() - renderExecutor.getQueue().size();
+	}
+
+	/**
+	 * Returns the number of requests that were served by the render of an equal concurrent request.
+	 */
+	public synchronized long getDeduplicatedCount() {
+		return deduplicatedCount;
+	}
+
+	private synchronized void cancel(Job job, RenderFuture future, boolean mayInterruptIfRunning) {
+		job.futures.remove(future);
+		if (!job.futures.isEmpty()) {
+			return;
+		}
+
+		if (renderExecutor.remove(job)) {
+			jobs.remove(job.spec, job);
+		} else if (mayInterruptIfRunning && job.thread != null) {
+			job.thread.interrupt();
+		}
+	}
+
+	private void run(Job job) {
+		synchronized (this) {
+			if (job.futures.isEmpty()) {
+				jobs.remove(job.spec, job);
+				return;
+			}
+			job.thread = Thread.currentThread();
+		}
+
+		CompletableFuture<RenderResult> result;
+		try {
+			result = execute(job.spec, job.progress);
+		} catch (IOException e) {
+			result = failed(new UncheckedIOException(e));
+		} catch (RuntimeException | Error e) {
+			result = failed(e);
+		} finally {
+			synchronized (this) {
+				job.thread = null;
+			}
+			// an interrupt of a cancelled render must not affect the next render in this thread
+			Thread.interrupted();
+		}
+
+		result.whenComplete((renderResult, exception) -> complete(job, renderResult, exception));
+	}
+
+	private void complete(Job job, RenderResult renderResult, Throwable exception) {
+		List<RenderFuture> futures;
+		synchronized (this) {
+			jobs.remove(job.spec, job);
+			futures = new ArrayList<>(job.futures);
+			job.futures.clear();
+		}
+
+		Throwable cause = exception instanceof CompletionException && exception.getCause() != null ? exception.getCause() : exception;
+		if (cause instanceof ThreadInterruptedException) {
+			cause = new CancellationException("Render cancelled");
+		}
+		for (RenderFuture future : futures) {
+			if (cause == null) {
+				future.complete(renderResult);
+			} else {
+				future.completeExceptionally(cause);
+			}
+		}
+	}
+
+	private CompletableFuture<RenderResult> execute(RenderSpec spec, Progress progress) throws IOException {
+		StopWatch stopWatch = new StopWatch();
+
+		if (spec.file == null) {
+			BufferedImageMandelbrotResult result = new BufferedImageMandelbrotResult(spec.width, spec.height, spec.maxIterations, spec.palette, spec.colorOffset);
+			MandelbrotRenderer cachingMandelbrotRenderer = new MonitoredMandelbrotRenderer(new CachingMandelbrotRenderer(mandelbrotRenderer, renderCache));
+			RenderStatistics statistics = draw(cachingMandelbrotRenderer, result, spec, progress);
+			return CompletableFuture.completedFuture(new RenderResult(spec, statistics, result, stopWatch.getElapsedMilliseconds(), 0, 0));
+		}
+
+		if (spec.getPixelCount() >= minStreamedPixels && spec.iterationsFile == null) {
+			return CompletableFuture.completedFuture(stream(spec, progress));
+		}
+
+		CheckpointMandelbrotRenderer checkpointMandelbrotRenderer = new CheckpointMandelbrotRenderer(mandelbrotRenderer, spec.file);
+		MandelbrotRenderer cachingMandelbrotRenderer = new MonitoredMandelbrotRenderer(new CachingMandelbrotRenderer(checkpointMandelbrotRenderer, renderCache));
+
+		if (spec.getPixelCount() > maxInMemoryPixels) {
+			try (MappedFileMandelbrotResult result = new MappedFileMandelbrotResult(spec.width, spec.height, spec.maxIterations, AtomicFiles.createTempFile(spec.file, ".iterations.tmp"))) {
+				RenderStatistics statistics = draw(cachingMandelbrotRenderer, result, spec, progress);
+				// the mapped file is closed after writing, so it is written in this thread
+				return CompletableFuture.completedFuture(write(spec, result, statistics, stopWatch.getElapsedMilliseconds(), checkpointMandelbrotRenderer));
+			}
+		}
+
+		BufferedImageMandelbrotResult result = new BufferedImageMandelbrotResult(spec.width, spec.height, spec.maxIterations, spec.palette, spec.colorOffset);
+		RenderStatistics statistics = draw(cachingMandelbrotRenderer, result, spec, progress);
+		double computeMillis = stopWatch.getElapsedMilliseconds();
+		if (encodeExecutor == null) {
+			return CompletableFuture.completedFuture(write(spec, result, statistics, computeMillis, checkpointMandelbrotRenderer));
+		}
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return write(spec, result, statistics, computeMillis, checkpointMandelbrotRenderer);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, encodeExecutor);
+	}
+
+	private static RenderStatistics draw(MandelbrotRenderer renderer, MandelbrotResult result, RenderSpec spec, Progress progress) {
+		return renderer.drawMandelbrot(result, spec.xCenter, spec.yCenter, spec.xRadius, spec.yRadius, spec.precision, spec.maxIterations, spec.width, spec.height, progress);
+	}
+
+	private RenderResult write(RenderSpec spec, IterationData iterationData, RenderStatistics statistics, double computeMillis, CheckpointMandelbrotRenderer checkpointMandelbrotRenderer) throws IOException {
+		StopWatch encodeStopWatch = new StopWatch();
+		PaletteRowSupplier rowSupplier = new PaletteRowSupplier(iterationData, spec.palette, spec.colorOffset);
+		AtomicFiles.write(spec.file, tempFile -> new PngWriter(renderPool).write(tempFile, spec.width, spec.height, rowSupplier));
+
+		if (spec.iterationsFile != null) {
+			AtomicFiles.write(spec.iterationsFile, tempFile -> new IterationFileWriter().write(tempFile, spec.pointOfInterest, spec.maxIterations, iterationData));
+		}
+		checkpointMandelbrotRenderer.deleteCheckpoint();
+
+		return new RenderResult(spec, statistics, null, computeMillis, rowSupplier.getColorizeNanos() / 1000000.0, encodeStopWatch.getElapsedMilliseconds());
+	}
+
+	private RenderResult stream(RenderSpec spec, Progress progress) throws IOException {
+		StopWatch stopWatch = new StopWatch();
+		MandelbrotRenderer cachingMandelbrotRenderer = new MonitoredMandelbrotRenderer(new CachingMandelbrotRenderer(mandelbrotRenderer, renderCache));
+		// the tiles are rendered in this thread, so that cancelling the render interrupts them
+		TilePublisher tilePublisher = new TilePublisher(cachingMandelbrotRenderer, spec, TilePublisher.DEFAULT_TILE_SIZE, Runnable::run);
+		RenderStatistics.Collector statistics = new RenderStatistics.Collector();
+
+		AtomicFiles.write(spec.file, tempFile -> {
+			try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+				PngTileSubscriber subscriber = new PngTileSubscriber(new PngWriter(renderPool).open(out, spec.width, spec.height), spec.palette, spec.colorOffset) {
+					@Override
+					public void onNext(RenderedTile tile) {
+						statistics.addTile(tile.statistics);
+						progress.incrementProgress((double) tile.getWidth() * tile.getHeight());
+						super.onNext(tile);
+					}
+				};
+				tilePublisher.subscribe(subscriber);
+				subscriber.getFuture().join();
+			}
+		});
+
+		// the image is colored and encoded while it is rendered
+		return new RenderResult(spec, statistics.finish(), null, stopWatch.getElapsedMilliseconds(), 0, 0);
+	}
+
+	private static <T> CompletableFuture<T> failed(Throwable exception) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		future.completeExceptionally(exception);
+		return future;
+	}
+
+	private class Job implements Runnable, Comparable<Job> {
+		final RenderSpec spec;
+		final Progress progress;
+		final int sequence;
+		final List<RenderFuture> futures = new ArrayList<>();
+		volatile RenderPriority priority;
+		Thread thread;
+
+		Job(RenderSpec spec, RenderPriority priority, Progress progress, int sequence) {
+			this.spec = spec;
+			this.priority = priority;
+			this.progress = progress;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public void run() {
+			RenderService.this.run(this);
+		}
+
+		@Override
+		public int compareTo(Job other) {
+			int result = priority.compareTo(other.priority);
+			if (result == 0) {
+				result = Integer.compare(sequence, other.sequence);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * The future of a single request, cancelling it cancels the render if no other request waits for it.
+	 */
+	private class RenderFuture extends CompletableFuture<RenderResult> {
+		private final Job job;
+
+		RenderFuture(Job job) {
+			this.job = job;
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			if (cancelled) {
+				RenderService.this.cancel(job, this, mayInterruptIfRunning);
+			}
+			return cancelled;
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package ch.obermuhlner.mandelbrot.render;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Objects;
+
+import ch.obermuhlner.mandelbrot.palette.Palette;
+import ch.obermuhlner.mandelbrot.poi.PointOfInterest;
+import ch.obermuhlner.math.big.BigDecimalMath;
+
+/**
+ * Immutable specification of a render submitted to the {@link RenderService}.
+ * 
+ * <p>The specification contains the view and optionally the image file (with the palette to color it)
+ * and the iterations file to write.
+ * Without an image file the iterations are kept in memory, see {@link RenderResult#iterationData}.</p>
+ */
+public class RenderSpec {
+
+	public final BigDecimal xCenter;
+	public final BigDecimal yCenter;
+	public final BigDecimal xRadius;
+	public final BigDecimal yRadius;
+	public final int precision;
+	public final int maxIterations;
+	public final int width;
+	public final int height;
+
+	public final File file;
+	public final Palette palette;
+	public final double colorOffset;
+
+	public final File iterationsFile;
+	public final PointOfInterest pointOfInterest;
+
+	public RenderSpec(BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int width, int height) {
+		this(xCenter, yCenter, xRadius, yRadius, precision, maxIterations, width, height, null, null, 0.0, null, null);
+	}
+
+	private RenderSpec(BigDecimal xCenter, BigDecimal yCenter, BigDecimal xRadius, BigDecimal yRadius, int precision, int maxIterations, int width, int height, File file, Palette palette, double colorOffset, File iterationsFile, PointOfInterest pointOfInterest) {
+		this.xCenter = xCenter;
+		this.yCenter = yCenter;
+		this.xRadius = xRadius;
+		this.yRadius = yRadius;
+		this.precision = precision;
+		this.maxIterations = maxIterations;
+		this.width = width;
+		this.height = height;
+		this.file = file;
+		this.palette = palette;
+		this.colorOffset = colorOffset;
+		this.iterationsFile = iterationsFile;
+		this.pointOfInterest = pointOfInterest;
+	}
+
+	/**
+	 * Creates the specification of a view at the specified zoom level.
+	 * 
+	 * @param zoomStart the radius of the shorter side of the image at zoom level 0
+	 * @param zoomPower the zoom level, the radius is <code>zoomStart * 10^-zoomPower</code>
+	 */
+	public static RenderSpec ofZoom(BigDecimal xCenter, BigDecimal yCenter, BigDecimal zoomStart, BigDecimal zoomPower, int maxIterations, int width, int height) {
+		int precision = precision(zoomPower);
+		MathContext mc = new MathContext(precision, RoundingMode.HALF_UP);
+		BigDecimal radius = zoomStart.multiply(BigDecimalMath.pow(BigDecimal.TEN, zoomPower.negate(), mc));
+		BigDecimal minWidthHeight = new BigDecimal(Math.min(width, height));
+		BigDecimal xRadius = width == height ? radius : radius.multiply(new BigDecimal(width), mc).divide(minWidthHeight, mc);
+		BigDecimal yRadius = width == height ? radius : radius.multiply(new BigDecimal(height), mc).divide(minWidthHeight, mc);
+		return new RenderSpec(xCenter, yCenter, xRadius, yRadius, precision, maxIterations, width, height);
+	}
+
+	public static int precision(BigDecimal zoomPower) {
+		return zoomPower.intValue() * 1 + 10;
+	}
+
+	public static int maxIterations(BigDecimal zoomPower, int maxIterationsConst, int maxIterationsLinear) {
+		return maxIterationsConst + zoomPower.intValue() * maxIterationsLinear;
+	}
+
+	/**
+	 * Returns a copy of this specification that writes the image colored with the specified palette into a PNG file.
+	 */
+	public RenderSpec withImage(File file, Palette palette, double colorOffset) {
+		return new RenderSpec(xCenter, yCenter, xRadius, yRadius, precision, maxIterations, width, height, file, palette, colorOffset, iterationsFile, pointOfInterest);
+	}
+
+	/**
+	 * Returns a copy of this specification that also writes the iterations into an iterations file.
+	 */
+	public RenderSpec withIterationsFile(File iterationsFile, PointOfInterest pointOfInterest) {
+		return new RenderSpec(xCenter, yCenter, xRadius, yRadius, precision, maxIterations, width, height, file, palette, colorOffset, iterationsFile, pointOfInterest);
+	}
+
+	public long getPixelCount() {
+		return (long) width * height;
+	}
+
+	/**
+	 * Two specifications are equal if they render the same view into the same files.
+	 * 
+	 * <p>The palette of an image file is not compared, concurrent renders into the same file would overwrite each other anyway
+	 * (the {@link RenderService} fails a render into the file of a running render with a different palette).
+	 * Without an image file the image is colored in memory, so the palettes must be the same instance.</p>
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof RenderSpec)) {
+			return false;
+		}
+		RenderSpec other = (RenderSpec) obj;
+		return xCenter.equals(other.xCenter)
+				&& yCenter.equals(other.yCenter)
+				&& xRadius.equals(other.xRadius)
+				&& yRadius.equals(other.yRadius)
+				&& precision == other.precision
+				&& maxIterations == other.maxIterations
+				&& width == other.width
+				&& height == other.height
+				&& Objects.equals(file, other.file)
+				&& (file != null || palette == other.palette)
+				&& Double.compare(colorOffset, other.colorOffset) == 0
+				&& Objects.equals(iterationsFile, other.iterationsFile);
+	}
+
+	@Override
+	public int hashCode() {
+		int paletteHash = file == null ? System.identityHashCode(palette) : 0;
+		return Objects.hash(xCenter, yCenter, xRadius, yRadius, precision, maxIterations, width, height, file, paletteHash, colorOffset, iterationsFile);
+	}
+
+	@Override
+	public String toString() {
+		return "RenderSpec(x=" + xCenter + ", y=" + yCenter + ", xRadius=" + xRadius + ", yRadius=" + yRadius + ", " + width + "x" + height + ", file=" + file + ")";
+	}
+}
@@ -0,0 +1,275 @@
+package ch.obermuhlner.mandelbrot.render;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ch.obermuhlner.mandelbrot.management.RenderMetrics;
+
+/**
+ * Statistics of a single call to {@link MandelbrotRenderer#drawMandelbrot}.
+ *
+ * <p>The renderers calculate the image in tiles (the rows of the image for the simple renderers) in parallel.
+ * The counts are collected per thread and the calculation time of every tile is recorded,
+ * so that a slow render can be attributed to interior pixels, load imbalance or precision overhead.</p>
+ *
+ * <p>Interior pixels are the pixels that reached the maximum number of iterations
+ * and are inside the main cardioid or the period 2 bulb.</p>
+ */
+public class RenderStatistics {
+
+	private static final double NANOS_PER_MILLISECOND = 1_000_000.0;
+
+	public static class ThreadStatistics {
+		public final String threadName;
+
+		public long tiles;
+		public long pixels;
+		public long iterations;
+		public long interiorPixels;
+		public long maxIterationPixels;
+		public long busyNanos;
+
+		public ThreadStatistics(String threadName) {
+			this.threadName = threadName;
+		}
+
+		void add(ThreadStatistics other) {
+			tiles += other.tiles;
+			pixels += other.pixels;
+			iterations += other.iterations;
+			interiorPixels += other.interiorPixels;
+			maxIterationPixels += other.maxIterationPixels;
+			busyNanos += other.busyNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: %d tiles, %d pixels, %d iterations, %d max iterations, %.1f ms busy",
+					threadName, tiles, pixels, iterations, maxIterationPixels, busyNanos / NANOS_PER_MILLISECOND);
+		}
+	}
+
+	/**
+	 * Counts the pixels of a single tile, calculated by a single thread.
+	 */
+	public static class Tile {
+		private final long startNanos = System.nanoTime();
+
+		private long pixels;
+		private long iterations;
+		private long interiorPixels;
+		private long maxIterationPixels;
+
+		public void addPixel(int iterations) {
+			this.pixels++;
+			this.iterations += iterations;
+		}
+
+		public void addMaxIterationPixel(int maxIterations, double x0, double y0) {
+			addPixel(maxIterations);
+			maxIterationPixels++;
+			if (isInMainCardioidOrBulb(x0, y0)) {
+				interiorPixels++;
+			}
+		}
+
+		/**
+		 * Adds the counts of a part of this tile that was calculated by another thread.
+		 */
+		void add(Tile other) {
+			pixels += other.pixels;
+			iterations += other.iterations;
+			interiorPixels += other.interiorPixels;
+			maxIterationPixels += other.maxIterationPixels;
+		}
+	}
+
+	/**
+	 * Collects the statistics while rendering; can be used concurrently by all render threads.
+	 */
+	public static class Collector {
+		private final long startNanos = System.nanoTime();
+
+		private final Map<String, ThreadStatistics> threadStatistics = new HashMap<>();
+		private final List<Long> tileNanos = new ArrayList<>();
+		private long cachedPixels;
+
+		public Tile startTile() {
+			return new Tile();
+		}
+
+		public synchronized void endTile(Tile tile) {
+			long nanos = System.nanoTime() - tile.startNanos;
+			tileNanos.add(nanos);
+
+			ThreadStatistics statistics = currentThreadStatistics(Thread.currentThread().getName());
+			statistics.tiles++;
+			statistics.pixels += tile.pixels;
+			statistics.iterations += tile.iterations;
+			statistics.interiorPixels += tile.interiorPixels;
+			statistics.maxIterationPixels += tile.maxIterationPixels;
+			statistics.busyNanos += nanos;
+
+			RenderMetrics.getInstance().tileFinished(tile.pixels, tile.iterations);
+		}
+
+		/**
+		 * Adds the per thread counts of a render that calculated a single tile of this render.
+		 * 
+		 * <p>The tiles of that render were already reported to the {@link RenderMetrics}.</p>
+		 */
+		public synchronized void addTile(RenderStatistics tileStatistics) {
+			tileNanos.add(tileStatistics.elapsedNanos);
+			cachedPixels += tileStatistics.cachedPixels;
+			for (ThreadStatistics statistics : tileStatistics.threadStatistics) {
+				currentThreadStatistics(statistics.threadName).add(statistics);
+			}
+		}
+
+		/**
+		 * Adds a tile that was calculated by another process, for example a distributed worker.
+		 * 
+		 * @param threadName the name of the process that calculated the tile
+		 */
+		public synchronized void addTile(String threadName, long nanos, long pixels, long iterations, long maxIterationPixels) {
+			tileNanos.add(nanos);
+			ThreadStatistics statistics = currentThreadStatistics(threadName);
+			statistics.tiles++;
+			statistics.pixels += pixels;
+			statistics.iterations += iterations;
+			statistics.maxIterationPixels += maxIterationPixels;
+			statistics.busyNanos += nanos;
+
+			RenderMetrics.getInstance().tileFinished(pixels, iterations);
+		}
+
+		/**
+		 * Adds pixels that were not calculated but loaded from a cache or checkpoint.
+		 */
+		public synchronized void addCachedPixels(long pixels) {
+			cachedPixels += pixels;
+		}
+
+		public synchronized RenderStatistics finish() {
+			long[] sortedTileNanos = new long[tileNanos.size()];
+			for (int i = 0; i < sortedTileNanos.length; i++) {
+				sortedTileNanos[i] = tileNanos.get(i);
+			}
+			Arrays.sort(sortedTileNanos);
+
+			List<ThreadStatistics> sortedThreadStatistics = new ArrayList<>(threadStatistics.values());
+			sortedThreadStatistics.sort(Comparator.comparing(statistics -> statistics.threadName));
+
+			return new RenderStatistics(System.nanoTime() - startNanos, Runtime.getRuntime().availableProcessors(), cachedPixels, sortedThreadStatistics, sortedTileNanos);
+		}
+
+		private ThreadStatistics currentThreadStatistics(String threadName) {
+			return threadStatistics.computeIfAbsent(threadName, ThreadStatistics::new);
+		}
+	}
+
+	private final long elapsedNanos;
+	private final int processors;
+	private final long cachedPixels;
+	private final List<ThreadStatistics> threadStatistics;
+	private final long[] tileNanos;
+
+	private RenderStatistics(long elapsedNanos, int processors, long cachedPixels, List<ThreadStatistics> threadStatistics, long[] tileNanos) {
+		this.elapsedNanos = elapsedNanos;
+		this.processors = processors;
+		this.cachedPixels = cachedPixels;
+		this.threadStatistics = Collections.unmodifiableList(threadStatistics);
+		this.tileNanos = tileNanos;
+	}
+
+	static boolean isInMainCardioidOrBulb(double x, double y) {
+		double yy = y * y;
+		double xQuarter = x - 0.25;
+		double q = xQuarter * xQuarter + yy;
+		if (q * (q + xQuarter) <= 0.25 * yy) {
+			return true;
+		}
+		double xOne = x + 1;
+		return xOne * xOne + yy <= 1.0 / 16;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public List<ThreadStatistics> getThreadStatistics() {
+		return threadStatistics;
+	}
+
+	public long getPixelCount() {
+		return threadStatistics.stream().mapToLong(statistics -> statistics.pixels).sum();
+	}
+
+	public long getCachedPixelCount() {
+		return cachedPixels;
+	}
+
+	public long getIterationCount() {
+		return threadStatistics.stream().mapToLong(statistics -> statistics.iterations).sum();
+	}
+
+	public long getInteriorPixelCount() {
+		return threadStatistics.stream().mapToLong(statistics -> statistics.interiorPixels).sum();
+	}
+
+	public long getMaxIterationPixelCount() {
+		return threadStatistics.stream().mapToLong(statistics -> statistics.maxIterationPixels).sum();
+	}
+
+	public int getTileCount() {
+		return tileNanos.length;
+	}
+
+	/**
+	 * Returns the calculation time of the tiles at the specified percentile.
+	 *
+	 * @param percentile the percentile in the range 0.0 to 1.0 (0.5 is the median, 1.0 the slowest tile)
+	 * @return the calculation time in nanoseconds
+	 */
+	public long getTileNanos(double percentile) {
+		if (tileNanos.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(percentile * tileNanos.length) - 1;
+		return tileNanos[Math.max(0, Math.min(tileNanos.length - 1, index))];
+	}
+
+	/**
+	 * Returns the fraction of the available processor time that was spent calculating tiles.
+	 *
+	 * <p>The calling thread also calculates tiles, so there may be more render threads than processors.</p>
+	 */
+	public double getUtilization() {
+		if (elapsedNanos == 0) {
+			return 0;
+		}
+		long busyNanos = threadStatistics.stream().mapToLong(statistics -> statistics.busyNanos).sum();
+		return (double) busyNanos / elapsedNanos / Math.max(processors, threadStatistics.size());
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d pixels (%d cached), %d iterations, %d max iterations (%d interior), %d tiles %.1f/%.1f/%.1f ms (median/90%%/max), %d threads, %.0f%% utilization",
+				getPixelCount(),
+				getCachedPixelCount(),
+				getIterationCount(),
+				getMaxIterationPixelCount(),
+				getInteriorPixelCount(),
+				getTileCount(),
+				getTileNanos(0.5) / NANOS_PER_MILLISECOND,
+				getTileNanos(0.9) / NANOS_PER_MILLISECOND,
+				getTileNanos(1.0) / NANOS_PER_MILLISECOND,
+				threadStatistics.size(),
+				getUtilization() * 100);
+	}
+}
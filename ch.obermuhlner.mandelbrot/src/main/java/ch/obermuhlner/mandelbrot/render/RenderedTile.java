@@ -0,0 +1,48 @@
+package ch.obermuhlner.mandelbrot.render;
+
+/**
+ * The iterations of a completed tile of an image, published by the {@link TilePublisher}.
+ *
+ * <p>The pixel coordinates of {@link #getIterations(int, int)} are relative to the tile,
+ * the position of the tile in the image is {@link #tileX}, {@link #tileY}.</p>
+ */
+public class RenderedTile implements IterationData {
+
+	public final int tileX;
+	public final int tileY;
+	public final RenderStatistics statistics;
+
+	private final IterationBuffer iterations;
+
+	RenderedTile(int tileX, int tileY, IterationBuffer iterations, RenderStatistics statistics) {
+		this.tileX = tileX;
+		this.tileY = tileY;
+		this.iterations = iterations;
+		this.statistics = statistics;
+	}
+
+	@Override
+	public int getWidth() {
+		return iterations.getWidth();
+	}
+
+	@Override
+	public int getHeight() {
+		return iterations.getHeight();
+	}
+
+	@Override
+	public int getIterations(int pixelX, int pixelY) {
+		return iterations.getIterations(pixelX, pixelY);
+	}
+
+	@Override
+	public void getRowIterations(int pixelY, int[] rowIterations) {
+		iterations.getRowIterations(pixelY, rowIterations);
+	}
+
+	@Override
+	public String toString() {
+		return "RenderedTile(" + tileX + ", " + tileY + ", " + getWidth() + "x" + getHeight() + ")";
+	}
+}
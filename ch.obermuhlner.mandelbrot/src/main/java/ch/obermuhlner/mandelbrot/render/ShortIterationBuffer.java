@@ -0,0 +1,60 @@
+package ch.obermuhlner.mandelbrot.render;
+
+/**
+ * Stores the iterations with 2 bytes per pixel, for renders with at most {@value #MAX_ITERATIONS} iterations.
+ */
+public class ShortIterationBuffer extends IterationBuffer {
+
+	public static final int MAX_ITERATIONS = 0xffff;
+
+	private static final short NEVER_ESCAPED_SHORT = (short) 0xffff;
+
+	private final short[] iterations;
+
+	public ShortIterationBuffer(int width, int height) {
+		super(width, height);
+		this.iterations = new short[width * height];
+	}
+
+	@Override
+	public int getBytesPerPixel() {
+		return 2;
+	}
+
+	@Override
+	public void setIterations(int pixelX, int pixelY, int pixelIterations) {
+		iterations[pixelX + pixelY * width] = encode(pixelIterations);
+	}
+
+	@Override
+	public void setIterations(int pixelX, int pixelY, int blockWidth, int blockHeight, int[] blockIterations, int offset, int scanlineStride) {
+		for (int y = 0; y < blockHeight; y++) {
+			int source = offset + y * scanlineStride;
+			int target = pixelX + (pixelY + y) * width;
+			for (int x = 0; x < blockWidth; x++) {
+				iterations[target + x] = encode(blockIterations[source + x]);
+			}
+		}
+	}
+
+	@Override
+	public int getIterations(int pixelX, int pixelY) {
+		return decode(iterations[pixelX + pixelY * width]);
+	}
+
+	@Override
+	public void getRowIterations(int pixelY, int[] rowIterations) {
+		int index = pixelY * width;
+		for (int pixelX = 0; pixelX < width; pixelX++) {
+			rowIterations[pixelX] = decode(iterations[index + pixelX]);
+		}
+	}
+
+	static short encode(int iterations) {
+		return iterations >= MAX_ITERATIONS ? NEVER_ESCAPED_SHORT : (short) iterations;
+	}
+
+	static int decode(short iterations) {
+		return iterations == NEVER_ESCAPED_SHORT ? NEVER_ESCAPED : iterations & 0xffff;
+	}
+}
@@ -0,0 +1,200 @@
+package ch.obermuhlner.mandelbrot.render;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ch.obermuhlner.mandelbrot.javafx.DummyProgress;
+import ch.obermuhlner.mandelbrot.util.Flow;
+import ch.obermuhlner.mandelbrot.util.ThreadInterruptedException;
+
+/**
+ * Renders the view of a {@link RenderSpec} tile by tile and publishes every tile as soon as it is completed.
+ *
+ * <p>The tiles are published in image order (left to right, top to bottom) and rendered only when the subscriber has requested them,
+ * so that a slow subscriber (for example an encoder or a network connection) keeps the number of tiles in memory bounded.</p>
+ *
+ * <p>Every subscriber receives its own render of all tiles, rendered by a thread of the executor
+ * (the pixels of a tile are calculated in parallel by the renderer).
+ * Cancelling the subscription interrupts the render of the current tile.</p>
+ */
+public class TilePublisher implements Flow.Publisher<RenderedTile> {
+
+	public static final int DEFAULT_TILE_SIZE = 256;
+
+	private static final AtomicInteger threadCount = new AtomicInteger();
+
+	private final MandelbrotRenderer mandelbrotRenderer;
+	private final RenderSpec spec;
+	private final int tileSize;
+	private final Executor executor;
+
+	public TilePublisher(MandelbrotRenderer mandelbrotRenderer, RenderSpec spec) {
+		this(mandelbrotRenderer, spec, DEFAULT_TILE_SIZE, TilePublisher::startThread);
+	}
+
+	/**
+	 * Creates a publisher of the tiles of the specified view.
+	 *
+	 * @param mandelbrotRenderer the renderer of the tiles
+	 * @param spec the view to render, the files of the specification are ignored
+	 * @param tileSize the width and height of the tiles (the tiles at the right and bottom border may be smaller)
+	 * @param executor the executor running the render of every subscriber
+	 */
+	public TilePublisher(MandelbrotRenderer mandelbrotRenderer, RenderSpec spec, int tileSize, Executor executor) {
+		this.mandelbrotRenderer = mandelbrotRenderer;
+		this.spec = spec;
+		this.tileSize = tileSize;
+		this.executor = executor;
+	}
+
+	public int getTileColumns() {
+		return (spec.width + tileSize - 1) / tileSize;
+	}
+
+	public int getTileRows() {
+		return (spec.height + tileSize - 1) / tileSize;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super RenderedTile> subscriber) {
+		TileSubscription subscription = new TileSubscription(subscriber);
+		subscriber.onSubscribe(subscription);
+		try {
+			executor.execute(subscription);
+		} catch (RejectedExecutionException e) {
+			subscription.fail(e);
+		}
+	}
+
+	private RenderedTile renderTile(int tileX, int tileY) {
+		int tileWidth = Math.min(tileSize, spec.width - tileX);
+		int tileHeight = Math.min(tileSize, spec.height - tileY);
+		IterationBuffer result = IterationBuffer.create(tileWidth, tileHeight, spec.maxIterations);
+
+		RenderStatistics statistics = mandelbrotRenderer.drawMandelbrotRegion(
+				result,
+				spec.xCenter, spec.yCenter, spec.xRadius, spec.yRadius,
+				spec.precision, spec.maxIterations, spec.width, spec.height,
+				tileX, tileY, tileWidth, tileHeight, new DummyProgress());
+		return new RenderedTile(tileX, tileY, result, statistics);
+	}
+
+	private static void startThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, "mandelbrot-tiles-" + threadCount.getAndIncrement());
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private class TileSubscription implements Flow.Subscription, Runnable {
+		private final Flow.Subscriber<? super RenderedTile> subscriber;
+
+		private long demand;
+		private boolean cancelled;
+		private IllegalArgumentException requestError;
+		private Thread thread;
+
+		TileSubscription(Flow.Subscriber<? super RenderedTile> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public synchronized void request(long n) {
+			if (cancelled) {
+				return;
+			}
+			if (n <= 0) {
+				requestError = new IllegalArgumentException("Requested tiles must be positive: " + n);
+			} else {
+				demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+			}
+			notifyAll();
+		}
+
+		@Override
+		public synchronized void cancel() {
+			cancelled = true;
+			notifyAll();
+			if (thread != null && thread != Thread.currentThread()) {
+				thread.interrupt();
+			}
+		}
+
+		@Override
+		public void run() {
+			synchronized (this) {
+				if (cancelled) {
+					return;
+				}
+				thread = Thread.currentThread();
+			}
+
+			try {
+				for (int tileY = 0; tileY < spec.height; tileY += tileSize) {
+					for (int tileX = 0; tileX < spec.width; tileX += tileSize) {
+						if (!awaitDemand()) {
+							return;
+						}
+						RenderedTile tile = renderTile(tileX, tileY);
+						synchronized (this) {
+							if (cancelled) {
+								return;
+							}
+							demand--;
+						}
+						subscriber.onNext(tile);
+					}
+				}
+
+				if (!isCancelled()) {
+					cancel();
+					subscriber.onComplete();
+				}
+			} catch (ThreadInterruptedException e) {
+				if (!isCancelled()) {
+					fail(e);
+				}
+			} catch (RuntimeException | Error e) {
+				fail(e);
+			} finally {
+				synchronized (this) {
+					thread = null;
+				}
+				// an interrupt of a cancelled subscription must not affect the next task of the executor
+				Thread.interrupted();
+			}
+		}
+
+		void fail(Throwable exception) {
+			cancel();
+			subscriber.onError(exception);
+		}
+
+		private boolean awaitDemand() {
+			IllegalArgumentException error;
+			synchronized (this) {
+				while (demand == 0 && !cancelled && requestError == null) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						throw new ThreadInterruptedException();
+					}
+				}
+				if (cancelled) {
+					return false;
+				}
+				error = requestError;
+			}
+
+			if (error != null) {
+				fail(error);
+				return false;
+			}
+			return true;
+		}
+
+		private synchronized boolean isCancelled() {
+			return cancelled;
+		}
+	}
+}
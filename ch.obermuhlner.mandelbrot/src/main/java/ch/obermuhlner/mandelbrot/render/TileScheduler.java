@@ -0,0 +1,278 @@
+package ch.obermuhlner.mandelbrot.render;
+
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import ch.obermuhlner.mandelbrot.javafx.Progress;
+import ch.obermuhlner.mandelbrot.util.ThreadInterruptedException;
+
+/**
+ * Distributes the rows of a render over the threads of a {@link RenderPool}.
+ * 
+ * <p>Every row of the image is a tile that is calculated in segments,
+ * every segment is handed over to the result as a block.</p>
+ * 
+ * <p>The calling thread only waits for the render.
+ * If it is interrupted, the remaining segments are skipped and a {@link ThreadInterruptedException} is thrown
+ * after the segments that are already running have finished, so that no thread writes into the result after the render returned.</p>
+ * 
+ * <p>In the {@link Mode#UNIFORM} mode every row is calculated by a single thread in image order.
+ * The last rows to finish are often the expensive ones through the set, so at the end of a render only a few threads are busy.</p>
+ * 
+ * <p>In the {@link Mode#COST_ORDERED} mode the cost of every row is first estimated by calculating a few sample pixels.
+ * The rows are then dispatched longest first, in segments that are claimed atomically.
+ * When no unstarted rows are left, idle threads help with the running row that has the most remaining pixels,
+ * which subdivides the expensive rows at the end of the render.
+ * A row is recorded as a single tile in the {@link RenderStatistics} when its last segment has finished.</p>
+ * 
+ * <p>The rows of a background {@link RenderPool} yield to the interactive rendering before every segment (see {@link RenderPreemption})
+ * and every segment takes a core from the budget shared by all background pools (see {@link RenderPool#acquireBackgroundCore()}).</p>
+ * 
+ * <p>The default mode can be configured with the system property <code>mandelbrot.tileScheduler</code>
+ * (<code>uniform</code> or <code>cost_ordered</code>).</p>
+ */
+public class TileScheduler {
+
+	public enum Mode {
+		UNIFORM,
+		COST_ORDERED
+	}
+
+	/**
+	 * Calculates a segment of a row and hands it over to the result.
+	 */
+	public interface RowRenderer {
+		void renderSegment(int pixelY, int startPixelX, int endPixelX, RenderStatistics.Tile tileStatistics);
+	}
+
+	/**
+	 * Calculates the iterations of a single sample pixel of a row, without storing it in the result.
+	 */
+	public interface CostSampler {
+		int sampleIterations(int pixelY, int pixelX);
+	}
+
+	private static final int SAMPLES_PER_ROW = 4;
+	private static final int SEGMENTS_PER_ROW = 16;
+
+	private final Mode mode;
+	private final RenderPool renderPool;
+	private final RenderPreemption preemption = RenderPreemption.getInstance();
+
+	public TileScheduler() {
+		this(getDefaultMode(), RenderPool.BATCH);
+	}
+
+	public TileScheduler(RenderPool renderPool) {
+		this(getDefaultMode(), renderPool);
+	}
+
+	public TileScheduler(Mode mode) {
+		this(mode, RenderPool.BATCH);
+	}
+
+	public TileScheduler(Mode mode, RenderPool renderPool) {
+		this.mode = mode;
+		this.renderPool = renderPool;
+	}
+
+	public RenderPool getRenderPool() {
+		return renderPool;
+	}
+
+	public static Mode getDefaultMode() {
+		return Mode.valueOf(System.getProperty("mandelbrot.tileScheduler", Mode.COST_ORDERED.name()).toUpperCase(Locale.ROOT));
+	}
+
+	/**
+	 * Calculates all rows and waits until they are calculated.
+	 * 
+	 * @param height the number of rows
+	 * @param width the number of pixels of every row
+	 */
+	public void run(int height, int width, CostSampler costSampler, RowRenderer rowRenderer, RenderStatistics.Collector statistics, Progress progress) {
+		AtomicBoolean cancelled = new AtomicBoolean();
+		ForkJoinTask<?> task = renderPool.getPool().submit(() -> {
+			if (mode == Mode.UNIFORM) {
+				runUniform(height, width, rowRenderer, statistics, progress, cancelled);
+			} else {
+				runCostOrdered(height, width, costSampler, rowRenderer, statistics, progress, cancelled);
+			}
+		});
+
+		try {
+			task.get();
+		} catch (InterruptedException e) {
+			cancelled.set(true);
+			// the caller may close the result when this method returns
+			task.quietlyJoin();
+			throw new ThreadInterruptedException();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private void runUniform(int height, int width, RowRenderer rowRenderer, RenderStatistics.Collector statistics, Progress progress, AtomicBoolean cancelled) {
+		IntStream.range(0, height).parallel().forEach(pixelY -> {
+			checkpoint(cancelled);
+			if (cancelled.get()) {
+				return;
+			}
+			RenderStatistics.Tile tile = statistics.startTile();
+			renderSegment(rowRenderer, pixelY, 0, width, tile);
+			statistics.endTile(tile);
+
+			progress.incrementProgress(width);
+		});
+	}
+
+	private void runCostOrdered(int height, int width, CostSampler costSampler, RowRenderer rowRenderer, RenderStatistics.Collector statistics, Progress progress, AtomicBoolean cancelled) {
+		long[] costs = new long[height];
+		IntStream.range(0, height).parallel().forEach(pixelY -> {
+			if (cancelled.get()) {
+				return;
+			}
+			long cost = 0;
+			for (int sample = 0; sample < SAMPLES_PER_ROW; sample++) {
+				int pixelX = (int) ((2L * sample + 1) * width / (2 * SAMPLES_PER_ROW));
+				cost += costSampler.sampleIterations(pixelY, pixelX) + 1;
+			}
+			costs[pixelY] = cost;
+		});
+
+		ScheduledRow[] rows = IntStream.range(0, height)
+				.mapToObj(pixelY -> new ScheduledRow(pixelY, costs[pixelY], width))
+				.sorted(Comparator.comparingLong((ScheduledRow row) -> row.cost).reversed())
+				.toArray(ScheduledRow[]::new);
+
+		int segmentWidth = Math.max(1, width / SEGMENTS_PER_ROW);
+		AtomicInteger nextRow = new AtomicInteger();
+
+		Runnable worker = () -> {
+			try {
+				ScheduledRow row;
+				while (!cancelled.get() && (row = nextRow(rows, nextRow, width)) != null) {
+					int startPixelX;
+					while (checkpoint(cancelled) && (startPixelX = row.nextPixelX.getAndAdd(segmentWidth)) < width) {
+						int endPixelX = Math.min(width, startPixelX + segmentWidth);
+						row.startSegment(statistics);
+						RenderStatistics.Tile segmentStatistics = statistics.startTile();
+						renderSegment(rowRenderer, row.pixelY, startPixelX, endPixelX, segmentStatistics);
+						row.endSegment(segmentStatistics, endPixelX - startPixelX, statistics);
+						progress.incrementProgress(endPixelX - startPixelX);
+					}
+				}
+			} catch (RuntimeException e) {
+				cancelled.set(true);
+				throw e;
+			}
+		};
+
+		// this method runs in the pool, so it is one of the workers
+		int helperCount = Math.min(height, renderPool.getParallelism()) - 1;
+		ForkJoinTask<?>[] helpers = new ForkJoinTask<?>[Math.max(0, helperCount)];
+		for (int i = 0; i < helpers.length; i++) {
+			helpers[i] = ForkJoinTask.adapt(worker).fork();
+		}
+		try {
+			worker.run();
+		} finally {
+			// no helper may write into the result after this method returned
+			for (ForkJoinTask<?> helper : helpers) {
+				helper.quietlyJoin();
+			}
+		}
+
+		for (ForkJoinTask<?> helper : helpers) {
+			helper.join();
+		}
+	}
+
+	private void renderSegment(RowRenderer rowRenderer, int pixelY, int startPixelX, int endPixelX, RenderStatistics.Tile tileStatistics) {
+		if (!renderPool.isBackground()) {
+			rowRenderer.renderSegment(pixelY, startPixelX, endPixelX, tileStatistics);
+			return;
+		}
+
+		RenderPool.acquireBackgroundCore();
+		try {
+			rowRenderer.renderSegment(pixelY, startPixelX, endPixelX, tileStatistics);
+		} finally {
+			RenderPool.releaseBackgroundCore();
+		}
+	}
+
+	/**
+	 * Pauses a background render while an interactive render is active.
+	 * 
+	 * @return <code>true</code> if the render may continue, <code>false</code> if it was cancelled
+	 */
+	private boolean checkpoint(AtomicBoolean cancelled) {
+		if (renderPool.isBackground()) {
+			preemption.yieldToInteractive(cancelled::get);
+		}
+		return !cancelled.get();
+	}
+
+	private static ScheduledRow nextRow(ScheduledRow[] rows, AtomicInteger nextRow, int width) {
+		int index = nextRow.getAndIncrement();
+		if (index < rows.length) {
+			return rows[index];
+		}
+
+		// no unstarted rows left - help with the running row that has the most remaining pixels
+		ScheduledRow bestRow = null;
+		int bestRemainingPixels = 0;
+		for (ScheduledRow row : rows) {
+			int remainingPixels = width - row.nextPixelX.get();
+			if (remainingPixels > bestRemainingPixels) {
+				bestRow = row;
+				bestRemainingPixels = remainingPixels;
+			}
+		}
+		return bestRow;
+	}
+
+	private static class ScheduledRow {
+		final int pixelY;
+		final long cost;
+		final AtomicInteger nextPixelX = new AtomicInteger();
+
+		private int remainingPixels;
+		private RenderStatistics.Tile tileStatistics;
+
+		ScheduledRow(int pixelY, long cost, int width) {
+			this.pixelY = pixelY;
+			this.cost = cost;
+			this.remainingPixels = width;
+		}
+
+		synchronized void startSegment(RenderStatistics.Collector statistics) {
+			if (tileStatistics == null) {
+				tileStatistics = statistics.startTile();
+			}
+		}
+
+		/**
+		 * Adds the statistics of a finished segment to the row and ends the tile of the row after its last segment.
+		 */
+		synchronized void endSegment(RenderStatistics.Tile segmentStatistics, int pixels, RenderStatistics.Collector statistics) {
+			tileStatistics.add(segmentStatistics);
+			remainingPixels -= pixels;
+			if (remainingPixels == 0) {
+				statistics.endTile(tileStatistics);
+			}
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package ch.obermuhlner.mandelbrot.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import ch.obermuhlner.mandelbrot.jfr.FileWriteEvent;
+
+/**
+ * Writes files so that they either exist completely or not at all.
+ * 
+ * <p>The content is written into a temporary file in the same directory which is then renamed to the target file.
+ * Every write uses a temporary file with a unique name, so that concurrent writers of the same file do not write into the same temporary file.</p>
+ */
+public class AtomicFiles {
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	public interface FileWriterAction {
+		void write(File file) throws IOException;
+	}
+
+	public static void write(File file, FileWriterAction action) throws IOException {
+		FileWriteEvent event = new FileWriteEvent();
+		event.begin();
+
+		File tempFile = createTempFile(file, TEMP_SUFFIX);
+		try {
+			action.write(tempFile);
+			try {
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tempFile.toPath());
+		}
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.path = file.getPath();
+			event.bytes = file.length();
+			event.commit();
+		}
+	}
+
+	/**
+	 * Creates an empty file with a unique name in the directory of the specified file.
+	 * 
+	 * <p>The name starts with the name of the file and ends with the suffix.</p>
+	 */
+	public static File createTempFile(File file, String suffix) throws IOException {
+		return File.createTempFile(file.getName() + ".", suffix, file.getAbsoluteFile().getParentFile());
+	}
+}
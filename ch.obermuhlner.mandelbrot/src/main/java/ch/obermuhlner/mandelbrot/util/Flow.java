@@ -0,0 +1,60 @@
+package ch.obermuhlner.mandelbrot.util;
+
+/**
+ * The interfaces of <code>java.util.concurrent.Flow</code> (Java 9), for publishers and subscribers with backpressure on Java 8.
+ *
+ * <p>The interfaces have the same methods and contracts as the Java 9 interfaces (and the Reactive Streams interfaces),
+ * so that they can be replaced by <code>java.util.concurrent.Flow</code> once Java 8 is no longer supported.</p>
+ */
+public final class Flow {
+
+	private Flow() {
+	}
+
+	/**
+	 * Produces the items received by the subscribers, only as many as they have requested.
+	 */
+	@FunctionalInterface
+	public interface Publisher<T> {
+		/**
+		 * Adds a subscriber, which first receives {@link Subscriber#onSubscribe(Subscription)}.
+		 */
+		void subscribe(Subscriber<? super T> subscriber);
+	}
+
+	/**
+	 * Receives the items of a {@link Publisher}.
+	 *
+	 * <p>The methods of a subscription are called sequentially, never concurrently.</p>
+	 */
+	public interface Subscriber<T> {
+		void onSubscribe(Subscription subscription);
+
+		void onNext(T item);
+
+		void onError(Throwable throwable);
+
+		void onComplete();
+	}
+
+	/**
+	 * Links a {@link Publisher} and a {@link Subscriber}.
+	 */
+	public interface Subscription {
+		/**
+		 * Requests up to <code>n</code> more items, a value less or equal than 0 is signalled with an {@link IllegalArgumentException}.
+		 */
+		void request(long n);
+
+		/**
+		 * Stops the delivery of items, eventually.
+		 */
+		void cancel();
+	}
+
+	/**
+	 * A subscriber that is also a publisher.
+	 */
+	public interface Processor<T, R> extends Subscriber<T>, Publisher<R> {
+	}
+}
@@ -0,0 +1,261 @@
+package ch.obermuhlner.mandelbrot.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets several processes (on several machines) render the frames of the same job into a shared directory.
+ *
+ * <p>The directory contains a manifest <code>farm.properties</code> with the parameters of the job,
+ * a process with different parameters refuses to render into the same directory.</p>
+ *
+ * <p>Before a frame is rendered it is claimed by creating a lease file next to it (<code>mandelbrot0001.png.lease</code>),
+ * the creation of the file fails if another process holds the lease.
+ * The leases are renewed regularly while the frame is rendered.
+ * A lease that was not renewed within the lease time (the process died) is reclaimed by the next process,
+ * which continues with the checkpoint of the frame (if the frame is large enough to be checkpointed).
+ * The lease time (system property <code>mandelbrot.farm.leaseSeconds</code>, default 60) must be longer than the clock difference between the machines.
+ * A process that loses its lease anyway stops rendering the frame, see {@link #watch(File, Future)}.</p>
+ */
+public class FrameFarm implements Closeable {
+
+	public static final String MANIFEST_FILENAME = "farm.properties";
+
+	private static final String LEASE_SUFFIX = ".lease";
+	private static final String STALE_SUFFIX = ".stale";
+
+	private final String owner = ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID();
+	private final long leaseMillis = TimeUnit.SECONDS.toMillis(Long.getLong("mandelbrot.farm.leaseSeconds", 60));
+
+	private final PrintStream log;
+
+	private final Set<Path> leases = ConcurrentHashMap.newKeySet();
+	private final Map<Path, Future<?>> renders = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService heartbeat;
+
+	private FrameFarm(PrintStream log) {
+		this.log = log;
+		heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "mandelbrot-farm-heartbeat");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long renewMillis = Math.max(1, leaseMillis / 4);
+		heartbeat.scheduleWithFixedDelay(this::renewLeases, renewMillis, renewMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Opens the frame farm in the specified directory, writing the manifest if it does not exist yet.
+	 *
+	 * @param directory the shared directory of the frames
+	 * @param job the parameters of the job
+	 * @param log the stream for the messages about reclaimed and lost leases
+	 * @return the opened frame farm
+	 * @throws IOException if the manifest cannot be written
+	 * @throws IllegalStateException if the directory contains the frames of a different job
+	 */
+	public static FrameFarm open(File directory, Properties job, PrintStream log) throws IOException {
+		directory.mkdirs();
+		File manifestFile = new File(directory, MANIFEST_FILENAME);
+		if (!manifestFile.exists()) {
+			File tempFile = new File(directory, MANIFEST_FILENAME + "." + UUID.randomUUID() + ".tmp");
+			try {
+				try (Writer writer = new FileWriter(tempFile)) {
+					job.store(writer, "Mandelbrot frame farm");
+				}
+				// the first process wins, the others compare their job with its manifest
+				Files.createLink(manifestFile.toPath(), tempFile.toPath());
+			} catch (FileAlreadyExistsException e) {
+				// written by another process
+			} catch (UnsupportedOperationException e) {
+				if (!manifestFile.exists()) {
+					Files.move(tempFile.toPath(), manifestFile.toPath());
+				}
+			} finally {
+				Files.deleteIfExists(tempFile.toPath());
+			}
+		}
+
+		Properties manifest = new Properties();
+		try (Reader reader = new FileReader(manifestFile)) {
+			manifest.load(reader);
+		}
+		if (!manifest.equals(job)) {
+			throw new IllegalStateException("The directory " + directory + " contains the frames of a different job, see " + manifestFile);
+		}
+
+		return new FrameFarm(log);
+	}
+
+	/**
+	 * Claims a frame for this process.
+	 *
+	 * @param frameFile the file of the frame
+	 * @return <code>true</code> if the frame must be rendered by this process,
+	 * 	<code>false</code> if it was already rendered or another process is rendering it
+	 * @throws IOException if the lease file cannot be written
+	 */
+	public boolean claim(File frameFile) throws IOException {
+		if (frameFile.exists()) {
+			return false;
+		}
+
+		Path leaseFile = leaseFile(frameFile);
+		if (!createLease(leaseFile)) {
+			if (!reclaimStaleLease(leaseFile) || !createLease(leaseFile)) {
+				return false;
+			}
+		}
+
+		// the frame may have been written between the check and the lease
+		if (frameFile.exists()) {
+			release(frameFile);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Cancels the render of a frame claimed with {@link #claim(File)} if this process loses the lease of the frame.
+	 *
+	 * @param frameFile the file of the frame
+	 * @param render the future of the render, cancelled with interruption
+	 */
+	public void watch(File frameFile, Future<?> render) {
+		Path leaseFile = leaseFile(frameFile);
+		renders.put(leaseFile, render);
+		if (!leases.contains(leaseFile)) {
+			// lost before the render was watched
+			render.cancel(true);
+		}
+	}
+
+	/**
+	 * Releases the lease of a frame claimed with {@link #claim(File)}, after the frame was written or if it failed.
+	 */
+	public void release(File frameFile) {
+		Path leaseFile = leaseFile(frameFile);
+		leases.remove(leaseFile);
+		renders.remove(leaseFile);
+		try {
+			if (isOwnLease(leaseFile)) {
+				Files.deleteIfExists(leaseFile);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void close() {
+		heartbeat.shutdownNow();
+	}
+
+	private boolean createLease(Path leaseFile) throws IOException {
+		try {
+			Files.write(Files.createFile(leaseFile), owner.getBytes(StandardCharsets.UTF_8));
+		} catch (FileAlreadyExistsException e) {
+			return false;
+		}
+		leases.add(leaseFile);
+		return true;
+	}
+
+	private boolean reclaimStaleLease(Path leaseFile) throws IOException {
+		// the owner is read before the time, a lease created in between by another process is not stale
+		String staleOwner = readOwner(leaseFile);
+		if (staleOwner == null) {
+			return true;
+		}
+		FileTime lastModified;
+		try {
+			lastModified = Files.getLastModifiedTime(leaseFile);
+		} catch (NoSuchFileException e) {
+			return true;
+		}
+		if (System.currentTimeMillis() - lastModified.toMillis() < leaseMillis) {
+			return false;
+		}
+
+		// the rename succeeds for only one of the processes that found the stale lease
+		Path staleFile = leaseFile.resolveSibling(leaseFile.getFileName() + STALE_SUFFIX + "." + UUID.randomUUID());
+		try {
+			Files.move(leaseFile, staleFile);
+		} catch (NoSuchFileException e) {
+			return false;
+		}
+
+		// another process may have reclaimed the stale lease and created its own lease between the check and the rename
+		if (!staleOwner.equals(readOwner(staleFile))) {
+			try {
+				Files.move(staleFile, leaseFile);
+			} catch (FileAlreadyExistsException e) {
+				// a third process holds the lease now, the owner of the moved lease notices that it lost it
+				Files.deleteIfExists(staleFile);
+			}
+			return false;
+		}
+
+		log.println("Reclaimed stale lease " + leaseFile.getFileName() + " of " + staleOwner);
+		Files.deleteIfExists(staleFile);
+		return true;
+	}
+
+	private void renewLeases() {
+		FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+		for (Path leaseFile : leases) {
+			try {
+				if (isOwnLease(leaseFile)) {
+					Files.setLastModifiedTime(leaseFile, now);
+				} else {
+					log.println("Lost lease " + leaseFile.getFileName());
+					leases.remove(leaseFile);
+					Future<?> render = renders.remove(leaseFile);
+					if (render != null) {
+						render.cancel(true);
+					}
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private boolean isOwnLease(Path leaseFile) throws IOException {
+		return owner.equals(readOwner(leaseFile));
+	}
+
+	private static String readOwner(Path leaseFile) throws IOException {
+		try {
+			return new String(Files.readAllBytes(leaseFile), StandardCharsets.UTF_8);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	private static Path leaseFile(File frameFile) {
+		return new File(frameFile.getPath() + LEASE_SUFFIX).toPath();
+	}
+}
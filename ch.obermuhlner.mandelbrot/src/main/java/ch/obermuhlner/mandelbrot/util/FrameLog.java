@@ -0,0 +1,190 @@
+package ch.obermuhlner.mandelbrot.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import ch.obermuhlner.mandelbrot.render.RenderStatistics;
+
+/**
+ * Machine readable log with the timings of every rendered frame.
+ * 
+ * <p>The format is CSV or JSON lines (one JSON object per line), depending on the file extension
+ * (<code>.json</code> and <code>.jsonl</code> are JSON lines, everything else is CSV).
+ * Frames are appended, so that an interrupted render can be continued into the same log.</p>
+ */
+public class FrameLog implements Closeable {
+
+	private static final String[] COLUMNS = {
+			"index", "zoom", "precision", "maxIterations", "engine",
+			"computeMillis", "colorizeMillis", "encodeMillis", "bytes",
+			"pixels", "cachedPixels", "iterations", "maxIterationPixels" };
+
+	private static final Pattern JSON_FIELD = Pattern.compile("\"(\\w+)\"\\s*:\\s*(\"[^\"]*\"|[^,}\\s]+)");
+
+	public static class Frame {
+		public int index;
+		public double zoom;
+		public int precision;
+		public int maxIterations;
+		public String engine;
+
+		/**
+		 * Wall clock time to calculate the iterations.
+		 */
+		public double computeMillis;
+
+		/**
+		 * Time spent coloring the rows, summed over all threads.
+		 */
+		public double colorizeMillis;
+
+		/**
+		 * Wall clock time to color, encode and write the image file.
+		 */
+		public double encodeMillis;
+
+		public long bytes;
+		public long pixels;
+		public long cachedPixels;
+		public long iterations;
+		public long maxIterationPixels;
+
+		public void setStatistics(RenderStatistics statistics) {
+			pixels = statistics.getPixelCount();
+			cachedPixels = statistics.getCachedPixelCount();
+			iterations = statistics.getIterationCount();
+			maxIterationPixels = statistics.getMaxIterationPixelCount();
+		}
+
+		private Object[] values() {
+			return new Object[] {
+					index, zoom, precision, maxIterations, engine,
+					computeMillis, colorizeMillis, encodeMillis, bytes,
+					pixels, cachedPixels, iterations, maxIterationPixels };
+		}
+
+		private void setValue(String column, String value) {
+			switch (column) {
+			case "index": index = Integer.parseInt(value); break;
+			case "zoom": zoom = Double.parseDouble(value); break;
+			case "precision": precision = Integer.parseInt(value); break;
+			case "maxIterations": maxIterations = Integer.parseInt(value); break;
+			case "engine": engine = value; break;
+			case "computeMillis": computeMillis = Double.parseDouble(value); break;
+			case "colorizeMillis": colorizeMillis = Double.parseDouble(value); break;
+			case "encodeMillis": encodeMillis = Double.parseDouble(value); break;
+			case "bytes": bytes = Long.parseLong(value); break;
+			case "pixels": pixels = Long.parseLong(value); break;
+			case "cachedPixels": cachedPixels = Long.parseLong(value); break;
+			case "iterations": iterations = Long.parseLong(value); break;
+			case "maxIterationPixels": maxIterationPixels = Long.parseLong(value); break;
+			default:
+				// ignore unknown columns written by newer versions
+			}
+		}
+	}
+
+	private final boolean json;
+	private final PrintWriter writer;
+
+	public FrameLog(File file) throws IOException {
+		this.json = isJson(file);
+
+		boolean newFile = !file.exists() || file.length() == 0;
+		writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+		if (newFile && !json) {
+			writer.println(String.join(",", COLUMNS));
+			writer.flush();
+		}
+	}
+
+	public synchronized void log(Frame frame) {
+		Object[] values = frame.values();
+		StringBuilder line = new StringBuilder();
+		if (json) {
+			line.append("{");
+			for (int i = 0; i < COLUMNS.length; i++) {
+				if (i > 0) {
+					line.append(",");
+				}
+				line.append("\"").append(COLUMNS[i]).append("\":");
+				line.append(values[i] instanceof String ? "\"" + values[i] + "\"" : format(values[i]));
+			}
+			line.append("}");
+		} else {
+			for (int i = 0; i < COLUMNS.length; i++) {
+				if (i > 0) {
+					line.append(",");
+				}
+				line.append(format(values[i]));
+			}
+		}
+		writer.println(line);
+		writer.flush();
+	}
+
+	@Override
+	public synchronized void close() {
+		writer.close();
+	}
+
+	/**
+	 * Reads all frames of a log written in CSV or JSON lines format.
+	 */
+	public static List<Frame> read(File file) throws IOException {
+		boolean json = isJson(file);
+		List<Frame> frames = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			String[] header = null;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty()) {
+					continue;
+				}
+				Frame frame = new Frame();
+				if (json) {
+					Matcher matcher = JSON_FIELD.matcher(line);
+					while (matcher.find()) {
+						frame.setValue(matcher.group(1), matcher.group(2).replace("\"", ""));
+					}
+				} else if (header == null) {
+					header = line.split(",");
+					continue;
+				} else {
+					String[] values = line.split(",");
+					for (int i = 0; i < Math.min(header.length, values.length); i++) {
+						frame.setValue(header[i], values[i]);
+					}
+				}
+				frames.add(frame);
+			}
+		}
+		return frames;
+	}
+
+	private static boolean isJson(File file) {
+		String name = file.getName().toLowerCase(Locale.ROOT);
+		return name.endsWith(".json") || name.endsWith(".jsonl");
+	}
+
+	private static String format(Object value) {
+		if (value instanceof Double) {
+			return String.format(Locale.ROOT, "%.3f", value);
+		}
+		return String.valueOf(value);
+	}
+}
@@ -0,0 +1,122 @@
+package ch.obermuhlner.mandelbrot.util;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.ToDoubleFunction;
+
+import ch.obermuhlner.mandelbrot.jfr.MandelbrotEvents;
+import ch.obermuhlner.mandelbrot.util.FrameLog.Frame;
+
+/**
+ * Summarizes a {@link FrameLog} and fits the frame times against the zoom depth,
+ * so that the duration of long renders can be estimated from a short trial run.
+ * 
+ * <p>Two models are fitted with least squares:</p>
+ * <ul>
+ * <li>linear: time = a + b * zoom</li>
+ * <li>exponential: time = a * 10<sup>b * zoom</sup></li>
+ * </ul>
+ */
+public class FrameLogSummary {
+
+	public static class Fit {
+		public final double a;
+		public final double b;
+		public final double rSquared;
+
+		public Fit(double a, double b, double rSquared) {
+			this.a = a;
+			this.b = b;
+			this.rSquared = rSquared;
+		}
+	}
+
+	private final List<Frame> frames;
+
+	public FrameLogSummary(List<Frame> frames) {
+		this.frames = frames;
+	}
+
+	/**
+	 * Fits the total time of a frame (compute and encode) with a linear model.
+	 */
+	public Fit linearFit() {
+		return fit(frame -> frame.zoom, FrameLogSummary::totalMillis);
+	}
+
+	/**
+	 * Fits the total time of a frame (compute and encode) with an exponential model.
+	 */
+	public Fit exponentialFit() {
+		Fit logFit = fit(frame -> frame.zoom, frame -> Math.log10(Math.max(1, totalMillis(frame))));
+		return new Fit(Math.pow(10, logFit.a), logFit.b, logFit.rSquared);
+	}
+
+	public void print(PrintStream out) {
+		if (frames.isEmpty()) {
+			out.println("No frames");
+			return;
+		}
+
+		double minZoom = frames.stream().mapToDouble(frame -> frame.zoom).min().getAsDouble();
+		double maxZoom = frames.stream().mapToDouble(frame -> frame.zoom).max().getAsDouble();
+		out.println(String.format(Locale.ROOT, "frames :          %d (zoom %.3f to %.3f)", frames.size(), minZoom, maxZoom));
+		out.println(String.format(Locale.ROOT, "compute :         %.1f s", sum(frame -> frame.computeMillis) / 1000));
+		out.println(String.format(Locale.ROOT, "colorize :        %.1f s (all threads)", sum(frame -> frame.colorizeMillis) / 1000));
+		out.println(String.format(Locale.ROOT, "encode :          %.1f s", sum(frame -> frame.encodeMillis) / 1000));
+		out.println(String.format(Locale.ROOT, "bytes :           %.0f", sum(frame -> frame.bytes)));
+		out.println(String.format(Locale.ROOT, "iterations :      %.0f", sum(frame -> frame.iterations)));
+		out.println(String.format(Locale.ROOT, "double :          %d frames", frames.stream().filter(frame -> MandelbrotEvents.ENGINE_DOUBLE.equals(frame.engine)).count()));
+		out.println(String.format(Locale.ROOT, "BigDecimal :      %d frames", frames.stream().filter(frame -> MandelbrotEvents.ENGINE_BIGDECIMAL.equals(frame.engine)).count()));
+
+		if (frames.size() < 2 || minZoom == maxZoom) {
+			return;
+		}
+		Fit linear = linearFit();
+		Fit exponential = exponentialFit();
+		out.println(String.format(Locale.ROOT, "linear fit :      time = %.3f ms + %.3f ms * zoom (R^2 = %.3f)", linear.a, linear.b, linear.rSquared));
+		out.println(String.format(Locale.ROOT, "exponential fit : time = %.3f ms * 10^(%.5f * zoom) (R^2 = %.3f)", exponential.a, exponential.b, exponential.rSquared));
+	}
+
+	private double sum(ToDoubleFunction<Frame> value) {
+		return frames.stream().mapToDouble(value).sum();
+	}
+
+	private static double totalMillis(Frame frame) {
+		return frame.computeMillis + frame.encodeMillis;
+	}
+
+	private Fit fit(ToDoubleFunction<Frame> xFunction, ToDoubleFunction<Frame> yFunction) {
+		int n = frames.size();
+		double sumX = 0;
+		double sumY = 0;
+		double sumXX = 0;
+		double sumXY = 0;
+		for (Frame frame : frames) {
+			double x = xFunction.applyAsDouble(frame);
+			double y = yFunction.applyAsDouble(frame);
+			sumX += x;
+			sumY += y;
+			sumXX += x * x;
+			sumXY += x * y;
+		}
+
+		double denominator = n * sumXX - sumX * sumX;
+		double b = denominator == 0 ? 0 : (n * sumXY - sumX * sumY) / denominator;
+		double a = (sumY - b * sumX) / n;
+
+		double meanY = sumY / n;
+		double totalSquares = 0;
+		double residualSquares = 0;
+		for (Frame frame : frames) {
+			double x = xFunction.applyAsDouble(frame);
+			double y = yFunction.applyAsDouble(frame);
+			totalSquares += (y - meanY) * (y - meanY);
+			residualSquares += (y - a - b * x) * (y - a - b * x);
+		}
+		double rSquared = totalSquares == 0 ? 1 : 1 - residualSquares / totalSquares;
+
+		return new Fit(a, b, rSquared);
+	}
+}
@@ -1,6 +1,10 @@
 package ch.obermuhlner.mandelbrot.util;
 
 public class StopWatch {
+	private static final long MILLISECONDS_PER_HOUR = 60 * 60 * 1000;
+	private static final long MILLISECONDS_PER_MINUTE = 60 * 1000;
+	private static final long MILLISECONDS_PER_SECOND = 1000;
+
 	private long startTime = System.nanoTime();
 
 	public double getElapsedMilliseconds() {
@@ -13,4 +17,46 @@ public class StopWatch {
 	public String toString() {
 		return getElapsedMilliseconds() + " ms";
 	}
+
+	/**
+	 * Formats a duration in a human readable form (for example "1h 2m 3s 4ms").
+	 */
+	public static String formatMillis(long millis) {
+		long remainingMillis = millis;
+
+		long hours = remainingMillis / MILLISECONDS_PER_HOUR;
+		remainingMillis -= hours * MILLISECONDS_PER_HOUR;
+
+		long minutes = remainingMillis / MILLISECONDS_PER_MINUTE;
+		remainingMillis -= minutes * MILLISECONDS_PER_MINUTE;
+
+		long seconds = remainingMillis / MILLISECONDS_PER_SECOND;
+		remainingMillis -= seconds * MILLISECONDS_PER_SECOND;
+
+		StringBuilder textBuilder = new StringBuilder();
+		if (hours > 0) {
+			textBuilder.append(hours);
+			textBuilder.append("h ");
+		}
+		if (minutes > 0) {
+			textBuilder.append(minutes);
+			textBuilder.append("m ");
+		}
+		if (seconds > 0) {
+			textBuilder.append(seconds);
+			textBuilder.append("s ");
+		}
+		if (remainingMillis > 0) {
+			textBuilder.append(remainingMillis);
+			textBuilder.append("ms ");
+		}
+
+		String text = textBuilder.toString().trim();
+
+		if (text.equals("")) {
+			text = "< 1 ms";
+		}
+
+		return text;
+	}
 }
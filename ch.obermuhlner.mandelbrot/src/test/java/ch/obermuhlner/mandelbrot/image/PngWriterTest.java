@@ -0,0 +1,86 @@
+package ch.obermuhlner.mandelbrot.image;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+public class PngWriterTest {
+
+	private static final int[][] SIZES = { { 1, 1 }, { 3, 7 }, { 257, 1 }, { 1, 300 }, { 640, 480 }, { 1000, 997 } };
+	private static final int[] PARALLELISMS = { 1, 3, 8 };
+
+	@Test
+	public void testWrite() throws IOException {
+		for (int parallelism : PARALLELISMS) {
+			ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+			try {
+				for (int[] size : SIZES) {
+					int[] rgb = randomImage(size[0], size[1]);
+					ByteArrayOutputStream out = new ByteArrayOutputStream();
+					new PngWriter(executor, parallelism).write(out, size[0], size[1], rgb);
+					assertImage(size[0], size[1], rgb, out.toByteArray(), parallelism);
+				}
+			} finally {
+				executor.shutdown();
+			}
+		}
+	}
+
+	@Test
+	public void testRowWriter() throws IOException {
+		for (int parallelism : PARALLELISMS) {
+			ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+			try {
+				for (int[] size : SIZES) {
+					int width = size[0];
+					int height = size[1];
+					int[] rgb = randomImage(width, height);
+					ByteArrayOutputStream out = new ByteArrayOutputStream();
+					PngWriter.RowWriter rowWriter = new PngWriter(executor, parallelism).open(out, width, height);
+					int[] row = new int[width];
+					for (int pixelY = 0; pixelY < height; pixelY++) {
+						// the row is copied, so the same array is reused for all rows
+						System.arraycopy(rgb, pixelY * width, row, 0, width);
+						rowWriter.writeRow(row);
+					}
+					rowWriter.close();
+					assertImage(width, height, rgb, out.toByteArray(), parallelism);
+				}
+			} finally {
+				executor.shutdown();
+			}
+		}
+	}
+
+	private static int[] randomImage(int width, int height) {
+		// runs of equal colors and random noise, so that the bands compress differently
+		Random random = new Random(width * 31 + height);
+		int[] rgb = new int[width * height];
+		for (int i = 0; i < rgb.length; i++) {
+			rgb[i] = random.nextInt(4) == 0 ? random.nextInt(0x1000000) : (i / 13) * 0x010203 & 0xffffff;
+		}
+		return rgb;
+	}
+
+	private static void assertImage(int width, int height, int[] rgb, byte[] png, int parallelism) throws IOException {
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+		String message = width + "x" + height + " parallelism " + parallelism;
+		assertEquals(message, width, image.getWidth());
+		assertEquals(message, height, image.getHeight());
+		for (int pixelY = 0; pixelY < height; pixelY++) {
+			for (int pixelX = 0; pixelX < width; pixelX++) {
+				assertEquals(message + " pixel " + pixelX + "," + pixelY, rgb[pixelX + pixelY * width], image.getRGB(pixelX, pixelY) & 0xffffff);
+			}
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package ch.obermuhlner.mandelbrot.render;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IterationFileTest {
+
+	@Test
+	public void testEncodeDecodeRow() {
+		int[] iterations = { 0, 1, 1000, 5, MandelbrotResult.NEVER_ESCAPED, 0, Integer.MAX_VALUE - 1, 7, MandelbrotResult.NEVER_ESCAPED };
+		byte[] buffer = new byte[iterations.length * 5];
+
+		int length = IterationFileWriter.encodeRow(iterations, buffer);
+		int[] decoded = new int[iterations.length];
+		IterationFileReader.decodeRow(ByteBuffer.wrap(buffer, 0, length), decoded, decoded.length);
+
+		assertArrayEquals(iterations, decoded);
+	}
+
+	@Test
+	public void testWriteRead() throws IOException {
+		int width = 301;
+		int height = 17;
+		IntIterationBuffer iterations = new IntIterationBuffer(width, height);
+		Random random = new Random(1);
+		for (int pixelY = 0; pixelY < height; pixelY++) {
+			for (int pixelX = 0; pixelX < width; pixelX++) {
+				iterations.setIterations(pixelX, pixelY, random.nextInt(10) == 0 ? MandelbrotResult.NEVER_ESCAPED : random.nextInt(100000));
+			}
+		}
+
+		File file = File.createTempFile("mandelbrot", ".iterations");
+		try {
+			new IterationFileWriter().write(file, null, 100000, iterations);
+
+			try (IterationFileReader reader = new IterationFileReader(file)) {
+				assertEquals(width, reader.getWidth());
+				assertEquals(height, reader.getHeight());
+				assertEquals(100000, reader.getMaxIterations());
+
+				int[] expectedRow = new int[width];
+				int[] row = new int[width];
+				for (int pixelY = 0; pixelY < height; pixelY++) {
+					iterations.getRowIterations(pixelY, expectedRow);
+					reader.getRowIterations(pixelY, row);
+					assertArrayEquals(expectedRow, row);
+				}
+
+				// single pixels in column order decode a different row every time
+				for (int pixelX = 0; pixelX < width; pixelX++) {
+					for (int pixelY = 0; pixelY < height; pixelY++) {
+						assertEquals(iterations.getIterations(pixelX, pixelY), reader.getIterations(pixelX, pixelY));
+					}
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+}